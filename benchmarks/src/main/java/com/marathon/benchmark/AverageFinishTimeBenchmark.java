@@ -0,0 +1,34 @@
+package com.marathon.benchmark;
+
+import com.marathon.service.ResultService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 平均完赛时间统计（成绩来自内存替身，只衡量聚合本身）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AverageFinishTimeBenchmark {
+
+    @Param({ "1000", "10000", "50000" })
+    public int athletes;
+
+    private ResultService resultService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        resultService = new ResultService(
+                Stubs.resultRepository(BenchmarkData.results(athletes)), null, null, null, null);
+    }
+
+    @Benchmark
+    public long getAverageFinishTimeMillis() {
+        return resultService.getAverageFinishTimeMillis(BenchmarkData.EVENT_ID);
+    }
+}
\ No newline at end of file
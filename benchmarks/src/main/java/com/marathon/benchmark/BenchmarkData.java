@@ -0,0 +1,93 @@
+package com.marathon.benchmark;
+
+import com.marathon.model.Athlete;
+import com.marathon.model.Result;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 基准测试用的合成参赛数据（固定随机种子，结果可复现）
+ */
+public final class BenchmarkData {
+
+    private static final String[] GENDERS = { "男", "女" };
+
+    private static final long SEED = 20240421L;
+
+    // 全部数据归属的赛事
+    public static final long EVENT_ID = 1L;
+
+    private BenchmarkData() {}
+
+    /**
+     * 生成 athletes 名运动员的成绩，约5%无效，按总时间升序
+     */
+    public static List<Result> results(int athletes) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Result> results = new ArrayList<>(athletes);
+        for (int i = 1; i <= athletes; i++) {
+            Athlete athlete = new Athlete(
+                    String.format("CARD%08d", i),
+                    "选手" + i,
+                    GENDERS[random.nextInt(GENDERS.length)],
+                    18 + random.nextInt(58),
+                    String.format("11010119%010d", i),
+                    random.nextInt(10) == 0 ? null : String.format("138%08d", i));
+            athlete.setId((long) i);
+            athlete.setEventId(EVENT_ID);
+
+            Result result = new Result(athlete, randomFinishTime(random));
+            result.setId((long) i);
+            result.setValid(random.nextInt(20) != 0);
+            results.add(result);
+        }
+        results.sort(Comparator.comparing(Result::getTotalTimeMillis));
+        return results;
+    }
+
+    /**
+     * 2~6小时之间的随机完赛时间（毫秒精度）
+     */
+    public static long randomFinishTime(SplittableRandom random) {
+        return 2 * 3600_000L + random.nextLong(4 * 3600_000L);
+    }
+
+    /**
+     * 创建内嵌H2数据库并写入 athletes / results 两张表
+     */
+    public static EmbeddedDatabase database(List<Result> results) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(EmbeddedDatabaseType.H2)
+                .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE athletes (id BIGINT PRIMARY KEY, card_id VARCHAR(64) NOT NULL, " +
+                "name VARCHAR(64) NOT NULL, gender VARCHAR(8) NOT NULL, age INT NOT NULL, " +
+                "id_card VARCHAR(32) NOT NULL, phone VARCHAR(32))");
+        jdbcTemplate.execute("CREATE TABLE results (id BIGINT PRIMARY KEY, " +
+                "event_id BIGINT NOT NULL DEFAULT 1, athlete_id BIGINT NOT NULL, " +
+                "total_time_ms BIGINT NOT NULL, gun_time_ms BIGINT, net_time_ms BIGINT, valid BOOLEAN, ranking INT, age_group_ranking INT, gender_ranking INT)");
+
+        List<Object[]> athleteArgs = new ArrayList<>(results.size());
+        List<Object[]> resultArgs = new ArrayList<>(results.size());
+        for (Result result : results) {
+            Athlete athlete = result.getAthlete();
+            athleteArgs.add(new Object[] { athlete.getId(), athlete.getCardId(), athlete.getName(),
+                    athlete.getGender(), athlete.getAge(), athlete.getIdCard(), athlete.getPhone() });
+            resultArgs.add(new Object[] { result.getId(), athlete.getId(),
+                    result.getTotalTimeMillis(), result.getValid() });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO athletes (id, card_id, name, gender, age, id_card, phone) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)", athleteArgs);
+        jdbcTemplate.batchUpdate("INSERT INTO results (id, athlete_id, total_time_ms, valid) VALUES (?, ?, ?, ?)",
+                resultArgs);
+        return database;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.marathon.benchmark;
+
+import com.marathon.model.Result;
+import com.marathon.repository.ResultExportRepository;
+import com.marathon.util.CsvExporter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 成绩CSV导出
+ * exportDetailedResults 为基于已加载成绩列表的 OpenCSV 导出，
+ * streamDetailedResults 从H2游标逐行写出
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvExportBenchmark {
+
+    @Param({ "1000", "10000", "50000" })
+    public int athletes;
+
+    private List<Result> results;
+    private EmbeddedDatabase database;
+    private CsvExporter csvExporter;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        results = BenchmarkData.results(athletes);
+        database = BenchmarkData.database(results);
+
+        csvExporter = new CsvExporter();
+        Stubs.inject(csvExporter, "resultExportRepository", new ResultExportRepository(database, 1000));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public void exportDetailedResults() throws IOException {
+        csvExporter.exportDetailedResultsToCsv(results, Writer.nullWriter());
+    }
+
+    @Benchmark
+    public void streamDetailedResults() throws IOException {
+        csvExporter.streamDetailedResultsToCsv(BenchmarkData.EVENT_ID, Writer.nullWriter());
+    }
+}
\ No newline at end of file
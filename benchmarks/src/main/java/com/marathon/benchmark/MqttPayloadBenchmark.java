@@ -0,0 +1,141 @@
+package com.marathon.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marathon.model.ChipRead;
+import com.marathon.model.MutableChipRead;
+import com.marathon.monitor.IngestMetrics;
+import com.marathon.service.ChipReadDispatcher;
+import com.marathon.service.ChipReadJournal;
+import com.marathon.service.MqttMessageHandler;
+import com.marathon.util.ChipReadDecoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MQTT读卡报文解析
+ * parseMap 复现最初 Map 解析方式作为基线，decodeJson / decodeBinary 为 ChipReadDecoder 两种格式，
+ * handleMessage 经过真实的处理器（分发器替换为只记录最后一条读卡的替身）
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MqttPayloadBenchmark {
+
+    private static final int PAYLOAD_COUNT = 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ChipReadDecoder decoder = new ChipReadDecoder(new JsonFactory(), ZoneId.systemDefault());
+    private final MutableChipRead mutableRead = new MutableChipRead();
+
+    private String[] payloads;
+    private byte[][] jsonPayloads;
+    private byte[][] binaryPayloads;
+    private Message<?>[] messages;
+    private Message<?>[] binaryMessages;
+    private int next;
+
+    private MqttMessageHandler handler;
+    private CapturingDispatcher dispatcher;
+
+    @Setup
+    public void setup() {
+        payloads = new String[PAYLOAD_COUNT];
+        jsonPayloads = new byte[PAYLOAD_COUNT][];
+        binaryPayloads = new byte[PAYLOAD_COUNT][];
+        messages = new Message<?>[PAYLOAD_COUNT];
+        binaryMessages = new Message<?>[PAYLOAD_COUNT];
+        LocalDateTime start = LocalDateTime.of(2024, 4, 21, 7, 30);
+        for (int i = 0; i < PAYLOAD_COUNT; i++) {
+            String cardId = String.format("CARD%08d", i);
+            LocalDateTime passTime = start.plusNanos(i * 7_000_000L);
+            payloads[i] = String.format("{\"cardId\":\"%s\",\"checkpointId\":%d,\"timestamp\":\"%s\"}",
+                    cardId, 1 + i % 8, passTime);
+            jsonPayloads[i] = payloads[i].getBytes(StandardCharsets.UTF_8);
+
+            long epochMicros = passTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() * 1000;
+            binaryPayloads[i] = ByteBuffer.allocate(14 + cardId.length())
+                    .put(ChipReadDecoder.BINARY_MAGIC)
+                    .put((byte) cardId.length())
+                    .put(cardId.getBytes(StandardCharsets.US_ASCII))
+                    .putInt(1 + i % 8)
+                    .putLong(epochMicros)
+                    .array();
+
+            messages[i] = MessageBuilder.withPayload(jsonPayloads[i])
+                    .setHeader(MqttHeaders.RECEIVED_TOPIC, "marathon/timing/" + (1 + i % 8))
+                    .build();
+            binaryMessages[i] = MessageBuilder.withPayload(binaryPayloads[i])
+                    .setHeader(MqttHeaders.RECEIVED_TOPIC, "marathon/timing/" + (1 + i % 8))
+                    .build();
+        }
+
+        dispatcher = new CapturingDispatcher();
+        handler = new MqttMessageHandler();
+        Stubs.inject(handler, "chipReadDispatcher", dispatcher);
+        // 未启用读卡日志，只衡量解码和分发
+        Stubs.inject(handler, "chipReadJournal", new ChipReadJournal());
+        Stubs.inject(handler, "ingestMetrics", new IngestMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public ChipRead parseMap() throws Exception {
+        String payload = payloads[next++ & (PAYLOAD_COUNT - 1)];
+        Map<String, Object> data = objectMapper.readValue(payload, Map.class);
+        String cardId = (String) data.get("cardId");
+        Integer checkpointId = (Integer) data.get("checkpointId");
+        String timestamp = (String) data.get("timestamp");
+        return new ChipRead(cardId, checkpointId.longValue(), LocalDateTime.parse(timestamp));
+    }
+
+    @Benchmark
+    public long decodeJson() throws Exception {
+        decoder.decode(jsonPayloads[next++ & (PAYLOAD_COUNT - 1)], mutableRead);
+        return mutableRead.getPassTimeMicros();
+    }
+
+    @Benchmark
+    public long decodeBinary() throws Exception {
+        decoder.decode(binaryPayloads[next++ & (PAYLOAD_COUNT - 1)], mutableRead);
+        return mutableRead.getPassTimeMicros();
+    }
+
+    @Benchmark
+    public ChipRead handleMessage() {
+        handler.handleMessage(messages[next++ & (PAYLOAD_COUNT - 1)]);
+        return dispatcher.last;
+    }
+
+    @Benchmark
+    public ChipRead handleBinaryMessage() {
+        handler.handleMessage(binaryMessages[next++ & (PAYLOAD_COUNT - 1)]);
+        return dispatcher.last;
+    }
+
+    /**
+     * 只保存最后一条读卡，不进入分发通道
+     */
+    static final class CapturingDispatcher extends ChipReadDispatcher {
+        ChipRead last;
+
+        @Override
+        public void dispatch(ChipRead read) {
+            last = read;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,77 @@
+package com.marathon.benchmark;
+
+import com.marathon.model.Result;
+import com.marathon.service.CategoryService;
+import com.marathon.service.RankingService;
+import com.marathon.service.ResultRankWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 排名计算
+ * updateResult 为单个选手冲线后的增量排名（名次写回由后台线程批量写入H2），
+ * rebuild 为全量重排（相当于原先每次冲线都执行的 updateRankings）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RankingBenchmark {
+
+    @Param({ "1000", "10000", "50000" })
+    public int athletes;
+
+    private List<Result> results;
+    private EmbeddedDatabase database;
+    private RankingService rankingService;
+    private ResultRankWriter resultRankWriter;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        results = BenchmarkData.results(athletes);
+        database = BenchmarkData.database(results);
+        random = new SplittableRandom(1);
+
+        resultRankWriter = new ResultRankWriter();
+        Stubs.inject(resultRankWriter, "flushIntervalMs", 500L);
+        Stubs.inject(resultRankWriter, "maxLagMs", 2000L);
+        Stubs.inject(resultRankWriter, "maxPending", 5000);
+        Stubs.inject(resultRankWriter, "jdbcTemplate", new JdbcTemplate(database));
+        resultRankWriter.start();
+
+        rankingService = new RankingService();
+        Stubs.inject(rankingService, "resultRepository", Stubs.resultRepository(results));
+        Stubs.inject(rankingService, "resultRankWriter", resultRankWriter);
+        Stubs.inject(rankingService, "categoryService", Stubs.categoryService());
+        rankingService.loadEvent(BenchmarkData.EVENT_ID);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        resultRankWriter.stop();
+        database.shutdown();
+    }
+
+    @Benchmark
+    public long updateResult() {
+        Result result = results.get(random.nextInt(results.size()));
+        result.setTotalTimeMillis(BenchmarkData.randomFinishTime(random));
+        rankingService.updateResult(result);
+        return rankingService.getVersion(BenchmarkData.EVENT_ID);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long rebuild() {
+        rankingService.rebuild(BenchmarkData.EVENT_ID);
+        return rankingService.getVersion(BenchmarkData.EVENT_ID);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+package com.marathon.benchmark;
+
+import com.marathon.util.VirtualThreads;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求线程模型的负载测试
+ * 模拟观众轮询高峰：每个请求从Hikari连接池（H2）取连接查询并持有 dbMillis，
+ * 再阻塞 ioMillis（慢客户端写出、短信接口调用等不占连接的等待）。
+ * platform 为 Tomcat 默认的 200 个平台线程，virtual 为每请求一个虚拟线程（需以 Java 21 运行）；
+ * 平台线程模式受线程数限制，虚拟线程模式只受连接池限制
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestThreadingBenchmark {
+
+    private static final int REQUESTS = 5000;
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({ "platform", "virtual" })
+    public String threading;
+
+    @Param({ "30" })
+    public int poolSize;
+
+    @Param({ "2" })
+    public long dbMillis;
+
+    @Param({ "50" })
+    public long ioMillis;
+
+    private HikariDataSource dataSource;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:threading;DB_CLOSE_DELAY=-1");
+        config.setMaximumPoolSize(poolSize);
+        config.setMinimumIdle(poolSize);
+        config.setConnectionTimeout(30000);
+        dataSource = new HikariDataSource(config);
+
+        executor = "virtual".equals(threading)
+                ? VirtualThreads.newExecutor("request-")
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        dataSource.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public long requests() throws InterruptedException, ExecutionException {
+        List<Future<Long>> futures = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            futures.add(executor.submit(this::handle));
+        }
+        long sum = 0;
+        for (Future<Long> future : futures) {
+            sum += future.get();
+        }
+        return sum;
+    }
+
+    private long handle() throws SQLException, InterruptedException {
+        long value;
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT 1")) {
+            rs.next();
+            value = rs.getLong(1);
+            // H2 在进程内，用睡眠模拟到数据库的网络往返和查询耗时
+            Thread.sleep(dbMillis);
+        }
+        Thread.sleep(ioMillis);
+        return value;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.marathon.benchmark;
+
+import com.marathon.model.Result;
+import com.marathon.repository.ResultRepository;
+import com.marathon.service.CategoryService;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 不启动Spring容器时的依赖替身
+ */
+public final class Stubs {
+
+    private Stubs() {}
+
+    /**
+     * 只支持按赛事、总时间查询的内存 ResultRepository（只有一个赛事），其余方法抛出 UnsupportedOperationException
+     */
+    public static ResultRepository resultRepository(List<Result> results) {
+        List<Result> validResults = results.stream()
+                .filter(result -> Boolean.TRUE.equals(result.getValid()))
+                .collect(Collectors.toList());
+        return (ResultRepository) Proxy.newProxyInstance(
+                ResultRepository.class.getClassLoader(),
+                new Class<?>[] { ResultRepository.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findByEventIdAndValidTrueOrderByTotalTimeMillisAsc":
+                            if (args.length == 1) {
+                                return validResults;
+                            }
+                            break;
+                        case "toString":
+                            return "ResultRepositoryStub";
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            break;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * 默认年龄组加五岁一档附加分组的分组定义
+     */
+    public static CategoryService categoryService() {
+        CategoryService categoryService = new CategoryService();
+        inject(categoryService, "ageGroupSpecs", new String[] { "18-30", "31-45", "46-60", "61-100" });
+        String[] categorySpecs = new String[24];
+        for (int i = 0; i < 12; i++) {
+            int min = 20 + i * 5;
+            categorySpecs[i * 2] = "男" + min + ":男:" + min + "-" + (min + 4);
+            categorySpecs[i * 2 + 1] = "女" + min + ":女:" + min + "-" + (min + 4);
+        }
+        inject(categoryService, "categorySpecs", categorySpecs);
+        categoryService.init();
+        return categoryService;
+    }
+
+    /**
+     * 给 @Autowired 字段赋值
+     */
+    public static void inject(Object target, String fieldName, Object value) {
+        Class<?> type = target.getClass();
+        while (type != null) {
+            try {
+                Field field = type.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                field.set(target, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                type = type.getSuperclass();
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new IllegalArgumentException("No field " + fieldName + " on " + target.getClass().getName());
+    }
+}
\ No newline at end of file
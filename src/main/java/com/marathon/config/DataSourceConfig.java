@@ -0,0 +1,132 @@
+package com.marathon.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * HTTP 请求可占用的数据库连接上限
+ * 入库分区、名次写回、成绩重算、短信通知与HTTP请求共用一个连接池；在请求线程上获取的连接同时最多
+ * db.http.max.connections 个，其余连接留给后台管道，查询高峰（尤其是虚拟线程模式）不会让入库等不到连接。
+ * 取不到许可时与连接池一样最多等待 connection-timeout 毫秒后失败；配置为0时不限制
+ */
+@Configuration
+public class DataSourceConfig {
+    private static final Logger logger = LoggerFactory.getLogger(DataSourceConfig.class);
+
+    @Bean
+    public static BeanPostProcessor httpConnectionLimiter(Environment environment) {
+        int maxConnections = environment.getProperty("db.http.max.connections", Integer.class, 0);
+        int poolSize = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        long timeoutMs = environment.getProperty("spring.datasource.hikari.connection-timeout", Long.class, 30000L);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (maxConnections <= 0 || !(bean instanceof DataSource) || bean instanceof HttpLimitedDataSource) {
+                    return bean;
+                }
+                if (maxConnections >= poolSize) {
+                    logger.warn("db.http.max.connections={} 不小于连接池大小 {}，后台管道没有预留连接",
+                            maxConnections, poolSize);
+                }
+                logger.info("HTTP 请求最多占用 {} 个数据库连接（连接池 {} 个）", maxConnections, poolSize);
+                return new HttpLimitedDataSource((DataSource) bean, maxConnections, timeoutMs);
+            }
+        };
+    }
+
+    /**
+     * 只限制HTTP请求线程：获取连接前取许可，连接关闭（归还连接池）时释放
+     */
+    static final class HttpLimitedDataSource extends DelegatingDataSource {
+        private final Semaphore permits;
+        private final int maxConnections;
+        private final long timeoutMs;
+
+        HttpLimitedDataSource(DataSource target, int maxConnections, long timeoutMs) {
+            super(target);
+            this.permits = new Semaphore(maxConnections, true);
+            this.maxConnections = maxConnections;
+            this.timeoutMs = timeoutMs;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (RequestContextHolder.getRequestAttributes() == null) {
+                return super.getConnection();
+            }
+            acquire();
+            try {
+                return releaseOnClose(super.getConnection());
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            if (RequestContextHolder.getRequestAttributes() == null) {
+                return super.getConnection(username, password);
+            }
+            acquire();
+            try {
+                return releaseOnClose(super.getConnection(username, password));
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        private void acquire() throws SQLException {
+            try {
+                if (!permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new SQLTransientConnectionException(
+                            "HTTP 请求占用的数据库连接已达上限 " + maxConnections + "，等待 " + timeoutMs + " ms 超时");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("等待数据库连接被中断", e);
+            }
+        }
+
+        private Connection releaseOnClose(Connection connection) {
+            AtomicBoolean released = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                break;
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        } finally {
+                            if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                                permits.release();
+                            }
+                        }
+                    });
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.marathon.config;
+
+import com.marathon.service.ChipReadDispatcher;
+import com.marathon.service.ChipReadJournal;
+import com.marathon.service.RaceRecordIngestService;
+import com.marathon.service.SmsDispatchService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 管道各级队列深度及读卡日志损坏记录数的指标（采集时读取，不在读卡路径上产生开销）
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder pipelineQueueMetrics(ChipReadDispatcher chipReadDispatcher, ChipReadJournal chipReadJournal,
+                                            RaceRecordIngestService raceRecordIngestService,
+                                            SmsDispatchService smsDispatchService) {
+        return registry -> {
+            Gauge.builder("marathon.dispatch.queue.depth", chipReadDispatcher, ChipReadDispatcher::getQueueDepth)
+                    .description("按运动员分发通道中排队的读卡数")
+                    .register(registry);
+            Gauge.builder("marathon.journal.replay.lag", chipReadJournal, ChipReadJournal::getReplayLag)
+                    .description("已落盘但尚未回放进管道的读卡日志字节数")
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionCounter.builder("marathon.journal.corrupt.records", chipReadJournal, ChipReadJournal::getCorruptCount)
+                    .description("回放时因长度或校验失败跳过的读卡日志记录数")
+                    .register(registry);
+            Gauge.builder("marathon.ingest.queue.depth", raceRecordIngestService, RaceRecordIngestService::getQueueDepth)
+                    .description("入库队列中等待批量插入的读卡数")
+                    .register(registry);
+            Gauge.builder("marathon.sms.queue.depth", smsDispatchService, SmsDispatchService::getQueueDepth)
+                    .description("等待发送的短信数")
+                    .register(registry);
+        };
+    }
+}
\ No newline at end of file
@@ -1,11 +1,17 @@
 package com.marathon.config;
 
+import com.marathon.service.MqttMessageHandler;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
 import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.integration.channel.DirectChannel;
-import org.springframework.integration.core.MessageProducer;
+import org.springframework.integration.dsl.IntegrationFlows;
+import org.springframework.integration.dsl.context.IntegrationFlowContext;
 import org.springframework.integration.mqtt.core.DefaultMqttPahoClientFactory;
 import org.springframework.integration.mqtt.core.MqttPahoClientFactory;
 import org.springframework.integration.mqtt.inbound.MqttPahoMessageDrivenChannelAdapter;
@@ -13,19 +19,46 @@ import org.springframework.integration.mqtt.support.DefaultPahoMessageConverter;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHandler;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class MqttConfig {
 
-    private static final String MQTT_BROKER_URL = "tcp://your-mqtt-broker:1883";
-    private static final String MQTT_CLIENT_ID = "marathon-server";
-    private static final String MQTT_TOPIC = "marathon/timing";
+    @Value("${mqtt.broker.url}")
+    private String brokerUrl;
+
+    @Value("${mqtt.client.id}")
+    private String clientId;
+
+    // 逗号分隔，可按打卡点分片，如 marathon/timing/1,marathon/timing/2
+    @Value("${mqtt.topic}")
+    private String[] topics;
+
+    // 消费者（MQTT连接）数量，每个消费者有独立的回调线程
+    @Value("${mqtt.consumers:1}")
+    private int consumers;
+
+    // 共享订阅组，设置后每个消费者都以 $share/{group}/{topic} 订阅全部主题，由Broker分摊负载
+    @Value("${mqtt.shared.group:}")
+    private String sharedGroup;
+
+    @Value("${mqtt.qos:1}")
+    private int qos;
+
+    // 关闭清除会话后，未确认的QoS 1消息在重连后由Broker重新投递
+    @Value("${mqtt.clean.session:true}")
+    private boolean cleanSession;
+
+    @Autowired
+    private IntegrationFlowContext flowContext;
 
     @Bean
     public MqttPahoClientFactory mqttClientFactory() {
         DefaultMqttPahoClientFactory factory = new DefaultMqttPahoClientFactory();
         MqttConnectOptions options = new MqttConnectOptions();
-        options.setServerURIs(new String[] { MQTT_BROKER_URL });
-        options.setCleanSession(true);
+        options.setServerURIs(new String[] { brokerUrl });
+        options.setCleanSession(cleanSession);
         factory.setConnectionOptions(options);
         return factory;
     }
@@ -35,15 +68,31 @@ public class MqttConfig {
         return new DirectChannel();
     }
 
-    @Bean
-    public MessageProducer inbound() {
-        MqttPahoMessageDrivenChannelAdapter adapter =
-                new MqttPahoMessageDrivenChannelAdapter(MQTT_BROKER_URL, MQTT_CLIENT_ID, mqttClientFactory(), MQTT_TOPIC);
-        adapter.setCompletionTimeout(5000);
-        adapter.setConverter(new DefaultPahoMessageConverter());
-        adapter.setQos(1);
-        adapter.setOutputChannel(mqttInputChannel());
-        return adapter;
+    /**
+     * 应用启动完成后再注册入站适配器，确保消息处理器已订阅
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerInboundAdapters() {
+        for (int i = 0; i < consumers; i++) {
+            List<String> consumerTopics = topicsFor(i);
+            if (consumerTopics.isEmpty()) {
+                continue;
+            }
+
+            String consumerClientId = consumers == 1 ? clientId : clientId + "-" + i;
+            MqttPahoMessageDrivenChannelAdapter adapter = new MqttPahoMessageDrivenChannelAdapter(
+                    brokerUrl, consumerClientId, mqttClientFactory(), consumerTopics.toArray(new String[0]));
+            adapter.setCompletionTimeout(5000);
+            // 以字节数组交给处理器，由解码器识别二进制或JSON格式
+            DefaultPahoMessageConverter converter = new DefaultPahoMessageConverter();
+            converter.setPayloadAsBytes(true);
+            adapter.setConverter(converter);
+            adapter.setQos(qos);
+
+            flowContext.registration(IntegrationFlows.from(adapter).channel(mqttInputChannel()).get())
+                    .id("mqttInbound-" + i)
+                    .register();
+        }
     }
 
     @Bean
@@ -51,4 +100,17 @@ public class MqttConfig {
     public MessageHandler handler() {
         return new MqttMessageHandler();
     }
+
+    private List<String> topicsFor(int consumerIndex) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < topics.length; i++) {
+            String topic = topics[i].trim();
+            if (!sharedGroup.isEmpty()) {
+                result.add("$share/" + sharedGroup + "/" + topic);
+            } else if (i % consumers == consumerIndex) {
+                result.add(topic);
+            }
+        }
+        return result;
+    }
 }
\ No newline at end of file
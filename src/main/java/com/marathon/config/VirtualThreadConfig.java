@@ -0,0 +1,30 @@
+package com.marathon.config;
+
+import com.marathon.util.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 虚拟线程模式（server.threads.virtual=true，需以 Java 21 及以上运行）
+ * Tomcat 每个请求一个虚拟线程，阻塞在JPA查询、CSV导出写出上时不占用平台线程，
+ * 不再受 server.tomcat.threads.max 限制；请求并发访问数据库的上限由 db.http.max.connections 决定（见 DataSourceConfig）
+ */
+@Configuration
+@ConditionalOnProperty(name = "server.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        if (!VirtualThreads.isSupported()) {
+            throw new RuntimeException("server.threads.virtual=true 需要 Java 21 及以上，当前为 "
+                    + System.getProperty("java.version"));
+        }
+        logger.info("Tomcat 请求改用虚拟线程处理");
+        return protocolHandler -> protocolHandler.setExecutor(VirtualThreads.newExecutor("http-vt-"));
+    }
+}
\ No newline at end of file
@@ -1,11 +1,18 @@
 package com.marathon.controller;
 
 import com.marathon.model.Athlete;
+import com.marathon.model.ImportReport;
+import com.marathon.service.AthleteImportService;
 import com.marathon.service.AthleteService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,6 +23,9 @@ public class AthleteController {
     @Autowired
     private AthleteService athleteService;
 
+    @Autowired
+    private AthleteImportService athleteImportService;
+
     @PostMapping
     public ResponseEntity<?> registerAthlete(@RequestBody Athlete athlete) {
         try {
@@ -26,6 +36,30 @@ public class AthleteController {
         }
     }
 
+    @PostMapping(value = "/import", consumes = { "text/csv", MediaType.TEXT_PLAIN_VALUE })
+    public ResponseEntity<?> importAthletesCsv(@RequestParam(required = false) Long eventId,
+                                               HttpServletRequest request) {
+        try {
+            // 直接读取请求体，逐行处理
+            ImportReport report = athleteImportService.importCsv(eventId, new BufferedReader(
+                    new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8), 65536));
+            return ResponseEntity.ok(report);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error importing athletes: " + e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> importAthletesJson(@RequestParam(required = false) Long eventId,
+                                                HttpServletRequest request) {
+        try {
+            ImportReport report = athleteImportService.importJson(eventId, request.getInputStream());
+            return ResponseEntity.ok(report);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error importing athletes: " + e.getMessage());
+        }
+    }
+
     @GetMapping
     public List<Athlete> getAllAthletes() {
         return athleteService.getAllAthletes();
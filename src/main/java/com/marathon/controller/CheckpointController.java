@@ -27,8 +27,8 @@ public class CheckpointController {
     }
 
     @GetMapping
-    public List<Checkpoint> getAllCheckpoints() {
-        return checkpointService.getAllCheckpoints();
+    public List<Checkpoint> getAllCheckpoints(@RequestParam(defaultValue = "${timing.event.id:1}") Long eventId) {
+        return checkpointService.getAllCheckpoints(eventId);
     }
 
     @GetMapping("/{id}")
@@ -59,21 +59,21 @@ public class CheckpointController {
     }
 
     @GetMapping("/start")
-    public ResponseEntity<Checkpoint> getStartPoint() {
-        Optional<Checkpoint> startPoint = checkpointService.getStartPoint();
+    public ResponseEntity<Checkpoint> getStartPoint(@RequestParam(defaultValue = "${timing.event.id:1}") Long eventId) {
+        Optional<Checkpoint> startPoint = checkpointService.getStartPoint(eventId);
         return startPoint.map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/finish")
-    public ResponseEntity<Checkpoint> getFinishPoint() {
-        Optional<Checkpoint> finishPoint = checkpointService.getFinishPoint();
+    public ResponseEntity<Checkpoint> getFinishPoint(@RequestParam(defaultValue = "${timing.event.id:1}") Long eventId) {
+        Optional<Checkpoint> finishPoint = checkpointService.getFinishPoint(eventId);
         return finishPoint.map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/midpoints")
-    public List<Checkpoint> getMidPoints() {
-        return checkpointService.getMidPoints();
+    public List<Checkpoint> getMidPoints(@RequestParam(defaultValue = "${timing.event.id:1}") Long eventId) {
+        return checkpointService.getMidPoints(eventId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.marathon.controller;
+
+import com.marathon.model.Event;
+import com.marathon.service.EventService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/events")
+public class EventController {
+
+    @Autowired
+    private EventService eventService;
+
+    @GetMapping
+    public List<Event> getAllEvents() {
+        return eventService.getAllEvents();
+    }
+
+    @PostMapping
+    public ResponseEntity<?> createEvent(@RequestBody Event event) {
+        try {
+            return ResponseEntity.ok(eventService.createEvent(event));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error creating event: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 加载赛事的计时上下文，开始接收该赛事的读卡
+     */
+    @PostMapping("/{id}/load")
+    public ResponseEntity<?> loadEvent(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(eventService.load(id));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error loading event: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 卸载赛事的计时上下文，之后该赛事的读卡被丢弃
+     */
+    @PostMapping("/{id}/evict")
+    public ResponseEntity<?> evictEvent(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(eventService.evict(id));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error evicting event: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
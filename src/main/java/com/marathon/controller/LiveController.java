@@ -0,0 +1,73 @@
+package com.marathon.controller;
+
+import com.marathon.service.LeaderboardService;
+import com.marathon.service.LivePushService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
+
+/**
+ * 实时推送订阅（text/event-stream）
+ */
+@RestController
+@RequestMapping("/api/live")
+public class LiveController {
+
+    @Autowired
+    private LivePushService livePushService;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Value("${live.leaderboard.limit:10}")
+    private int leaderboardLimit;
+
+    @GetMapping(value = "/athletes/{athleteId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeAthlete(@PathVariable Long athleteId) {
+        return livePushService.subscribe(LivePushService.athleteTopic(athleteId), null, null);
+    }
+
+    @GetMapping(value = "/checkpoints/{checkpointId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeCheckpoint(@PathVariable Long checkpointId) {
+        return livePushService.subscribe(LivePushService.checkpointTopic(checkpointId), null, null);
+    }
+
+    @GetMapping(value = "/leaderboard", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeLeaderboard(
+            @RequestParam(defaultValue = "${timing.event.id:1}") Long eventId,
+            @RequestParam(required = false) String gender,
+            @RequestParam(required = false) String ageGroup,
+            @RequestParam(required = false) String category) {
+        String boardKey;
+        if (category != null) {
+            boardKey = LeaderboardService.categoryBoard(category);
+        } else if (gender != null && ageGroup != null) {
+            boardKey = LeaderboardService.genderAgeGroupBoard(gender, ageGroup);
+        } else if (gender != null) {
+            boardKey = LeaderboardService.genderBoard(gender);
+        } else if (ageGroup != null) {
+            boardKey = LeaderboardService.ageGroupBoard(ageGroup);
+        } else {
+            boardKey = LeaderboardService.OVERALL;
+        }
+
+        LeaderboardService.BoardResponse board = leaderboardService.getBoard(eventId, boardKey, leaderboardLimit);
+        if (board == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // 订阅后先推送当前榜单，之后只推送变化
+        String initial = LivePushService.boardPayload(board.getEtag(), board.getBody());
+        return ResponseEntity.ok(livePushService.subscribe(LivePushService.boardTopic(eventId, boardKey),
+                "leaderboard", initial));
+    }
+
+    @GetMapping("/stats")
+    public Map<String, Long> getStats() {
+        return livePushService.getStats();
+    }
+}
\ No newline at end of file
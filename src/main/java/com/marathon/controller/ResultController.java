@@ -1,53 +1,164 @@
 package com.marathon.controller;
 
-import com.marathon.model.Result;
+import com.marathon.model.RaceCategory;
+import com.marathon.model.ResultView;
+import com.marathon.service.CategoryService;
+import com.marathon.service.LeaderboardService;
 import com.marathon.service.ResultService;
+import com.marathon.service.SmsDispatchService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/results")
 public class ResultController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     @Autowired
     private ResultService resultService;
 
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private SmsDispatchService smsDispatchService;
+
     @GetMapping
-    public List<Result> getResults(
+    public ResponseEntity<?> getResults(
+            @RequestParam(defaultValue = "${timing.event.id:1}") Long eventId,
             @RequestParam(required = false) String gender,
-            @RequestParam(required = false) String ageGroup) {
+            @RequestParam(required = false) String ageGroup,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String after,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        // 指定了每页条数时按成绩键集分页查询数据库，用上一页返回的 next 作为 after 取下一页
+        if (size != null) {
+            return getResultPage(eventId, gender, ageGroup, category, size, after);
+        }
+
+        // 已定义的分组直接由排行榜快照提供
+        String boardKey;
+        if (category != null) {
+            boardKey = LeaderboardService.categoryBoard(category);
+        } else if (gender != null && ageGroup != null) {
+            boardKey = LeaderboardService.genderAgeGroupBoard(gender, ageGroup);
+        } else if (gender != null) {
+            boardKey = LeaderboardService.genderBoard(gender);
+        } else if (ageGroup != null) {
+            boardKey = LeaderboardService.ageGroupBoard(ageGroup);
+        } else {
+            boardKey = LeaderboardService.ALL;
+        }
+
+        // 未加载的赛事（如已结束的赛事）没有快照，同样回退到数据库查询
+        LeaderboardService.BoardResponse board = leaderboardService.getBoard(eventId, boardKey, null);
+        if (board != null) {
+            if (board.getEtag().equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(board.getEtag()).build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(board.getEtag())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(board.getBody());
+        }
+
+        // 附加分组只在快照中提供；自定义年龄段回退到数据库查询
+        if (category != null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(queryResults(eventId, gender, ageGroup));
+    }
+
+    /**
+     * 年龄组及附加分组定义
+     */
+    @GetMapping("/categories")
+    public Map<String, List<RaceCategory>> getCategories() {
+        Map<String, List<RaceCategory>> categories = new LinkedHashMap<>();
+        categories.put("ageGroups", categoryService.getAgeGroups());
+        categories.put("categories", categoryService.getCategories());
+        return categories;
+    }
+
+    private ResponseEntity<?> getResultPage(Long eventId, String gender, String ageGroup, String category,
+                                            int size, String after) {
+        if (category != null) {
+            return ResponseEntity.badRequest().body("附加分组不支持分页");
+        }
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body("每页条数应在 1 到 " + MAX_PAGE_SIZE + " 之间");
+        }
+        try {
+            Integer minAge = null;
+            Integer maxAge = null;
+            if (ageGroup != null) {
+                String[] ages = ageGroup.split("-");
+                minAge = Integer.parseInt(ages[0]);
+                maxAge = Integer.parseInt(ages[1]);
+            }
+            List<ResultView> results = resultService.getResultPage(eventId, gender, minAge, maxAge, after, size);
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("results", results);
+            body.put("next", results.size() == size ? ResultService.cursorOf(results.get(size - 1)) : null);
+            return ResponseEntity.ok(body);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error getting results: " + e.getMessage());
+        }
+    }
 
+    private List<ResultView> queryResults(Long eventId, String gender, String ageGroup) {
         if (gender != null && ageGroup != null) {
             String[] ages = ageGroup.split("-");
             int minAge = Integer.parseInt(ages[0]);
             int maxAge = Integer.parseInt(ages[1]);
-            return resultService.getResultsByGenderAndAgeGroup(gender, minAge, maxAge);
+            return resultService.getResultsByGenderAndAgeGroup(eventId, gender, minAge, maxAge);
         } else if (gender != null) {
-            return resultService.getResultsByGender(gender);
+            return resultService.getResultsByGender(eventId, gender);
         } else if (ageGroup != null) {
             String[] ages = ageGroup.split("-");
             int minAge = Integer.parseInt(ages[0]);
             int maxAge = Integer.parseInt(ages[1]);
-            return resultService.getResultsByAgeGroup(minAge, maxAge);
+            return resultService.getResultsByAgeGroup(eventId, minAge, maxAge);
         } else {
-            return resultService.getAllResults();
+            return resultService.getAllResults(eventId);
         }
     }
 
     @GetMapping("/export")
     public void exportResults(
+            @RequestParam(defaultValue = "${timing.event.id:1}") Long eventId,
             @RequestParam(required = false) String format,
             HttpServletResponse response) throws IOException {
 
         if ("csv".equalsIgnoreCase(format)) {
+            // 不设置Content-Length，边查边写，以分块传输返回
             response.setContentType("text/csv");
+            response.setCharacterEncoding("UTF-8");
             response.setHeader("Content-Disposition", "attachment; filename=marathon-results.csv");
-            resultService.exportResultsToCsv(response.getWriter());
+            Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8), 64 * 1024);
+            resultService.exportResultsToCsv(eventId, writer);
+            writer.flush();
         } else {
             response.setContentType("application/json");
             response.getWriter().write("JSON export not implemented yet");
@@ -59,12 +170,17 @@ public class ResultController {
         try {
             boolean sent = resultService.sendResultSms(athleteId);
             if (sent) {
-                return ResponseEntity.ok("SMS sent successfully");
+                return ResponseEntity.accepted().body("SMS queued");
             } else {
-                return ResponseEntity.badRequest().body("Failed to send SMS");
+                return ResponseEntity.badRequest().body("SMS already sent or could not be queued");
             }
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error sending SMS: " + e.getMessage());
         }
     }
+
+    @GetMapping("/sms/stats")
+    public ResponseEntity<Map<String, Object>> getSmsStats() {
+        return ResponseEntity.ok(smsDispatchService.getStats());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.marathon.controller;
+
+import com.marathon.model.Checkpoint;
+import com.marathon.model.SplitView;
+import com.marathon.service.LookupCacheService;
+import com.marathon.service.SplitAnalyticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分段分析查询（直接读内存，供直播解说使用）
+ */
+@RestController
+@RequestMapping("/api/splits")
+public class SplitController {
+
+    @Autowired
+    private SplitAnalyticsService splitAnalyticsService;
+
+    @Autowired
+    private LookupCacheService lookupCacheService;
+
+    @GetMapping("/athletes/{athleteId}")
+    public List<SplitView> getAthleteSplits(@PathVariable Long athleteId) {
+        return splitAnalyticsService.getAthleteSplits(athleteId);
+    }
+
+    @GetMapping("/athletes/{athleteId}/checkpoints/{checkpointId}")
+    public ResponseEntity<SplitView> getSplit(@PathVariable Long athleteId, @PathVariable Long checkpointId) {
+        Checkpoint checkpoint = lookupCacheService.findCheckpoint(checkpointId);
+        SplitView split = checkpoint != null ? splitAnalyticsService.getSplit(athleteId, checkpoint) : null;
+        return split != null ? ResponseEntity.ok(split) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 打卡点按芯片时间的前N名及到达人数
+     */
+    @GetMapping("/checkpoints/{checkpointId}")
+    public ResponseEntity<?> getCheckpointLeaders(@PathVariable Long checkpointId,
+                                                  @RequestParam(defaultValue = "10") Integer limit) {
+        Checkpoint checkpoint = lookupCacheService.findCheckpoint(checkpointId);
+        if (checkpoint == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("checkpointId", checkpoint.getId());
+        body.put("checkpointName", checkpoint.getName());
+        body.put("passed", splitAnalyticsService.getCheckpointCount(checkpoint));
+        body.put("leaders", splitAnalyticsService.getCheckpointLeaders(checkpoint, limit));
+        return ResponseEntity.ok(body);
+    }
+}
\ No newline at end of file
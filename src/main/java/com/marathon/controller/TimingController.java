@@ -1,12 +1,28 @@
 package com.marathon.controller;
 
 import com.marathon.model.RaceRecord;
+import com.marathon.model.RecomputeJob;
+import com.marathon.model.ResultView;
+import com.marathon.service.ChipReadJournal;
+import com.marathon.service.JournalReplayService;
+import com.marathon.service.LeaderboardService;
+import com.marathon.service.LookupCacheService;
+import com.marathon.service.RaceArchiveService;
+import com.marathon.service.RaceRecomputeService;
+import com.marathon.service.RankingService;
+import com.marathon.service.ReadDeduplicationService;
 import com.marathon.service.TimingService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/timing")
@@ -15,6 +31,30 @@ public class TimingController {
     @Autowired
     private TimingService timingService;
 
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private LookupCacheService lookupCacheService;
+
+    @Autowired
+    private ReadDeduplicationService readDeduplicationService;
+
+    @Autowired
+    private RankingService rankingService;
+
+    @Autowired
+    private RaceRecomputeService raceRecomputeService;
+
+    @Autowired
+    private RaceArchiveService raceArchiveService;
+
+    @Autowired
+    private ChipReadJournal chipReadJournal;
+
+    @Autowired
+    private JournalReplayService journalReplayService;
+
     @GetMapping("/records/{athleteId}")
     public ResponseEntity<List<RaceRecord>> getAthleteRecords(@PathVariable Long athleteId) {
         try {
@@ -41,7 +81,7 @@ public class TimingController {
     @PostMapping("/recalculate/{athleteId}")
     public ResponseEntity<?> recalculateResult(@PathVariable Long athleteId) {
         try {
-            timingService.calculateResult(athleteId);
+            timingService.recalculateResult(athleteId);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error recalculating result: " + e.getMessage());
@@ -49,11 +89,92 @@ public class TimingController {
     }
 
     @GetMapping("/leaderboard")
-    public ResponseEntity<?> getLeaderboard(@RequestParam(defaultValue = "10") Integer limit) {
+    public ResponseEntity<?> getLeaderboard(
+            @RequestParam(defaultValue = "${timing.event.id:1}") Long eventId,
+            @RequestParam(defaultValue = "10") Integer limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
-            return ResponseEntity.ok(timingService.getLeaderboard(limit));
+            // 直接返回内存中预序列化的快照，未变化时返回304
+            LeaderboardService.BoardResponse board = leaderboardService.getBoard(eventId, LeaderboardService.OVERALL, limit);
+            if (board == null) {
+                // 赛事未加载，回退到数据库查询
+                return ResponseEntity.ok(timingService.getLeaderboard(eventId, limit).stream()
+                        .map(ResultView::of).collect(Collectors.toList()));
+            }
+            if (board.getEtag().equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(board.getEtag()).build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(board.getEtag())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(board.getBody());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error getting leaderboard: " + e.getMessage());
         }
     }
+
+    /**
+     * 提交赛事成绩重算任务，返回任务进度
+     */
+    @PostMapping("/recompute")
+    public ResponseEntity<?> submitRecompute(@RequestParam(defaultValue = "${timing.event.id:1}") Long eventId) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(raceRecomputeService.submit(eventId));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Error submitting recompute: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/recompute/{jobId}")
+    public ResponseEntity<RecomputeJob> getRecompute(@PathVariable long jobId) {
+        RecomputeJob job = raceRecomputeService.getJob(jobId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping("/recompute/{jobId}")
+    public ResponseEntity<RecomputeJob> cancelRecompute(@PathVariable long jobId) {
+        RecomputeJob job = raceRecomputeService.cancel(jobId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 比赛结束：强制写回全部待写名次
+     */
+    @PostMapping("/rankings/flush")
+    public ResponseEntity<?> flushRankings() {
+        try {
+            return ResponseEntity.ok(Collections.singletonMap("flushed", rankingService.flushRankings()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error flushing rankings: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 把已结束赛事的打卡记录移出热表
+     */
+    @PostMapping("/events/{eventId}/archive")
+    public ResponseEntity<?> archiveEvent(@PathVariable long eventId) {
+        try {
+            return ResponseEntity.ok(Collections.singletonMap("archived", raceArchiveService.archiveEvent(eventId)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error archiving event: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/stats/lookup")
+    public Map<String, Long> getLookupCacheStats() {
+        return lookupCacheService.getStats();
+    }
+
+    @GetMapping("/stats/dedup")
+    public Map<String, Object> getDeduplicationStats() {
+        return readDeduplicationService.getStats();
+    }
+
+    @GetMapping("/stats/journal")
+    public Map<String, Object> getJournalStats() {
+        Map<String, Object> stats = chipReadJournal.getStats();
+        stats.put("replayed", journalReplayService.getReplayedCount());
+        return stats;
+    }
 }
\ No newline at end of file
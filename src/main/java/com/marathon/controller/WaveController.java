@@ -0,0 +1,50 @@
+package com.marathon.controller;
+
+import com.marathon.model.Wave;
+import com.marathon.service.SplitRecomputeService;
+import com.marathon.service.WaveService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/waves")
+public class WaveController {
+
+    @Autowired
+    private WaveService waveService;
+
+    @Autowired
+    private SplitRecomputeService splitRecomputeService;
+
+    @GetMapping
+    public List<Wave> getAllWaves(@RequestParam(defaultValue = "${timing.event.id:1}") Long eventId) {
+        return waveService.getAllWaves(eventId);
+    }
+
+    @PostMapping
+    public ResponseEntity<?> createWave(@RequestBody Wave wave) {
+        try {
+            return ResponseEntity.ok(waveService.createWave(wave));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error creating wave: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 修正发枪时间，并行重算受影响的分段时间和成绩
+     */
+    @PutMapping("/{id}/gun-time")
+    public ResponseEntity<?> correctGunTime(@PathVariable Long id, @RequestParam String gunTime) {
+        try {
+            long records = splitRecomputeService.correctGunTime(id, LocalDateTime.parse(gunTime));
+            return ResponseEntity.ok(Collections.singletonMap("recomputed", records));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error correcting gun time: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
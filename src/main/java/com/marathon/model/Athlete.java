@@ -2,14 +2,23 @@ package com.marathon.model;
 
 import javax.persistence.*;
 
+/**
+ * 运动员（某一赛事的报名），卡号在赛事内唯一；同时计时的赛事之间卡号不能重复，加载赛事时校验
+ */
 @Entity
-@Table(name = "athletes")
+@Table(name = "athletes", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_athletes_event_card", columnNames = { "event_id", "card_id" })
+})
 public class Athlete {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(name = "card_id", unique = true, nullable = false)
+    // 所属赛事；升级前的旧数据归入赛事1
+    @Column(name = "event_id", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 1")
+    private Long eventId;
+
+    @Column(name = "card_id", nullable = false)
     private String cardId;
 
     @Column(nullable = false)
@@ -26,6 +35,10 @@ public class Athlete {
 
     private String phone;
 
+    // 出发批次
+    @Column(name = "wave_id")
+    private Long waveId;
+
     // 构造函数、getter和setter方法
     public Athlete() {}
 
@@ -42,6 +55,9 @@ public class Athlete {
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
+    public Long getEventId() { return eventId; }
+    public void setEventId(Long eventId) { this.eventId = eventId; }
+
     public String getCardId() { return cardId; }
     public void setCardId(String cardId) { this.cardId = cardId; }
 
@@ -59,4 +75,7 @@ public class Athlete {
 
     public String getPhone() { return phone; }
     public void setPhone(String phone) { this.phone = phone; }
+
+    public Long getWaveId() { return waveId; }
+    public void setWaveId(Long waveId) { this.waveId = waveId; }
 }
\ No newline at end of file
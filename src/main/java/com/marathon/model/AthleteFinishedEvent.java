@@ -0,0 +1,30 @@
+package com.marathon.model;
+
+/**
+ * 运动员完赛（或成绩被重新计算）事件，由 TimingService 在成绩保存后发布
+ */
+public class AthleteFinishedEvent {
+    private final Long athleteId;
+
+    private final Long resultId;
+
+    // 芯片成绩（毫秒）
+    private final Long totalTimeMillis;
+
+    private final boolean valid;
+
+    public AthleteFinishedEvent(Long athleteId, Long resultId, Long totalTimeMillis, boolean valid) {
+        this.athleteId = athleteId;
+        this.resultId = resultId;
+        this.totalTimeMillis = totalTimeMillis;
+        this.valid = valid;
+    }
+
+    public Long getAthleteId() { return athleteId; }
+
+    public Long getResultId() { return resultId; }
+
+    public Long getTotalTimeMillis() { return totalTimeMillis; }
+
+    public boolean isValid() { return valid; }
+}
\ No newline at end of file
@@ -2,6 +2,9 @@ package com.marathon.model;
 
 import javax.persistence.*;
 
+/**
+ * 打卡点，属于一个赛事；多个赛事共用同一读卡垫时各自建打卡点，用读卡垫编号关联
+ */
 @Entity
 @Table(name = "checkpoints")
 public class Checkpoint {
@@ -9,6 +12,14 @@ public class Checkpoint {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // 所属赛事；升级前的旧数据归入赛事1
+    @Column(name = "event_id", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 1")
+    private Long eventId;
+
+    // 读卡器上报的读卡垫编号，为空时读卡器上报的就是打卡点ID
+    @Column(name = "mat_id")
+    private Long matId;
+
     @Column(nullable = false)
     private String name;
 
@@ -47,6 +58,12 @@ public class Checkpoint {
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
+    public Long getEventId() { return eventId; }
+    public void setEventId(Long eventId) { this.eventId = eventId; }
+
+    public Long getMatId() { return matId; }
+    public void setMatId(Long matId) { this.matId = matId; }
+
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
 
@@ -0,0 +1,39 @@
+package com.marathon.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一次芯片读卡数据（尚未写入 race_records）
+ */
+public class ChipRead {
+    private String cardId;
+
+    private Long checkpointId;
+
+    private LocalDateTime passTime;
+
+    // 在本地读卡日志中的起始偏移，-1表示未经日志
+    private long journalOffset = -1;
+
+    // 构造函数、getter和setter方法
+    public ChipRead() {}
+
+    public ChipRead(String cardId, Long checkpointId, LocalDateTime passTime) {
+        this.cardId = cardId;
+        this.checkpointId = checkpointId;
+        this.passTime = passTime;
+    }
+
+    // Getter和Setter方法
+    public String getCardId() { return cardId; }
+    public void setCardId(String cardId) { this.cardId = cardId; }
+
+    public Long getCheckpointId() { return checkpointId; }
+    public void setCheckpointId(Long checkpointId) { this.checkpointId = checkpointId; }
+
+    public LocalDateTime getPassTime() { return passTime; }
+    public void setPassTime(LocalDateTime passTime) { this.passTime = passTime; }
+
+    public long getJournalOffset() { return journalOffset; }
+    public void setJournalOffset(long journalOffset) { this.journalOffset = journalOffset; }
+}
\ No newline at end of file
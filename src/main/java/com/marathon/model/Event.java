@@ -0,0 +1,46 @@
+package com.marathon.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 赛事（如同一天上午的全马、半马、10公里），打卡点、运动员、出发批次和成绩都归属于一个赛事
+ */
+@Entity
+@Table(name = "events")
+public class Event {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String name;
+
+    // 计划开赛时间，仅供展示，实际起算以出发批次发枪时间为准
+    @Column(name = "start_time")
+    private LocalDateTime startTime;
+
+    // 计时上下文是否已加载，重启后自动加载
+    private Boolean active = false;
+
+    // 构造函数、getter和setter方法
+    public Event() {}
+
+    public Event(String name, LocalDateTime startTime) {
+        this.name = name;
+        this.startTime = startTime;
+    }
+
+    // Getter和Setter方法
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public LocalDateTime getStartTime() { return startTime; }
+    public void setStartTime(LocalDateTime startTime) { this.startTime = startTime; }
+
+    public Boolean getActive() { return active; }
+    public void setActive(Boolean active) { this.active = active; }
+}
\ No newline at end of file
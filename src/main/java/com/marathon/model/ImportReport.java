@@ -0,0 +1,59 @@
+package com.marathon.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量导入结果：总行数、成功行数及逐行错误
+ */
+public class ImportReport {
+    private int totalRows;
+
+    private int importedRows;
+
+    private final List<RowError> errors = new ArrayList<>();
+
+    public void addRow() {
+        totalRows++;
+    }
+
+    public void addImported(int rows) {
+        importedRows += rows;
+    }
+
+    public void addError(int row, String cardId, String message) {
+        errors.add(new RowError(row, cardId, message));
+    }
+
+    // Getter方法
+    public int getTotalRows() { return totalRows; }
+
+    public int getImportedRows() { return importedRows; }
+
+    public int getFailedRows() { return errors.size(); }
+
+    public List<RowError> getErrors() { return errors; }
+
+    /**
+     * 单行错误（行号从1开始，CSV含表头行）
+     */
+    public static class RowError {
+        private final int row;
+
+        private final String cardId;
+
+        private final String message;
+
+        public RowError(int row, String cardId, String message) {
+            this.row = row;
+            this.cardId = cardId;
+            this.message = message;
+        }
+
+        public int getRow() { return row; }
+
+        public String getCardId() { return cardId; }
+
+        public String getMessage() { return message; }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.marathon.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * 可复用的读卡解码目标，每个MQTT回调线程持有一个，解码时不分配对象
+ * 通过时间为本地时间自 1970-01-01T00:00 起的微秒数
+ */
+public class MutableChipRead {
+    public static final int MAX_CARD_ID_LENGTH = 64;
+
+    private final char[] cardId = new char[MAX_CARD_ID_LENGTH];
+
+    private int cardIdLength;
+
+    private long checkpointId;
+
+    private boolean hasCheckpointId;
+
+    private long passTimeMicros;
+
+    private boolean hasPassTime;
+
+    /**
+     * 清空，准备解码下一条报文
+     */
+    public void reset() {
+        cardIdLength = 0;
+        checkpointId = 0;
+        hasCheckpointId = false;
+        passTimeMicros = 0;
+        hasPassTime = false;
+    }
+
+    /**
+     * 写入卡号的下一个字符
+     * @return 超出最大长度时返回false
+     */
+    public boolean appendCardId(char c) {
+        if (cardIdLength >= MAX_CARD_ID_LENGTH) {
+            return false;
+        }
+        cardId[cardIdLength++] = c;
+        return true;
+    }
+
+    public void setCheckpointId(long checkpointId) {
+        this.checkpointId = checkpointId;
+        this.hasCheckpointId = true;
+    }
+
+    public void setPassTimeMicros(long passTimeMicros) {
+        this.passTimeMicros = passTimeMicros;
+        this.hasPassTime = true;
+    }
+
+    /**
+     * 转为不可变的 ChipRead，交给分发通道
+     */
+    public ChipRead toChipRead() {
+        LocalDateTime passTime = LocalDateTime.ofEpochSecond(
+                Math.floorDiv(passTimeMicros, 1_000_000L),
+                (int) Math.floorMod(passTimeMicros, 1_000_000L) * 1000,
+                ZoneOffset.UTC);
+        return new ChipRead(new String(cardId, 0, cardIdLength), hasCheckpointId ? checkpointId : null, passTime);
+    }
+
+    // Getter方法
+    public int getCardIdLength() { return cardIdLength; }
+
+    public long getCheckpointId() { return checkpointId; }
+
+    public boolean hasCheckpointId() { return hasCheckpointId; }
+
+    public long getPassTimeMicros() { return passTimeMicros; }
+
+    public boolean hasPassTime() { return hasPassTime; }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.marathon.model;
+
+/**
+ * 成绩分组定义：按性别和年龄段筛选，条件为空表示不限
+ */
+public class RaceCategory {
+    private final String name;
+
+    private final String gender;
+
+    private final Integer minAge;
+
+    private final Integer maxAge;
+
+    public RaceCategory(String name, String gender, Integer minAge, Integer maxAge) {
+        this.name = name;
+        this.gender = gender;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * 解析分组定义，格式为 名称:性别:年龄段，性别或年龄段为 * 表示不限，如 男50-54:男:50-54
+     */
+    public static RaceCategory parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        if (parts.length != 3 || parts[0].trim().isEmpty()) {
+            throw new IllegalArgumentException("分组定义格式应为 名称:性别:年龄段 - " + spec);
+        }
+        String gender = "*".equals(parts[1].trim()) ? null : parts[1].trim();
+        int[] ages = "*".equals(parts[2].trim()) ? null : parseAgeRange(parts[2]);
+        return new RaceCategory(parts[0].trim(), gender,
+                ages != null ? ages[0] : null, ages != null ? ages[1] : null);
+    }
+
+    /**
+     * 解析年龄段，如 18-30
+     */
+    public static int[] parseAgeRange(String range) {
+        String[] ages = range.trim().split("-");
+        if (ages.length != 2) {
+            throw new IllegalArgumentException("年龄段格式应为 最小-最大 - " + range);
+        }
+        int min = Integer.parseInt(ages[0].trim());
+        int max = Integer.parseInt(ages[1].trim());
+        if (min > max) {
+            throw new IllegalArgumentException("年龄段最小值大于最大值 - " + range);
+        }
+        return new int[] { min, max };
+    }
+
+    public boolean matches(String athleteGender, Integer athleteAge) {
+        if (gender != null && !gender.equals(athleteGender)) {
+            return false;
+        }
+        if (minAge != null && (athleteAge == null || athleteAge < minAge || athleteAge > maxAge)) {
+            return false;
+        }
+        return true;
+    }
+
+    // Getter方法
+    public String getName() { return name; }
+
+    public String getGender() { return gender; }
+
+    public Integer getMinAge() { return minAge; }
+
+    public Integer getMaxAge() { return maxAge; }
+}
\ No newline at end of file
@@ -3,19 +3,32 @@ package com.marathon.model;
 import javax.persistence.*;
 import java.time.LocalDateTime;
 
+/**
+ * 打卡记录，按赛事（event_id）划分
+ * 复合索引覆盖按运动员、按打卡点和按时间段的查询；表可按 event_id 分区
+ * （见 db/race_records_partitioning.sql），分区表不支持外键，因此不生成外键约束
+ */
 @Entity
-@Table(name = "race_records")
+@Table(name = "race_records", indexes = {
+        @Index(name = "idx_rr_event_athlete", columnList = "event_id, athlete_id, checkpoint_id, pass_time"),
+        @Index(name = "idx_rr_event_checkpoint", columnList = "event_id, checkpoint_id, pass_time"),
+        @Index(name = "idx_rr_event_pass_time", columnList = "event_id, pass_time")
+})
 public class RaceRecord {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // 所属赛事；升级前的旧记录归入赛事1
+    @Column(name = "event_id", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 1")
+    private Long eventId;
+
     @ManyToOne
-    @JoinColumn(name = "athlete_id", nullable = false)
+    @JoinColumn(name = "athlete_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Athlete athlete;
 
     @ManyToOne
-    @JoinColumn(name = "checkpoint_id", nullable = false)
+    @JoinColumn(name = "checkpoint_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Checkpoint checkpoint;
 
     @Column(name = "pass_time", nullable = false)
@@ -23,10 +36,21 @@ public class RaceRecord {
 
     private String duration;
 
+    // 该分段的三种计时（毫秒）：枪声时间、批次净时间、芯片时间，起点未知时为null
+    @Column(name = "gun_time_ms")
+    private Long gunTimeMillis;
+
+    @Column(name = "net_time_ms")
+    private Long netTimeMillis;
+
+    @Column(name = "chip_time_ms")
+    private Long chipTimeMillis;
+
     // 构造函数、getter和setter方法
     public RaceRecord() {}
 
-    public RaceRecord(Athlete athlete, Checkpoint checkpoint, LocalDateTime passTime) {
+    public RaceRecord(Long eventId, Athlete athlete, Checkpoint checkpoint, LocalDateTime passTime) {
+        this.eventId = eventId;
         this.athlete = athlete;
         this.checkpoint = checkpoint;
         this.passTime = passTime;
@@ -36,6 +60,9 @@ public class RaceRecord {
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
+    public Long getEventId() { return eventId; }
+    public void setEventId(Long eventId) { this.eventId = eventId; }
+
     public Athlete getAthlete() { return athlete; }
     public void setAthlete(Athlete athlete) { this.athlete = athlete; }
 
@@ -47,4 +74,13 @@ public class RaceRecord {
 
     public String getDuration() { return duration; }
     public void setDuration(String duration) { this.duration = duration; }
+
+    public Long getGunTimeMillis() { return gunTimeMillis; }
+    public void setGunTimeMillis(Long gunTimeMillis) { this.gunTimeMillis = gunTimeMillis; }
+
+    public Long getNetTimeMillis() { return netTimeMillis; }
+    public void setNetTimeMillis(Long netTimeMillis) { this.netTimeMillis = netTimeMillis; }
+
+    public Long getChipTimeMillis() { return chipTimeMillis; }
+    public void setChipTimeMillis(Long chipTimeMillis) { this.chipTimeMillis = chipTimeMillis; }
 }
\ No newline at end of file
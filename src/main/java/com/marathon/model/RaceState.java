@@ -0,0 +1,84 @@
+package com.marathon.model;
+
+import java.util.BitSet;
+
+/**
+ * 单个运动员的比赛状态（内存），随每条打卡记录增量更新
+ * 时间均为毫秒时间戳，0表示尚无记录；非线程安全，由调用方加锁
+ */
+public class RaceState {
+    // 已到达的打卡点，按打卡点ID置位
+    private final BitSet visitedCheckpoints = new BitSet();
+
+    private long startMillis;
+
+    private long finishMillis;
+
+    private long lastSplitMillis;
+
+    private long lastCheckpointId;
+
+    private int lastOrderIndex = -1;
+
+    // 按时间先后出现了序号倒退的打卡（漏跑、抄近路或误读）
+    private boolean orderViolated;
+
+    /**
+     * 记录一次打卡
+     */
+    public void record(Checkpoint checkpoint, long passMillis) {
+        visitedCheckpoints.set(checkpoint.getId().intValue());
+
+        if (Boolean.TRUE.equals(checkpoint.getIsStart())) {
+            // 多次经过起点时取最后一次
+            startMillis = Math.max(startMillis, passMillis);
+        }
+        if (Boolean.TRUE.equals(checkpoint.getIsFinish())) {
+            // 多次经过终点时取第一次
+            finishMillis = finishMillis == 0 ? passMillis : Math.min(finishMillis, passMillis);
+        }
+
+        int orderIndex = checkpoint.getOrderIndex();
+        if (passMillis >= lastSplitMillis) {
+            if (orderIndex < lastOrderIndex) {
+                orderViolated = true;
+            }
+            lastSplitMillis = passMillis;
+            lastCheckpointId = checkpoint.getId();
+            lastOrderIndex = orderIndex;
+        } else if (orderIndex > lastOrderIndex) {
+            // 迟到的记录时间更早，序号却更靠后
+            orderViolated = true;
+        }
+    }
+
+    public boolean hasVisited(Long checkpointId) {
+        return visitedCheckpoints.get(checkpointId.intValue());
+    }
+
+    public int getVisitedCount() {
+        return visitedCheckpoints.cardinality();
+    }
+
+    public boolean isFinished() {
+        return startMillis > 0 && finishMillis >= startMillis;
+    }
+
+    /**
+     * 总用时（毫秒），未完赛时返回-1
+     */
+    public long getElapsedMillis() {
+        return isFinished() ? finishMillis - startMillis : -1;
+    }
+
+    // Getter方法
+    public long getStartMillis() { return startMillis; }
+
+    public long getFinishMillis() { return finishMillis; }
+
+    public long getLastSplitMillis() { return lastSplitMillis; }
+
+    public long getLastCheckpointId() { return lastCheckpointId; }
+
+    public boolean isOrderViolated() { return orderViolated; }
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+package com.marathon.model;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 全场成绩重算任务的进度，由任务线程更新、接口线程读取
+ */
+public class RecomputeJob {
+
+    public enum Status { RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    /**
+     * 执行阶段：读取打卡记录、并行计算、写回成绩、重建排名
+     */
+    public enum Phase { LOADING, COMPUTING, WRITING, RANKING, DONE }
+
+    private final long id;
+
+    private final long eventId;
+
+    private final LocalDateTime startedAt = LocalDateTime.now();
+
+    private volatile LocalDateTime finishedAt;
+
+    private volatile Status status = Status.RUNNING;
+
+    private volatile Phase phase = Phase.LOADING;
+
+    private volatile String error;
+
+    private volatile boolean cancelRequested;
+
+    private volatile int totalAthletes;
+
+    private final AtomicLong loadedRecords = new AtomicLong();
+
+    private final AtomicInteger computedAthletes = new AtomicInteger();
+
+    private final AtomicInteger writtenResults = new AtomicInteger();
+
+    public RecomputeJob(long id, long eventId) {
+        this.id = id;
+        this.eventId = eventId;
+    }
+
+    public void requestCancel() {
+        cancelRequested = true;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    public void startPhase(Phase phase) {
+        this.phase = phase;
+    }
+
+    public void setTotalAthletes(int totalAthletes) {
+        this.totalAthletes = totalAthletes;
+    }
+
+    public void addLoadedRecords(long records) {
+        loadedRecords.addAndGet(records);
+    }
+
+    public void addComputedAthletes(int athletes) {
+        computedAthletes.addAndGet(athletes);
+    }
+
+    public void addWrittenResults(int results) {
+        writtenResults.addAndGet(results);
+    }
+
+    public void finish(Status status, String error) {
+        this.status = status;
+        this.error = error;
+        this.finishedAt = LocalDateTime.now();
+    }
+
+    // Getter方法
+    public long getId() { return id; }
+    public long getEventId() { return eventId; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+
+    public Status getStatus() { return status; }
+
+    public Phase getPhase() { return phase; }
+
+    public String getError() { return error; }
+
+    public int getTotalAthletes() { return totalAthletes; }
+
+    public long getLoadedRecords() { return loadedRecords.get(); }
+
+    public int getComputedAthletes() { return computedAthletes.get(); }
+
+    public int getWrittenResults() { return writtenResults.get(); }
+
+    /**
+     * 计算阶段的完成百分比
+     */
+    public int getProgressPercent() {
+        int total = totalAthletes;
+        if (status == Status.COMPLETED) {
+            return 100;
+        }
+        return total == 0 ? 0 : (int) (computedAthletes.get() * 100L / total);
+    }
+}
\ No newline at end of file
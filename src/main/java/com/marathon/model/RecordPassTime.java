@@ -0,0 +1,13 @@
+package com.marathon.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * 打卡记录的 (打卡点, 过点时间) 投影，查询只读取 idx_rr_event_athlete 索引列
+ */
+public interface RecordPassTime {
+
+    Long getCheckpointId();
+
+    LocalDateTime getPassTime();
+}
\ No newline at end of file
@@ -1,49 +1,77 @@
 package com.marathon.model;
 
 import javax.persistence.*;
-import java.time.LocalTime;
 
 @Entity
-@Table(name = "results")
+@Table(name = "results", indexes = {
+        @Index(name = "idx_results_event_time", columnList = "event_id, valid, total_time_ms"),
+        // 不区分有效性的成绩列表（含无效成绩）按成绩分页
+        @Index(name = "idx_results_event_total", columnList = "event_id, total_time_ms")
+})
 public class Result {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // 所属赛事，与运动员一致，冗余存放以便按赛事查询和排名
+    @Column(name = "event_id", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 1")
+    private Long eventId;
+
     @OneToOne
     @JoinColumn(name = "athlete_id", nullable = false)
     private Athlete athlete;
 
-    @Column(name = "total_time", nullable = false)
-    private LocalTime totalTime;
+    // 成绩（芯片时间，毫秒），用于排名
+    @Column(name = "total_time_ms", nullable = false)
+    private Long totalTimeMillis;
+
+    // 枪声时间：自比赛开始（第一批次发枪）起算
+    @Column(name = "gun_time_ms")
+    private Long gunTimeMillis;
+
+    // 净时间：自本人所在批次发枪起算
+    @Column(name = "net_time_ms")
+    private Long netTimeMillis;
 
     private Boolean valid = true;
 
+    // 名次只由 ResultRankWriter 写回，JPA保存成绩时不覆盖
+    @Column(updatable = false)
     private Integer ranking;
 
-    @Column(name = "age_group_ranking")
+    @Column(name = "age_group_ranking", updatable = false)
     private Integer ageGroupRanking;
 
-    @Column(name = "gender_ranking")
+    @Column(name = "gender_ranking", updatable = false)
     private Integer genderRanking;
 
     // 构造函数、getter和setter方法
     public Result() {}
 
-    public Result(Athlete athlete, LocalTime totalTime) {
+    public Result(Athlete athlete, Long totalTimeMillis) {
         this.athlete = athlete;
-        this.totalTime = totalTime;
+        this.eventId = athlete.getEventId();
+        this.totalTimeMillis = totalTimeMillis;
     }
 
     // Getter和Setter方法
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
+    public Long getEventId() { return eventId; }
+    public void setEventId(Long eventId) { this.eventId = eventId; }
+
     public Athlete getAthlete() { return athlete; }
     public void setAthlete(Athlete athlete) { this.athlete = athlete; }
 
-    public LocalTime getTotalTime() { return totalTime; }
-    public void setTotalTime(LocalTime totalTime) { this.totalTime = totalTime; }
+    public Long getTotalTimeMillis() { return totalTimeMillis; }
+    public void setTotalTimeMillis(Long totalTimeMillis) { this.totalTimeMillis = totalTimeMillis; }
+
+    public Long getGunTimeMillis() { return gunTimeMillis; }
+    public void setGunTimeMillis(Long gunTimeMillis) { this.gunTimeMillis = gunTimeMillis; }
+
+    public Long getNetTimeMillis() { return netTimeMillis; }
+    public void setNetTimeMillis(Long netTimeMillis) { this.netTimeMillis = netTimeMillis; }
 
     public Boolean getValid() { return valid; }
     public void setValid(Boolean valid) { this.valid = valid; }
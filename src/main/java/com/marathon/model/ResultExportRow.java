@@ -0,0 +1,69 @@
+package com.marathon.model;
+
+/**
+ * 成绩导出行（results 与 athletes 的投影），流式导出时逐行复用同一个实例
+ * 名次为0表示暂无名次
+ */
+public class ResultExportRow {
+    private int ranking;
+
+    private long totalTimeMillis;
+
+    // 枪声时间、净时间，为null表示未记录
+    private Long gunTimeMillis;
+
+    private Long netTimeMillis;
+
+    private boolean valid;
+
+    private int ageGroupRanking;
+
+    private int genderRanking;
+
+    private String name;
+
+    private String gender;
+
+    private int age;
+
+    private String idCard;
+
+    private String phone;
+
+    // Getter和Setter方法
+    public int getRanking() { return ranking; }
+    public void setRanking(int ranking) { this.ranking = ranking; }
+
+    public long getTotalTimeMillis() { return totalTimeMillis; }
+    public void setTotalTimeMillis(long totalTimeMillis) { this.totalTimeMillis = totalTimeMillis; }
+
+    public Long getGunTimeMillis() { return gunTimeMillis; }
+    public void setGunTimeMillis(Long gunTimeMillis) { this.gunTimeMillis = gunTimeMillis; }
+
+    public Long getNetTimeMillis() { return netTimeMillis; }
+    public void setNetTimeMillis(Long netTimeMillis) { this.netTimeMillis = netTimeMillis; }
+
+    public boolean isValid() { return valid; }
+    public void setValid(boolean valid) { this.valid = valid; }
+
+    public int getAgeGroupRanking() { return ageGroupRanking; }
+    public void setAgeGroupRanking(int ageGroupRanking) { this.ageGroupRanking = ageGroupRanking; }
+
+    public int getGenderRanking() { return genderRanking; }
+    public void setGenderRanking(int genderRanking) { this.genderRanking = genderRanking; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getGender() { return gender; }
+    public void setGender(String gender) { this.gender = gender; }
+
+    public int getAge() { return age; }
+    public void setAge(int age) { this.age = age; }
+
+    public String getIdCard() { return idCard; }
+    public void setIdCard(String idCard) { this.idCard = idCard; }
+
+    public String getPhone() { return phone; }
+    public void setPhone(String phone) { this.phone = phone; }
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.marathon.model;
+
+import com.marathon.util.DurationFormat;
+
+/**
+ * 成绩只读视图，供排行榜和成绩列表对外展示，不包含身份证号、手机号等敏感字段
+ */
+public class ResultView {
+    private final Long id;
+
+    private final Long athleteId;
+
+    private final String name;
+
+    private final String gender;
+
+    private final Integer age;
+
+    private final Long totalTimeMillis;
+
+    private final Long gunTimeMillis;
+
+    private final Long netTimeMillis;
+
+    private final Boolean valid;
+
+    private final Integer ranking;
+
+    private final Integer ageGroupRanking;
+
+    private final Integer genderRanking;
+
+    public ResultView(Long id, Long athleteId, String name, String gender, Integer age, Long totalTimeMillis,
+                      Long gunTimeMillis, Long netTimeMillis, Boolean valid, Integer ranking,
+                      Integer ageGroupRanking, Integer genderRanking) {
+        this.id = id;
+        this.athleteId = athleteId;
+        this.name = name;
+        this.gender = gender;
+        this.age = age;
+        this.totalTimeMillis = totalTimeMillis;
+        this.gunTimeMillis = gunTimeMillis;
+        this.netTimeMillis = netTimeMillis;
+        this.valid = valid;
+        this.ranking = ranking;
+        this.ageGroupRanking = ageGroupRanking;
+        this.genderRanking = genderRanking;
+    }
+
+    public static ResultView of(Result result) {
+        Athlete athlete = result.getAthlete();
+        return new ResultView(result.getId(), athlete.getId(), athlete.getName(), athlete.getGender(),
+                athlete.getAge(), result.getTotalTimeMillis(), result.getGunTimeMillis(), result.getNetTimeMillis(),
+                result.getValid(), result.getRanking(), result.getAgeGroupRanking(), result.getGenderRanking());
+    }
+
+    // Getter方法
+    public Long getId() { return id; }
+
+    public Long getAthleteId() { return athleteId; }
+
+    public String getName() { return name; }
+
+    public String getGender() { return gender; }
+
+    public Integer getAge() { return age; }
+
+    public Long getTotalTimeMillis() { return totalTimeMillis; }
+
+    public Long getGunTimeMillis() { return gunTimeMillis; }
+
+    public Long getNetTimeMillis() { return netTimeMillis; }
+
+    // 格式化后的芯片成绩、枪声时间和净时间（HH:mm:ss）
+    public String getTotalTime() { return DurationFormat.format(totalTimeMillis); }
+
+    public String getGunTime() { return DurationFormat.format(gunTimeMillis); }
+
+    public String getNetTime() { return DurationFormat.format(netTimeMillis); }
+
+    public Boolean getValid() { return valid; }
+
+    public Integer getRanking() { return ranking; }
+
+    public Integer getAgeGroupRanking() { return ageGroupRanking; }
+
+    public Integer getGenderRanking() { return genderRanking; }
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.marathon.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 成绩短信发送记录，每名运动员最多一条，用于防止重复发送
+ */
+@Entity
+@Table(name = "sms_records")
+public class SmsRecord {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "athlete_id", nullable = false, unique = true)
+    private Long athleteId;
+
+    @Column(nullable = false)
+    private String phone;
+
+    // 短信通道返回的消息ID
+    @Column(name = "message_id", nullable = false)
+    private String messageId;
+
+    @Column(name = "sent_at", nullable = false)
+    private LocalDateTime sentAt;
+
+    // 构造函数、getter和setter方法
+    public SmsRecord() {}
+
+    public SmsRecord(Long athleteId, String phone, String messageId, LocalDateTime sentAt) {
+        this.athleteId = athleteId;
+        this.phone = phone;
+        this.messageId = messageId;
+        this.sentAt = sentAt;
+    }
+
+    // Getter和Setter方法
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getAthleteId() { return athleteId; }
+    public void setAthleteId(Long athleteId) { this.athleteId = athleteId; }
+
+    public String getPhone() { return phone; }
+    public void setPhone(String phone) { this.phone = phone; }
+
+    public String getMessageId() { return messageId; }
+    public void setMessageId(String messageId) { this.messageId = messageId; }
+
+    public LocalDateTime getSentAt() { return sentAt; }
+    public void setSentAt(LocalDateTime sentAt) { this.sentAt = sentAt; }
+}
\ No newline at end of file
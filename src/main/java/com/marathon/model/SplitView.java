@@ -0,0 +1,72 @@
+package com.marathon.model;
+
+import com.marathon.util.DurationFormat;
+
+/**
+ * 运动员在某个打卡点的分段数据：芯片时间、分段用时、配速、该点名次和预计完赛时间
+ * 无法计算的字段为null
+ */
+public class SplitView {
+    private final Long athleteId;
+
+    private final Long checkpointId;
+
+    private final String checkpointName;
+
+    private final Float distance;
+
+    private final Long chipTimeMillis;
+
+    // 距上一个已到达打卡点的用时
+    private final Long segmentMillis;
+
+    // 本分段每公里用时
+    private final Long paceMillisPerKm;
+
+    // 按芯片时间在该打卡点的名次
+    private final Integer position;
+
+    // 按至今平均配速推算的完赛芯片时间
+    private final Long projectedFinishMillis;
+
+    public SplitView(Long athleteId, Long checkpointId, String checkpointName, Float distance, Long chipTimeMillis,
+                     Long segmentMillis, Long paceMillisPerKm, Integer position, Long projectedFinishMillis) {
+        this.athleteId = athleteId;
+        this.checkpointId = checkpointId;
+        this.checkpointName = checkpointName;
+        this.distance = distance;
+        this.chipTimeMillis = chipTimeMillis;
+        this.segmentMillis = segmentMillis;
+        this.paceMillisPerKm = paceMillisPerKm;
+        this.position = position;
+        this.projectedFinishMillis = projectedFinishMillis;
+    }
+
+    // Getter方法
+    public Long getAthleteId() { return athleteId; }
+
+    public Long getCheckpointId() { return checkpointId; }
+
+    public String getCheckpointName() { return checkpointName; }
+
+    public Float getDistance() { return distance; }
+
+    public Long getChipTimeMillis() { return chipTimeMillis; }
+
+    public Long getSegmentMillis() { return segmentMillis; }
+
+    public Long getPaceMillisPerKm() { return paceMillisPerKm; }
+
+    public Integer getPosition() { return position; }
+
+    public Long getProjectedFinishMillis() { return projectedFinishMillis; }
+
+    // 格式化后的时间（HH:mm:ss）
+    public String getChipTime() { return DurationFormat.format(chipTimeMillis); }
+
+    public String getSegmentTime() { return DurationFormat.format(segmentMillis); }
+
+    public String getPace() { return DurationFormat.format(paceMillisPerKm); }
+
+    public String getProjectedFinish() { return DurationFormat.format(projectedFinishMillis); }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.marathon.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "waves")
+public class Wave {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // 所属赛事；升级前的旧数据归入赛事1
+    @Column(name = "event_id", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 1")
+    private Long eventId;
+
+    @Column(nullable = false)
+    private String name;
+
+    // 发枪时间
+    @Column(name = "gun_time", nullable = false)
+    private LocalDateTime gunTime;
+
+    // 构造函数、getter和setter方法
+    public Wave() {}
+
+    public Wave(String name, LocalDateTime gunTime) {
+        this.name = name;
+        this.gunTime = gunTime;
+    }
+
+    // Getter和Setter方法
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getEventId() { return eventId; }
+    public void setEventId(Long eventId) { this.eventId = eventId; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public LocalDateTime getGunTime() { return gunTime; }
+    public void setGunTime(LocalDateTime gunTime) { this.gunTime = gunTime; }
+}
\ No newline at end of file
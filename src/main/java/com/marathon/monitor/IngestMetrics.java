@@ -0,0 +1,121 @@
+package com.marathon.monitor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读卡管道指标：解析、查找、入库、排名各阶段耗时，未知卡号/打卡点计数，
+ * 以及从过垫时间到分段推送、排行榜更新的端到端延迟直方图。
+ * 通过 Actuator 以 Prometheus 格式暴露（/actuator/prometheus）
+ */
+@Component
+public class IngestMetrics {
+
+    private final Timer parseTimer;
+    private final Timer lookupTimer;
+    private final Timer persistTimer;
+    private final Timer rankTimer;
+    private final Timer splitLatency;
+    private final Timer leaderboardLatency;
+    private final Counter unknownCards;
+    private final Counter unknownCheckpoints;
+    private final Counter droppedReads;
+    private final Counter rejectedRecords;
+
+    @Autowired
+    public IngestMetrics(MeterRegistry registry) {
+        parseTimer = Timer.builder("marathon.ingest.parse")
+                .description("MQTT读卡报文解码耗时")
+                .register(registry);
+        lookupTimer = Timer.builder("marathon.ingest.lookup")
+                .description("每批读卡解析运动员、打卡点及计算分段的耗时")
+                .register(registry);
+        persistTimer = Timer.builder("marathon.ingest.persist")
+                .description("每批 race_records 批量插入耗时（含重试）")
+                .publishPercentileHistogram()
+                .register(registry);
+        rankTimer = Timer.builder("marathon.ingest.rank")
+                .description("终点读卡计算成绩并更新排名的耗时")
+                .publishPercentileHistogram()
+                .register(registry);
+        // 过垫时间来自读卡器时钟，回放积压日志时延迟会很大，直方图上限取10分钟
+        splitLatency = Timer.builder("marathon.latency.split")
+                .description("过垫到分段落库并推送的延迟")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(10))
+                .register(registry);
+        leaderboardLatency = Timer.builder("marathon.latency.leaderboard")
+                .description("终点过垫到成绩进入排行榜的延迟")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(10))
+                .register(registry);
+        unknownCards = Counter.builder("marathon.ingest.unknown.cards")
+                .description("找不到运动员的卡号读卡数")
+                .register(registry);
+        unknownCheckpoints = Counter.builder("marathon.ingest.unknown.checkpoints")
+                .description("找不到打卡点的读卡数")
+                .register(registry);
+        droppedReads = Counter.builder("marathon.ingest.dropped")
+                .description("入库队列已满被丢弃的读卡数")
+                .register(registry);
+        rejectedRecords = Counter.builder("marathon.ingest.rejected")
+                .description("数据库拒绝写入（非暂时性错误）而跳过的打卡记录数")
+                .register(registry);
+    }
+
+    public void recordParse(long nanos) {
+        parseTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLookup(long nanos) {
+        lookupTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPersist(long nanos) {
+        persistTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRank(long nanos) {
+        rankTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录过垫到分段推送的延迟
+     * @param passMillis 过垫时间（毫秒）
+     */
+    public void recordSplitLatency(long passMillis) {
+        splitLatency.record(Math.max(0, System.currentTimeMillis() - passMillis), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录终点过垫到排行榜更新的延迟
+     * @param passMillis 终点过垫时间（毫秒）
+     */
+    public void recordLeaderboardLatency(long passMillis) {
+        leaderboardLatency.record(Math.max(0, System.currentTimeMillis() - passMillis), TimeUnit.MILLISECONDS);
+    }
+
+    public void unknownCard() {
+        unknownCards.increment();
+    }
+
+    public void unknownCheckpoint() {
+        unknownCheckpoints.increment();
+    }
+
+    public void droppedRead() {
+        droppedReads.increment();
+    }
+
+    public void rejectedRecord() {
+        rejectedRecords.increment();
+    }
+}
\ No newline at end of file
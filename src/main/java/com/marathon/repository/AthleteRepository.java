@@ -6,15 +6,29 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AthleteRepository extends JpaRepository<Athlete, Long> {
 
-    Optional<Athlete> findByCardId(String cardId);
+    Optional<Athlete> findByEventIdAndCardId(Long eventId, String cardId);
 
-    Optional<Athlete> findByIdCard(String idCard);
+    List<Athlete> findByCardIdAndEventIdIn(String cardId, Collection<Long> eventIds);
+
+    @Query("SELECT a.cardId, a.id FROM Athlete a WHERE a.eventId = :eventId")
+    List<Object[]> findCardIdMappings(@Param("eventId") Long eventId);
+
+    @Query("SELECT a.id, a.waveId FROM Athlete a WHERE a.eventId = :eventId AND a.waveId IS NOT NULL")
+    List<Object[]> findWaveAssignments(@Param("eventId") Long eventId);
+
+    @Query("SELECT a.cardId, a.idCard FROM Athlete a WHERE a.eventId = :eventId")
+    List<Object[]> findCardIdAndIdCard(@Param("eventId") Long eventId);
+
+    Optional<Athlete> findByEventIdAndIdCard(Long eventId, String idCard);
+
+    List<Athlete> findByNameContainingIgnoreCase(String name);
 
     List<Athlete> findByGender(String gender);
 
@@ -26,7 +40,7 @@ public interface AthleteRepository extends JpaRepository<Athlete, Long> {
             @Param("minAge") Integer minAge,
             @Param("maxAge") Integer maxAge);
 
-    boolean existsByCardId(String cardId);
+    boolean existsByEventIdAndCardId(Long eventId, String cardId);
 
-    boolean existsByIdCard(String idCard);
+    boolean existsByEventIdAndIdCard(Long eventId, String idCard);
 }
\ No newline at end of file
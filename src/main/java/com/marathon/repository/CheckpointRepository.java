@@ -3,6 +3,7 @@ package com.marathon.repository;
 import com.marathon.model.Checkpoint;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,17 +14,20 @@ public interface CheckpointRepository extends JpaRepository<Checkpoint, Long> {
 
     Optional<Checkpoint> findByName(String name);
 
-    List<Checkpoint> findAllByOrderByOrderIndexAsc();
+    Optional<Checkpoint> findByEventIdAndOrderIndex(Long eventId, Integer orderIndex);
 
-    @Query("SELECT c FROM Checkpoint c WHERE c.isStart = true")
-    Optional<Checkpoint> findStartCheckpoint();
+    Optional<Checkpoint> findByEventIdAndMatId(Long eventId, Long matId);
 
-    @Query("SELECT c FROM Checkpoint c WHERE c.isFinish = true")
-    Optional<Checkpoint> findFinishCheckpoint();
+    List<Checkpoint> findByEventIdOrderByOrderIndexAsc(Long eventId);
 
-    @Query("SELECT c FROM Checkpoint c WHERE c.isMidpoint = true")
-    List<Checkpoint> findMidpointCheckpoints();
+    List<Checkpoint> findByEventIdAndIsMidpointTrueOrderByOrderIndexAsc(Long eventId);
 
-    @Query("SELECT COUNT(c) FROM Checkpoint c")
-    long count();
+    @Query("SELECT c FROM Checkpoint c WHERE c.eventId = :eventId AND c.isStart = true")
+    Optional<Checkpoint> findStartCheckpoint(@Param("eventId") Long eventId);
+
+    @Query("SELECT c FROM Checkpoint c WHERE c.eventId = :eventId AND c.isFinish = true")
+    Optional<Checkpoint> findFinishCheckpoint(@Param("eventId") Long eventId);
+
+    @Query("SELECT COUNT(c) FROM Checkpoint c WHERE c.eventId = :eventId")
+    long countByEventId(@Param("eventId") Long eventId);
 }
\ No newline at end of file
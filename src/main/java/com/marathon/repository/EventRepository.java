@@ -0,0 +1,13 @@
+package com.marathon.repository;
+
+import com.marathon.model.Event;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface EventRepository extends JpaRepository<Event, Long> {
+
+    List<Event> findByActiveTrue();
+}
\ No newline at end of file
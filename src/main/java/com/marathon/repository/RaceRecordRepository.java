@@ -1,6 +1,7 @@
 package com.marathon.repository;
 
 import com.marathon.model.RaceRecord;
+import com.marathon.model.RecordPassTime;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -10,32 +11,46 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * 打卡记录查询均限定赛事，按 event_id 前缀命中复合索引（分区表上同时裁剪分区）
+ */
 @Repository
 public interface RaceRecordRepository extends JpaRepository<RaceRecord, Long> {
 
-    List<RaceRecord> findByAthleteId(Long athleteId);
+    List<RaceRecord> findByEventIdAndAthleteIdOrderByPassTimeAsc(Long eventId, Long athleteId);
 
-    List<RaceRecord> findByCheckpointId(Long checkpointId);
+    Optional<RaceRecord> findFirstByEventIdAndAthleteIdAndCheckpointIdOrderByPassTimeAsc(
+            Long eventId, Long athleteId, Long checkpointId);
 
-    Optional<RaceRecord> findByAthleteIdAndCheckpointId(Long athleteId, Long checkpointId);
+    // 覆盖索引 idx_rr_event_athlete，不回表
+    @Query("SELECT rr.checkpoint.id AS checkpointId, rr.passTime AS passTime FROM RaceRecord rr " +
+            "WHERE rr.eventId = :eventId AND rr.athlete.id = :athleteId ORDER BY rr.passTime ASC")
+    List<RecordPassTime> findPassTimesByAthlete(@Param("eventId") Long eventId, @Param("athleteId") Long athleteId);
 
-    @Query("SELECT rr FROM RaceRecord rr WHERE rr.athlete.id = :athleteId AND " +
+    @Query("SELECT rr FROM RaceRecord rr WHERE rr.eventId = :eventId AND rr.athlete.id = :athleteId AND " +
             "(rr.checkpoint.isStart = true OR rr.checkpoint.isFinish = true)")
-    List<RaceRecord> findStartFinishRecords(@Param("athleteId") Long athleteId);
+    List<RaceRecord> findStartFinishRecords(@Param("eventId") Long eventId, @Param("athleteId") Long athleteId);
 
-    @Query("SELECT COUNT(DISTINCT rr.checkpoint.id) FROM RaceRecord rr WHERE rr.athlete.id = :athleteId")
-    long countDistinctCheckpointsByAthlete(@Param("athleteId") Long athleteId);
+    // 覆盖索引 idx_rr_event_athlete，不回表
+    @Query("SELECT COUNT(DISTINCT rr.checkpoint.id) FROM RaceRecord rr " +
+            "WHERE rr.eventId = :eventId AND rr.athlete.id = :athleteId")
+    long countDistinctCheckpointsByAthlete(@Param("eventId") Long eventId, @Param("athleteId") Long athleteId);
 
-    @Query("SELECT rr FROM RaceRecord rr WHERE rr.passTime BETWEEN :startTime AND :endTime")
+    @Query("SELECT rr FROM RaceRecord rr WHERE rr.eventId = :eventId AND rr.passTime BETWEEN :startTime AND :endTime " +
+            "ORDER BY rr.passTime ASC")
     List<RaceRecord> findByPassTimeBetween(
+            @Param("eventId") Long eventId,
             @Param("startTime") LocalDateTime startTime,
             @Param("endTime") LocalDateTime endTime);
 
-    @Query("SELECT rr FROM RaceRecord rr WHERE rr.athlete.id = :athleteId " +
+    @Query("SELECT rr FROM RaceRecord rr WHERE rr.eventId = :eventId AND rr.athlete.id = :athleteId " +
             "ORDER BY rr.checkpoint.orderIndex ASC")
-    List<RaceRecord> findByAthleteIdOrderByCheckpointOrder(@Param("athleteId") Long athleteId);
+    List<RaceRecord> findByAthleteIdOrderByCheckpointOrder(
+            @Param("eventId") Long eventId, @Param("athleteId") Long athleteId);
 
-    @Query("SELECT rr FROM RaceRecord rr WHERE rr.checkpoint.id = :checkpointId " +
+    // 按 idx_rr_event_checkpoint 顺序读取，无需排序
+    @Query("SELECT rr FROM RaceRecord rr WHERE rr.eventId = :eventId AND rr.checkpoint.id = :checkpointId " +
             "ORDER BY rr.passTime ASC")
-    List<RaceRecord> findByCheckpointIdOrderByPassTime(@Param("checkpointId") Long checkpointId);
+    List<RaceRecord> findByCheckpointIdOrderByPassTime(
+            @Param("eventId") Long eventId, @Param("checkpointId") Long checkpointId);
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.marathon.repository;
+
+import com.marathon.model.ResultExportRow;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * 成绩导出的JDBC游标查询，逐行回调，不在内存中保留整张成绩表
+ */
+@Repository
+public class ResultExportRepository {
+
+    private static final String SELECT_RESULT_ROWS_SQL =
+            "SELECT r.ranking, r.total_time_ms, r.valid, r.age_group_ranking, r.gender_ranking, " +
+            "a.name, a.gender, a.age, a.id_card, a.phone, r.gun_time_ms, r.net_time_ms " +
+            "FROM results r JOIN athletes a ON a.id = r.athlete_id WHERE r.event_id = ? " +
+            "ORDER BY r.total_time_ms ASC";
+
+    /**
+     * 逐行处理回调
+     */
+    public interface ResultRowHandler {
+        void handle(ResultExportRow row) throws IOException;
+    }
+
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    @Autowired
+    public ResultExportRepository(DataSource dataSource, @Value("${export.fetch.size:1000}") int fetchSize) {
+        // MySQL 需要 Integer.MIN_VALUE 才会逐行流式读取
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    /**
+     * 按总时间顺序遍历赛事的全部成绩
+     */
+    public void forEachResultRow(long eventId, ResultRowHandler handler) throws IOException {
+        ResultExportRow row = new ResultExportRow();
+        try {
+            streamingJdbcTemplate.query(SELECT_RESULT_ROWS_SQL, rs -> {
+                row.setRanking(rs.getInt(1));
+                row.setTotalTimeMillis(rs.getLong(2));
+                row.setValid(rs.getBoolean(3));
+                row.setAgeGroupRanking(rs.getInt(4));
+                row.setGenderRanking(rs.getInt(5));
+                row.setName(rs.getString(6));
+                row.setGender(rs.getString(7));
+                row.setAge(rs.getInt(8));
+                row.setIdCard(rs.getString(9));
+                row.setPhone(rs.getString(10));
+                long gunTime = rs.getLong(11);
+                row.setGunTimeMillis(rs.wasNull() ? null : gunTime);
+                long netTime = rs.getLong(12);
+                row.setNetTimeMillis(rs.wasNull() ? null : netTime);
+                try {
+                    handler.handle(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, eventId);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
\ No newline at end of file
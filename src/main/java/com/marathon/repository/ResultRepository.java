@@ -1,41 +1,86 @@
 package com.marathon.repository;
 
-import com.marathon.model.RaceRecord;
+import com.marathon.model.Result;
+import com.marathon.model.ResultView;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDateTime;
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface RaceRecordRepository extends JpaRepository<RaceRecord, Long> {
+public interface ResultRepository extends JpaRepository<Result, Long> {
 
-    List<RaceRecord> findByAthleteId(Long athleteId);
+    // 成绩列表的投影：一条 JOIN 查询直接构造只读视图，不加载实体，也不带出身份证号、手机号
+    String VIEW_SELECT = "SELECT new com.marathon.model.ResultView(r.id, a.id, a.name, a.gender, a.age, " +
+            "r.totalTimeMillis, r.gunTimeMillis, r.netTimeMillis, r.valid, r.ranking, r.ageGroupRanking, " +
+            "r.genderRanking) FROM Result r JOIN r.athlete a ";
 
-    List<RaceRecord> findByCheckpointId(Long checkpointId);
+    // Hibernate 只读提示（org.hibernate.jpa.QueryHints.HINT_READONLY）：查出的实体不保留脏检查快照
+    String READ_ONLY = "org.hibernate.readOnly";
 
-    Optional<RaceRecord> findByAthleteIdAndCheckpointId(Long athleteId, Long checkpointId);
+    Optional<Result> findByAthleteId(Long athleteId);
 
-    @Query("SELECT rr FROM RaceRecord rr WHERE rr.athlete.id = :athleteId AND " +
-            "(rr.checkpoint.isStart = true OR rr.checkpoint.isFinish = true)")
-    List<RaceRecord> findStartFinishRecords(@Param("athleteId") Long athleteId);
+    @Query(VIEW_SELECT + "WHERE r.eventId = :eventId ORDER BY r.totalTimeMillis ASC, r.id ASC")
+    List<ResultView> findViewsByEventId(@Param("eventId") Long eventId);
 
-    @Query("SELECT COUNT(DISTINCT rr.checkpoint.id) FROM RaceRecord rr WHERE rr.athlete.id = :athleteId")
-    long countDistinctCheckpointsByAthlete(@Param("athleteId") Long athleteId);
+    // 按 (成绩, 成绩ID) 键集分页，从游标之后开始取；第一个条件只含成绩列，可沿索引直接定位到游标处，不随页数变深而变慢
+    String AFTER_CURSOR = "AND r.totalTimeMillis >= :afterTime AND (r.totalTimeMillis > :afterTime OR r.id > :afterId) " +
+            "ORDER BY r.totalTimeMillis ASC, r.id ASC";
 
-    @Query("SELECT rr FROM RaceRecord rr WHERE rr.passTime BETWEEN :startTime AND :endTime")
-    List<RaceRecord> findByPassTimeBetween(
-            @Param("startTime") LocalDateTime startTime,
-            @Param("endTime") LocalDateTime endTime);
+    /**
+     * 全部成绩（含无效成绩）的分页视图，走 idx_results_event_total (event_id, total_time_ms)
+     */
+    @Query(VIEW_SELECT + "WHERE r.eventId = :eventId " + AFTER_CURSOR)
+    List<ResultView> findViewsAfter(@Param("eventId") Long eventId, @Param("afterTime") long afterTime,
+                                    @Param("afterId") long afterId, Pageable pageable);
 
-    @Query("SELECT rr FROM RaceRecord rr WHERE rr.athlete.id = :athleteId " +
-            "ORDER BY rr.checkpoint.orderIndex ASC")
-    List<RaceRecord> findByAthleteIdOrderByCheckpointOrder(@Param("athleteId") Long athleteId);
+    // 以下只含有效成绩，走 idx_results_event_time (event_id, valid, total_time_ms)，性别、年龄在关联的运动员上过滤
 
-    @Query("SELECT rr FROM RaceRecord rr WHERE rr.checkpoint.id = :checkpointId " +
-            "ORDER BY rr.passTime ASC")
-    List<RaceRecord> findByCheckpointIdOrderByPassTime(@Param("checkpointId") Long checkpointId);
+    @Query(VIEW_SELECT + "WHERE r.eventId = :eventId AND r.valid = true AND a.gender = :gender " + AFTER_CURSOR)
+    List<ResultView> findValidViewsByGenderAfter(@Param("eventId") Long eventId, @Param("gender") String gender,
+                                                 @Param("afterTime") long afterTime, @Param("afterId") long afterId,
+                                                 Pageable pageable);
+
+    @Query(VIEW_SELECT + "WHERE r.eventId = :eventId AND r.valid = true AND a.age BETWEEN :minAge AND :maxAge " +
+            AFTER_CURSOR)
+    List<ResultView> findValidViewsByAgeAfter(@Param("eventId") Long eventId, @Param("minAge") int minAge,
+                                              @Param("maxAge") int maxAge, @Param("afterTime") long afterTime,
+                                              @Param("afterId") long afterId, Pageable pageable);
+
+    @Query(VIEW_SELECT + "WHERE r.eventId = :eventId AND r.valid = true AND a.gender = :gender " +
+            "AND a.age BETWEEN :minAge AND :maxAge " + AFTER_CURSOR)
+    List<ResultView> findValidViewsByGenderAndAgeAfter(@Param("eventId") Long eventId, @Param("gender") String gender,
+                                                       @Param("minAge") int minAge, @Param("maxAge") int maxAge,
+                                                       @Param("afterTime") long afterTime,
+                                                       @Param("afterId") long afterId, Pageable pageable);
+
+    @Query("SELECT r FROM Result r JOIN FETCH r.athlete a WHERE a.id IN :athleteIds")
+    List<Result> findAllWithAthleteByAthleteIdIn(@Param("athleteIds") Collection<Long> athleteIds);
+
+    // 运动员一并取出，避免 @OneToOne 逐条加载
+    @Query("SELECT r FROM Result r JOIN FETCH r.athlete WHERE r.eventId = :eventId AND r.valid = true " +
+            "ORDER BY r.totalTimeMillis ASC")
+    @QueryHints(@QueryHint(name = READ_ONLY, value = "true"))
+    List<Result> findByEventIdAndValidTrueOrderByTotalTimeMillisAsc(@Param("eventId") Long eventId);
+
+    @Query("SELECT r FROM Result r JOIN FETCH r.athlete WHERE r.eventId = :eventId AND r.valid = true " +
+            "ORDER BY r.totalTimeMillis ASC")
+    @QueryHints(@QueryHint(name = READ_ONLY, value = "true"))
+    List<Result> findByEventIdAndValidTrueOrderByTotalTimeMillisAsc(@Param("eventId") Long eventId, Pageable pageable);
+
+    @Query("SELECT r FROM Result r JOIN FETCH r.athlete WHERE r.eventId = :eventId AND r.valid = false")
+    @QueryHints(@QueryHint(name = READ_ONLY, value = "true"))
+    List<Result> findByEventIdAndValidFalse(@Param("eventId") Long eventId);
+
+    default List<Result> findTopNByEventIdAndValidTrueOrderByTotalTimeMillisAsc(Long eventId, int n) {
+        return findByEventIdAndValidTrueOrderByTotalTimeMillisAsc(eventId, PageRequest.of(0, n));
+    }
 }
\ No newline at end of file
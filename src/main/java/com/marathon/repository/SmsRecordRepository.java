@@ -0,0 +1,9 @@
+package com.marathon.repository;
+
+import com.marathon.model.SmsRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SmsRecordRepository extends JpaRepository<SmsRecord, Long> {
+}
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.marathon.repository;
+
+import com.marathon.model.Wave;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface WaveRepository extends JpaRepository<Wave, Long> {
+
+    List<Wave> findByEventIdOrderByGunTimeAsc(Long eventId);
+}
\ No newline at end of file
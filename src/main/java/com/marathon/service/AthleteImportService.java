@@ -0,0 +1,302 @@
+package com.marathon.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marathon.model.Athlete;
+import com.marathon.model.ImportReport;
+import com.marathon.repository.AthleteRepository;
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 运动员批量导入（导入到指定赛事）
+ * 流式读取CSV/JSON，用一次投影查询建立赛事内已有卡号、身份证号集合做唯一性校验，
+ * 合格行攒批后JDBC批量插入；逐行记录错误，不因单行失败中止
+ */
+@Service
+public class AthleteImportService {
+    private static final Logger logger = LoggerFactory.getLogger(AthleteImportService.class);
+
+    private static final String INSERT_ATHLETE_SQL =
+            "INSERT INTO athletes (event_id, card_id, name, gender, age, id_card, phone, wave_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // CSV表头别名，兼容运动员列表导出的中文表头
+    private static final Map<String, String> HEADER_ALIASES = new HashMap<>();
+
+    static {
+        HEADER_ALIASES.put("cardid", "cardId");
+        HEADER_ALIASES.put("rfid卡号", "cardId");
+        HEADER_ALIASES.put("name", "name");
+        HEADER_ALIASES.put("姓名", "name");
+        HEADER_ALIASES.put("gender", "gender");
+        HEADER_ALIASES.put("性别", "gender");
+        HEADER_ALIASES.put("age", "age");
+        HEADER_ALIASES.put("年龄", "age");
+        HEADER_ALIASES.put("idcard", "idCard");
+        HEADER_ALIASES.put("身份证号", "idCard");
+        HEADER_ALIASES.put("phone", "phone");
+        HEADER_ALIASES.put("手机号", "phone");
+        HEADER_ALIASES.put("waveid", "waveId");
+        HEADER_ALIASES.put("出发批次", "waveId");
+    }
+
+    private final AthleteRepository athleteRepository;
+    private final LookupCacheService lookupCacheService;
+    private final WaveService waveService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${athlete.import.batch.size:1000}")
+    private int batchSize;
+
+    @Value("${timing.event.id:1}")
+    private Long defaultEventId;
+
+    @Autowired
+    public AthleteImportService(AthleteRepository athleteRepository, LookupCacheService lookupCacheService,
+                                WaveService waveService, JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate, ObjectMapper objectMapper) {
+        this.athleteRepository = athleteRepository;
+        this.lookupCacheService = lookupCacheService;
+        this.waveService = waveService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 导入CSV，首行为表头（cardId,name,gender,age,idCard,phone,waveId 或对应中文列名，顺序不限）
+     */
+    public ImportReport importCsv(Long eventId, Reader reader) throws IOException {
+        ImportContext context = new ImportContext(eventId);
+        try (CSVReader csvReader = new CSVReader(reader)) {
+            String[] header = csvReader.readNext();
+            if (header == null) {
+                return context.finish();
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < header.length; i++) {
+                String name = HEADER_ALIASES.get(header[i].replace("\uFEFF", "").trim().toLowerCase());
+                if (name != null) {
+                    columns.put(name, i);
+                }
+            }
+
+            String[] line;
+            while ((line = csvReader.readNext()) != null) {
+                int row = (int) csvReader.getLinesRead();
+                if (line.length == 1 && line[0].trim().isEmpty()) {
+                    continue;
+                }
+                Athlete athlete = new Athlete();
+                athlete.setCardId(column(line, columns, "cardId"));
+                athlete.setName(column(line, columns, "name"));
+                athlete.setGender(column(line, columns, "gender"));
+                athlete.setIdCard(column(line, columns, "idCard"));
+                athlete.setPhone(column(line, columns, "phone"));
+                String age = column(line, columns, "age");
+                if (age != null) {
+                    try {
+                        athlete.setAge(Integer.valueOf(age));
+                    } catch (NumberFormatException e) {
+                        context.report.addRow();
+                        context.report.addError(row, athlete.getCardId(), "年龄格式错误: " + age);
+                        continue;
+                    }
+                }
+                String waveId = column(line, columns, "waveId");
+                if (waveId != null) {
+                    try {
+                        athlete.setWaveId(Long.valueOf(waveId));
+                    } catch (NumberFormatException e) {
+                        context.report.addRow();
+                        context.report.addError(row, athlete.getCardId(), "出发批次格式错误: " + waveId);
+                        continue;
+                    }
+                }
+                context.accept(row, athlete);
+            }
+        } catch (CsvValidationException e) {
+            throw new IOException("CSV格式错误: " + e.getMessage(), e);
+        }
+        return context.finish();
+    }
+
+    /**
+     * 导入JSON数组，逐个对象读取；对象中的赛事ID被忽略，统一归入导入的赛事
+     */
+    public ImportReport importJson(Long eventId, InputStream input) throws IOException {
+        ImportContext context = new ImportContext(eventId);
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("JSON导入内容必须是运动员数组");
+            }
+            int row = 0;
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                row++;
+                Athlete athlete;
+                try {
+                    athlete = parser.readValueAs(Athlete.class);
+                } catch (IOException e) {
+                    context.report.addRow();
+                    context.report.addError(row, null, "字段格式错误: " + e.getMessage());
+                    parser.skipChildren();
+                    continue;
+                }
+                context.accept(row, athlete);
+            }
+        }
+        return context.finish();
+    }
+
+    private static String column(String[] line, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= line.length) {
+            return null;
+        }
+        String value = line[index].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * 一次导入的状态：赛事内已有/本次已出现的卡号和身份证号集合、待插入批次
+     */
+    private final class ImportContext {
+        final Long eventId;
+        final ImportReport report = new ImportReport();
+        final Set<String> cardIds = new HashSet<>();
+        final Set<String> idCards = new HashSet<>();
+        final List<Athlete> pending = new ArrayList<>(batchSize);
+        final List<Integer> pendingRows = new ArrayList<>(batchSize);
+
+        ImportContext(Long eventId) {
+            this.eventId = eventId != null ? eventId : defaultEventId;
+            for (Object[] row : athleteRepository.findCardIdAndIdCard(this.eventId)) {
+                cardIds.add((String) row[0]);
+                idCards.add((String) row[1]);
+            }
+        }
+
+        void accept(int row, Athlete athlete) {
+            report.addRow();
+            athlete.setEventId(eventId);
+            String error = validate(athlete);
+            if (error == null && athlete.getWaveId() != null && !waveService.existsWave(eventId, athlete.getWaveId())) {
+                error = "出发批次不存在: " + athlete.getWaveId();
+            }
+            if (error == null) {
+                Long otherEventId = lookupCacheService.findLoadedEventIdByCard(athlete.getCardId());
+                if (otherEventId != null && !otherEventId.equals(eventId)) {
+                    error = "该RFID卡号已被正在计时的赛事 " + otherEventId + " 使用: " + athlete.getCardId();
+                }
+            }
+            if (error != null) {
+                report.addError(row, athlete.getCardId(), error);
+                return;
+            }
+            if (!cardIds.add(athlete.getCardId())) {
+                report.addError(row, athlete.getCardId(), "该RFID卡号已被注册: " + athlete.getCardId());
+                return;
+            }
+            if (!idCards.add(athlete.getIdCard())) {
+                cardIds.remove(athlete.getCardId());
+                report.addError(row, athlete.getCardId(), "该身份证号已被注册: " + athlete.getIdCard());
+                return;
+            }
+
+            pending.add(athlete);
+            pendingRows.add(row);
+            if (pending.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        ImportReport finish() {
+            flush();
+            if (report.getImportedRows() > 0) {
+                lookupCacheService.reloadAthletes(eventId);
+                waveService.reloadAssignments(eventId);
+            }
+            logger.info("运动员批量导入完成: 共 {} 行, 成功 {} 行, 失败 {} 行",
+                    report.getTotalRows(), report.getImportedRows(), report.getFailedRows());
+            return report;
+        }
+
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            try {
+                List<Object[]> batchArgs = new ArrayList<>(pending.size());
+                for (Athlete athlete : pending) {
+                    batchArgs.add(insertArgs(athlete));
+                }
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_ATHLETE_SQL, batchArgs));
+                report.addImported(pending.size());
+            } catch (Exception e) {
+                // 整批失败时逐行重试，定位出错的行
+                logger.warn("运动员批量插入失败，改为逐行插入: {}", e.getMessage());
+                for (int i = 0; i < pending.size(); i++) {
+                    Athlete athlete = pending.get(i);
+                    try {
+                        jdbcTemplate.update(INSERT_ATHLETE_SQL, insertArgs(athlete));
+                        report.addImported(1);
+                    } catch (Exception rowException) {
+                        report.addError(pendingRows.get(i), athlete.getCardId(),
+                                "写入失败: " + rowException.getMessage());
+                    }
+                }
+            } finally {
+                pending.clear();
+                pendingRows.clear();
+            }
+        }
+
+        private Object[] insertArgs(Athlete athlete) {
+            return new Object[] { eventId, athlete.getCardId(), athlete.getName(), athlete.getGender(),
+                    athlete.getAge(), athlete.getIdCard(), athlete.getPhone(), athlete.getWaveId() };
+        }
+    }
+
+    private static String validate(Athlete athlete) {
+        if (isBlank(athlete.getCardId())) {
+            return "缺少RFID卡号";
+        }
+        if (isBlank(athlete.getName())) {
+            return "缺少姓名";
+        }
+        if (isBlank(athlete.getGender())) {
+            return "缺少性别";
+        }
+        if (athlete.getAge() == null || athlete.getAge() <= 0) {
+            return "缺少年龄或年龄无效";
+        }
+        if (isBlank(athlete.getIdCard())) {
+            return "缺少身份证号";
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
\ No newline at end of file
@@ -1,40 +1,61 @@
-package marathon.service;
+package com.marathon.service;
 
-import marathon.model.Athlete;
-import marathon.repository.AthleteRepository;
+import com.marathon.model.Athlete;
+import com.marathon.repository.AthleteRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
 public class AthleteService {
 
     private final AthleteRepository athleteRepository;
+    private final LookupCacheService lookupCacheService;
+    private final WaveService waveService;
+    private final SplitRecomputeService splitRecomputeService;
+
+    // 未指定赛事时运动员归入的默认赛事
+    @Value("${timing.event.id:1}")
+    private Long defaultEventId;
 
     @Autowired
-    public AthleteService(AthleteRepository athleteRepository) {
+    public AthleteService(AthleteRepository athleteRepository, LookupCacheService lookupCacheService,
+                          WaveService waveService, SplitRecomputeService splitRecomputeService) {
         this.athleteRepository = athleteRepository;
+        this.lookupCacheService = lookupCacheService;
+        this.waveService = waveService;
+        this.splitRecomputeService = splitRecomputeService;
     }
 
     /**
-     * 注册新运动员
+     * 注册新运动员，未指定赛事时归入默认赛事
      */
     public Athlete registerAthlete(Athlete athlete) {
-        // 检查卡号是否已存在
-        Optional<Athlete> existingAthlete = athleteRepository.findByCardId(athlete.getCardId());
-        if (existingAthlete.isPresent()) {
+        if (athlete.getEventId() == null) {
+            athlete.setEventId(defaultEventId);
+        }
+        Long eventId = athlete.getEventId();
+
+        // 检查卡号在本赛事内是否已存在
+        if (athleteRepository.existsByEventIdAndCardId(eventId, athlete.getCardId())) {
             throw new RuntimeException("该RFID卡号已被注册: " + athlete.getCardId());
         }
+        checkCardInUse(eventId, athlete.getCardId());
 
-        // 检查身份证号是否已存在
-        existingAthlete = athleteRepository.findByIdCard(athlete.getIdCard());
-        if (existingAthlete.isPresent()) {
+        // 检查身份证号在本赛事内是否已存在
+        if (athleteRepository.existsByEventIdAndIdCard(eventId, athlete.getIdCard())) {
             throw new RuntimeException("该身份证号已被注册: " + athlete.getIdCard());
         }
+        checkWave(eventId, athlete.getWaveId());
 
-        return athleteRepository.save(athlete);
+        Athlete savedAthlete = athleteRepository.save(athlete);
+        lookupCacheService.putAthlete(savedAthlete);
+        waveService.assignAthlete(eventId, savedAthlete.getId(), savedAthlete.getWaveId());
+        return savedAthlete;
     }
 
     /**
@@ -52,17 +73,17 @@ public class AthleteService {
     }
 
     /**
-     * 根据卡号获取运动员
+     * 根据卡号获取赛事内的运动员
      */
-    public Optional<Athlete> getAthleteByCardId(String cardId) {
-        return athleteRepository.findByCardId(cardId);
+    public Optional<Athlete> getAthleteByCardId(Long eventId, String cardId) {
+        return athleteRepository.findByEventIdAndCardId(eventId, cardId);
     }
 
     /**
-     * 根据身份证号获取运动员
+     * 根据身份证号获取赛事内的运动员
      */
-    public Optional<Athlete> getAthleteByIdCard(String idCard) {
-        return athleteRepository.findByIdCard(idCard);
+    public Optional<Athlete> getAthleteByIdCard(Long eventId, String idCard) {
+        return athleteRepository.findByEventIdAndIdCard(eventId, idCard);
     }
 
     /**
@@ -73,31 +94,44 @@ public class AthleteService {
 
         if (athleteOptional.isPresent()) {
             Athlete athlete = athleteOptional.get();
+            Long eventId = athlete.getEventId();
 
-            // 检查新卡号是否与其他运动员冲突
+            // 检查新卡号是否与本赛事其他运动员冲突（运动员所属赛事不可修改）
             if (!athlete.getCardId().equals(athleteDetails.getCardId())) {
-                Optional<Athlete> existingWithCardId = athleteRepository.findByCardId(athleteDetails.getCardId());
-                if (existingWithCardId.isPresent()) {
+                if (athleteRepository.existsByEventIdAndCardId(eventId, athleteDetails.getCardId())) {
                     throw new RuntimeException("该RFID卡号已被其他运动员使用: " + athleteDetails.getCardId());
                 }
+                checkCardInUse(eventId, athleteDetails.getCardId());
             }
 
-            // 检查新身份证号是否与其他运动员冲突
+            // 检查新身份证号是否与本赛事其他运动员冲突
             if (!athlete.getIdCard().equals(athleteDetails.getIdCard())) {
-                Optional<Athlete> existingWithIdCard = athleteRepository.findByIdCard(athleteDetails.getIdCard());
-                if (existingWithIdCard.isPresent()) {
+                if (athleteRepository.existsByEventIdAndIdCard(eventId, athleteDetails.getIdCard())) {
                     throw new RuntimeException("该身份证号已被其他运动员使用: " + athleteDetails.getIdCard());
                 }
             }
 
+            checkWave(eventId, athleteDetails.getWaveId());
+
+            String oldCardId = athlete.getCardId();
+            boolean waveChanged = !Objects.equals(athlete.getWaveId(), athleteDetails.getWaveId());
             athlete.setName(athleteDetails.getName());
             athlete.setGender(athleteDetails.getGender());
             athlete.setAge(athleteDetails.getAge());
             athlete.setCardId(athleteDetails.getCardId());
             athlete.setIdCard(athleteDetails.getIdCard());
             athlete.setPhone(athleteDetails.getPhone());
-
-            return athleteRepository.save(athlete);
+            athlete.setWaveId(athleteDetails.getWaveId());
+
+            Athlete savedAthlete = athleteRepository.save(athlete);
+            lookupCacheService.evictAthlete(oldCardId);
+            lookupCacheService.putAthlete(savedAthlete);
+            if (waveChanged) {
+                // 调整批次后净时间随之变化
+                waveService.assignAthlete(eventId, id, savedAthlete.getWaveId());
+                splitRecomputeService.recomputeAthlete(id);
+            }
+            return savedAthlete;
         } else {
             throw new RuntimeException("未找到ID为 " + id + " 的运动员");
         }
@@ -111,11 +145,27 @@ public class AthleteService {
 
         if (athlete.isPresent()) {
             athleteRepository.delete(athlete.get());
+            lookupCacheService.evictAthlete(athlete.get().getCardId());
+            waveService.removeAthlete(athlete.get().getEventId(), id);
         } else {
             throw new RuntimeException("未找到ID为 " + id + " 的运动员");
         }
     }
 
+    private void checkWave(Long eventId, Long waveId) {
+        if (waveId != null && !waveService.existsWave(eventId, waveId)) {
+            throw new RuntimeException("赛事 " + eventId + " 中未找到ID为 " + waveId + " 的出发批次");
+        }
+    }
+
+    // 同时计时的赛事之间卡号不能重复，否则读卡无法判断所属赛事
+    private void checkCardInUse(Long eventId, String cardId) {
+        Long otherEventId = lookupCacheService.findLoadedEventIdByCard(cardId);
+        if (otherEventId != null && !otherEventId.equals(eventId)) {
+            throw new RuntimeException("该RFID卡号已被正在计时的赛事 " + otherEventId + " 使用: " + cardId);
+        }
+    }
+
     /**
      * 根据姓名搜索运动员
      */
@@ -0,0 +1,104 @@
+package com.marathon.service;
+
+import com.marathon.model.RaceCategory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 成绩分组定义（来自配置）
+ * 年龄组决定 age_group_ranking；附加分组（如五岁一档、特殊组别）只在内存中排名并提供榜单
+ */
+@Service
+public class CategoryService {
+
+    @Value("${ranking.age.groups:18-30,31-45,46-60,61-100}")
+    private String[] ageGroupSpecs;
+
+    @Value("${ranking.categories:}")
+    private String[] categorySpecs;
+
+    private List<RaceCategory> ageGroups = Collections.emptyList();
+    private List<RaceCategory> categories = Collections.emptyList();
+    private Map<String, RaceCategory> categoriesByName = Collections.emptyMap();
+
+    @PostConstruct
+    public void init() {
+        List<RaceCategory> groups = new ArrayList<>();
+        for (String spec : ageGroupSpecs) {
+            if (!spec.trim().isEmpty()) {
+                int[] ages = RaceCategory.parseAgeRange(spec);
+                groups.add(new RaceCategory(ages[0] + "-" + ages[1], null, ages[0], ages[1]));
+            }
+        }
+
+        List<RaceCategory> extra = new ArrayList<>();
+        Map<String, RaceCategory> byName = new LinkedHashMap<>();
+        for (String spec : categorySpecs) {
+            if (!spec.trim().isEmpty()) {
+                RaceCategory category = RaceCategory.parse(spec);
+                if (byName.put(category.getName(), category) != null) {
+                    throw new IllegalArgumentException("分组名称重复: " + category.getName());
+                }
+                extra.add(category);
+            }
+        }
+
+        ageGroups = Collections.unmodifiableList(groups);
+        categories = Collections.unmodifiableList(extra);
+        categoriesByName = Collections.unmodifiableMap(byName);
+    }
+
+    /**
+     * 年龄组序号，不属于任何年龄组时返回-1
+     */
+    public int ageGroupIndex(Integer age) {
+        if (age == null) {
+            return -1;
+        }
+        for (int i = 0; i < ageGroups.size(); i++) {
+            if (ageGroups.get(i).matches(null, age)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 年龄组标签，如 18-30；不属于任何年龄组时返回null
+     */
+    public String ageGroupLabel(Integer age) {
+        int index = ageGroupIndex(age);
+        return index >= 0 ? ageGroups.get(index).getName() : null;
+    }
+
+    public boolean isAgeGroup(String label) {
+        for (RaceCategory ageGroup : ageGroups) {
+            if (ageGroup.getName().equals(label)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<RaceCategory> getAgeGroups() {
+        return ageGroups;
+    }
+
+    /**
+     * 附加分组
+     */
+    public List<RaceCategory> getCategories() {
+        return categories;
+    }
+
+    public RaceCategory getCategory(String name) {
+        return categoriesByName.get(name);
+    }
+}
\ No newline at end of file
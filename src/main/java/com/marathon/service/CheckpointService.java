@@ -3,9 +3,11 @@ package com.marathon.service;
 import com.marathon.model.Checkpoint;
 import com.marathon.repository.CheckpointRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -14,15 +16,28 @@ public class CheckpointService {
     @Autowired
     private CheckpointRepository checkpointRepository;
 
+    @Autowired
+    private LookupCacheService lookupCacheService;
+
+    // 未指定赛事时打卡点归入的默认赛事
+    @Value("${timing.event.id:1}")
+    private Long defaultEventId;
+
     public Checkpoint createCheckpoint(Checkpoint checkpoint) {
-        // 验证打卡点顺序是否冲突
-        validateCheckpointOrder(checkpoint.getOrderIndex());
+        if (checkpoint.getEventId() == null) {
+            checkpoint.setEventId(defaultEventId);
+        }
+        // 验证打卡点顺序、读卡垫编号在赛事内是否冲突
+        validateCheckpointOrder(checkpoint.getEventId(), checkpoint.getOrderIndex());
+        validateMat(checkpoint.getEventId(), checkpoint.getMatId());
 
-        return checkpointRepository.save(checkpoint);
+        Checkpoint savedCheckpoint = checkpointRepository.save(checkpoint);
+        lookupCacheService.reloadCheckpoints(savedCheckpoint.getEventId());
+        return savedCheckpoint;
     }
 
-    public List<Checkpoint> getAllCheckpoints() {
-        return checkpointRepository.findAllByOrderByOrderIndexAsc();
+    public List<Checkpoint> getAllCheckpoints(Long eventId) {
+        return checkpointRepository.findByEventIdOrderByOrderIndexAsc(eventId);
     }
 
     public Optional<Checkpoint> getCheckpointById(Long id) {
@@ -37,9 +52,12 @@ public class CheckpointService {
 
         Checkpoint checkpoint = checkpointOpt.get();
 
-        // 如果修改了顺序，需要验证
+        // 如果修改了顺序或读卡垫，需要验证（打卡点所属赛事不可修改）
         if (!checkpoint.getOrderIndex().equals(checkpointDetails.getOrderIndex())) {
-            validateCheckpointOrder(checkpointDetails.getOrderIndex());
+            validateCheckpointOrder(checkpoint.getEventId(), checkpointDetails.getOrderIndex());
+        }
+        if (!Objects.equals(checkpoint.getMatId(), checkpointDetails.getMatId())) {
+            validateMat(checkpoint.getEventId(), checkpointDetails.getMatId());
         }
 
         checkpoint.setName(checkpointDetails.getName());
@@ -49,8 +67,11 @@ public class CheckpointService {
         checkpoint.setIsStart(checkpointDetails.getIsStart());
         checkpoint.setIsFinish(checkpointDetails.getIsFinish());
         checkpoint.setIsMidpoint(checkpointDetails.getIsMidpoint());
+        checkpoint.setMatId(checkpointDetails.getMatId());
 
-        return checkpointRepository.save(checkpoint);
+        Checkpoint savedCheckpoint = checkpointRepository.save(checkpoint);
+        lookupCacheService.reloadCheckpoints(savedCheckpoint.getEventId());
+        return savedCheckpoint;
     }
 
     public void deleteCheckpoint(Long id) {
@@ -60,24 +81,31 @@ public class CheckpointService {
         }
 
         checkpointRepository.deleteById(id);
+        lookupCacheService.reloadCheckpoints(checkpointOpt.get().getEventId());
     }
 
-    public Optional<Checkpoint> getStartPoint() {
-        return checkpointRepository.findByIsStartTrue();
+    public Optional<Checkpoint> getStartPoint(Long eventId) {
+        return checkpointRepository.findStartCheckpoint(eventId);
     }
 
-    public Optional<Checkpoint> getFinishPoint() {
-        return checkpointRepository.findByIsFinishTrue();
+    public Optional<Checkpoint> getFinishPoint(Long eventId) {
+        return checkpointRepository.findFinishCheckpoint(eventId);
     }
 
-    public List<Checkpoint> getMidPoints() {
-        return checkpointRepository.findByIsMidpointTrueOrderByOrderIndexAsc();
+    public List<Checkpoint> getMidPoints(Long eventId) {
+        return checkpointRepository.findByEventIdAndIsMidpointTrueOrderByOrderIndexAsc(eventId);
     }
 
-    private void validateCheckpointOrder(Integer orderIndex) {
-        Optional<Checkpoint> existingCheckpoint = checkpointRepository.findByOrderIndex(orderIndex);
+    private void validateCheckpointOrder(Long eventId, Integer orderIndex) {
+        Optional<Checkpoint> existingCheckpoint = checkpointRepository.findByEventIdAndOrderIndex(eventId, orderIndex);
         if (existingCheckpoint.isPresent()) {
-            throw new RuntimeException("Checkpoint with order index " + orderIndex + " already exists");
+            throw new RuntimeException("Checkpoint with order index " + orderIndex + " already exists in event " + eventId);
+        }
+    }
+
+    private void validateMat(Long eventId, Long matId) {
+        if (matId != null && checkpointRepository.findByEventIdAndMatId(eventId, matId).isPresent()) {
+            throw new RuntimeException("Mat " + matId + " is already used in event " + eventId);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package com.marathon.service;
+
+import com.marathon.model.ChipRead;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.channel.ExecutorChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读卡分发
+ * 按卡号哈希把读卡送入固定的单线程 ExecutorChannel，
+ * 同一运动员的读卡始终在同一通道内按到达顺序处理，不同运动员并行
+ */
+@Service
+public class ChipReadDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(ChipReadDispatcher.class);
+
+    @Value("${mqtt.dispatch.lanes:4}")
+    private int laneCount;
+
+    @Value("${mqtt.dispatch.lane.capacity:10000}")
+    private int laneCapacity;
+
+    @Autowired
+    private ReadDeduplicationService readDeduplicationService;
+
+    @Autowired
+    private BeanFactory beanFactory;
+
+    private ThreadPoolExecutor[] executors;
+    private ExecutorChannel[] lanes;
+
+    @PostConstruct
+    public void start() {
+        executors = new ThreadPoolExecutor[laneCount];
+        lanes = new ExecutorChannel[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String name = "chip-read-lane-" + i;
+            executors[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(laneCapacity),
+                    runnable -> new Thread(runnable, name),
+                    ChipReadDispatcher::blockUntilQueued);
+
+            ExecutorChannel lane = new ExecutorChannel(executors[i]);
+            lane.setBeanName(name);
+            lane.setBeanFactory(beanFactory);
+            lane.afterPropertiesSet();
+            lane.subscribe(message -> readDeduplicationService.submit((ChipRead) message.getPayload()));
+            lanes[i] = lane;
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (ThreadPoolExecutor executor : executors) {
+            executor.shutdown();
+        }
+        for (ThreadPoolExecutor executor : executors) {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("读卡分发通道关闭超时，剩余 {} 条", executor.getQueue().size());
+            }
+        }
+    }
+
+    /**
+     * 分发一次读卡；通道满时阻塞调用线程，形成背压
+     */
+    public void dispatch(ChipRead read) {
+        int lane = (read.getCardId().hashCode() & Integer.MAX_VALUE) % laneCount;
+        lanes[lane].send(MessageBuilder.withPayload(read).build());
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor executor : executors) {
+            depth += executor.getQueue().size();
+        }
+        return depth;
+    }
+
+    // 单线程通道不能用 CallerRuns，否则会打乱顺序，改为阻塞等待队列空位
+    private static void blockUntilQueued(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("读卡分发通道已关闭");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("等待读卡分发通道时被中断", e);
+        }
+    }
+}
\ No newline at end of file
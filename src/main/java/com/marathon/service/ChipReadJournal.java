@@ -0,0 +1,454 @@
+package com.marathon.service;
+
+import com.marathon.model.ChipRead;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 读卡预写日志（内存映射的追加文件）
+ * 读卡解码后先追加到日志并 force 落盘才确认MQTT消息，并发写入者合并为一次 force（组提交）；
+ * 回放线程从检查点偏移起把日志送入入库管道，入库提交后标记完成，定期把最小未完成偏移写入检查点文件，
+ * 崩溃重启后从检查点继续回放（至少一次）
+ *
+ * 文件按固定大小分段，文件名为段起始偏移；记录格式：int32 长度、int32 CRC32、消息体
+ * （1字节卡号长度、卡号、int64 打卡点ID、int64 通过时间的本地时钟微秒），长度-1表示本段结束
+ */
+@Service
+public class ChipReadJournal {
+    private static final Logger logger = LoggerFactory.getLogger(ChipReadJournal.class);
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final int END_OF_SEGMENT = -1;
+
+    private static final int MAX_CARD_ID_LENGTH = 255;
+
+    /**
+     * 回放时逐条回调
+     */
+    public interface RecordHandler {
+        void handle(ChipRead read);
+    }
+
+    @Value("${ingest.wal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ingest.wal.dir:data/wal}")
+    private String directory;
+
+    @Value("${ingest.wal.segment.size:67108864}")
+    private int segmentSize;
+
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+    private final Object dataSignal = new Object();
+
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    // 已送入入库管道、尚未提交的记录起始偏移
+    private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+
+    private final LongAdder appendCount = new LongAdder();
+    private final LongAdder syncCount = new LongAdder();
+    private final LongAdder corruptCount = new LongAdder();
+
+    private Path root;
+    private FileChannel checkpointChannel;
+
+    private volatile Segment current;
+    private volatile long writeOffset;
+    private volatile long durableOffset;
+    private volatile long dispatchedOffset;
+    private volatile long checkpointOffset;
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        root = Paths.get(directory);
+        Files.createDirectories(root);
+
+        try (Stream<Path> files = Files.list(root)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(base, new Segment(base, file));
+                }
+            }
+        }
+
+        checkpointChannel = FileChannel.open(root.resolve(CHECKPOINT_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer checkpoint = ByteBuffer.allocate(8);
+        checkpointOffset = checkpointChannel.read(checkpoint, 0) == 8 ? checkpoint.getLong(0) : 0L;
+
+        if (segments.isEmpty()) {
+            long base = checkpointOffset - checkpointOffset % segmentSize;
+            segments.put(base, new Segment(base, segmentPath(base)));
+        }
+        checkpointOffset = Math.max(checkpointOffset, segments.firstKey());
+        current = segments.lastEntry().getValue();
+        writeOffset = current.base + recover(current);
+        durableOffset = writeOffset;
+        dispatchedOffset = checkpointOffset;
+        logger.info("打开读卡日志 {}: 分段 {} 个, 检查点 {}, 写入位置 {}",
+                root.toAbsolutePath(), segments.size(), checkpointOffset, writeOffset);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        synchronized (appendLock) {
+            current.buffer.force();
+        }
+        checkpoint();
+        checkpointChannel.close();
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 追加一次读卡，返回时已落盘
+     * @return 记录结束偏移
+     */
+    public long append(ChipRead read) {
+        byte[] body = encode(read);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        long end;
+        synchronized (appendLock) {
+            Segment segment = current;
+            int position = (int) (writeOffset - segment.base);
+            if (position + HEADER_SIZE + body.length > segmentSize) {
+                if (position + 4 <= segmentSize) {
+                    segment.writer.putInt(position, END_OF_SEGMENT);
+                }
+                segment = roll(segment);
+                position = 0;
+            }
+            ByteBuffer writer = segment.writer;
+            writer.position(position + HEADER_SIZE);
+            writer.put(body);
+            writer.putInt(position + 4, (int) crc.getValue());
+            // 长度最后写入，读到非0长度即表示记录完整
+            writer.putInt(position, body.length);
+            end = segment.base + position + HEADER_SIZE + body.length;
+            writeOffset = end;
+        }
+        appendCount.increment();
+        awaitDurable(end);
+        return end;
+    }
+
+    /**
+     * 组提交：第一个进入的写入者把当前已追加的全部记录一起落盘，其余等待者返回时已被覆盖
+     */
+    private void awaitDurable(long offset) {
+        if (durableOffset >= offset) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durableOffset >= offset) {
+                return;
+            }
+            long target = writeOffset;
+            // 更早的分段在切换时已落盘
+            current.buffer.force();
+            durableOffset = target;
+            syncCount.increment();
+        }
+        synchronized (dataSignal) {
+            dataSignal.notifyAll();
+        }
+    }
+
+    /**
+     * 从 offset 起读取已落盘的记录，最多 maxRecords 条。
+     * 校验失败的记录记日志后跳过；长度不可信时无法定位下一条记录，跳到本段末尾或当前落盘位置（都是记录边界）
+     * @return 读取结束后的偏移
+     */
+    public long readFrom(long offset, int maxRecords, RecordHandler handler) {
+        int count = 0;
+        Segment segment = null;
+        ByteBuffer reader = null;
+        while (count < maxRecords && offset < durableOffset) {
+            if (segment == null || offset < segment.base || offset >= segment.base + segmentSize) {
+                segment = segments.floorEntry(offset).getValue();
+                reader = segment.buffer.duplicate();
+            }
+            int position = (int) (offset - segment.base);
+            int length = position + HEADER_SIZE <= segmentSize ? reader.getInt(position) : END_OF_SEGMENT;
+            if (length == END_OF_SEGMENT) {
+                offset = segment.base + segmentSize;
+                continue;
+            }
+            if (length <= 0 || position + HEADER_SIZE + length > segmentSize) {
+                long resume = Math.min(segment.base + segmentSize, durableOffset);
+                corruptCount.increment();
+                logger.error("读卡日志记录长度无效（{}），偏移 {}，跳过 {} 字节", length, offset, resume - offset);
+                offset = resume;
+                continue;
+            }
+
+            byte[] body = new byte[length];
+            reader.position(position + HEADER_SIZE);
+            reader.get(body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != reader.getInt(position + 4)) {
+                corruptCount.increment();
+                logger.error("读卡日志记录校验失败，偏移 {}，跳过该记录（{} 字节）", offset, HEADER_SIZE + length);
+                offset += HEADER_SIZE + length;
+                continue;
+            }
+            ChipRead read = decode(body);
+            read.setJournalOffset(offset);
+            handler.handle(read);
+            offset += HEADER_SIZE + length;
+            count++;
+        }
+        return offset;
+    }
+
+    /**
+     * 等待新的落盘数据
+     */
+    public void awaitData(long offset, long timeoutMs) throws InterruptedException {
+        synchronized (dataSignal) {
+            if (durableOffset <= offset) {
+                dataSignal.wait(timeoutMs);
+            }
+        }
+    }
+
+    /**
+     * 回放线程送出一条记录前登记
+     */
+    public void begin(ChipRead read) {
+        inFlight.add(read.getJournalOffset());
+    }
+
+    /**
+     * 回放线程送出一批记录后推进已分发偏移
+     */
+    public void markDispatched(long offset) {
+        dispatchedOffset = offset;
+    }
+
+    /**
+     * 读卡已入库或被确认丢弃（重复、无效）
+     */
+    public void complete(ChipRead read) {
+        if (read.getJournalOffset() >= 0) {
+            inFlight.remove(read.getJournalOffset());
+        }
+    }
+
+    /**
+     * 回放时因长度或校验失败跳过的记录数
+     */
+    public long getCorruptCount() {
+        return corruptCount.sum();
+    }
+
+    public long getCheckpointOffset() {
+        return checkpointOffset;
+    }
+
+    /**
+     * 已落盘但尚未回放进入库管道的字节数
+     */
+    public long getReplayLag() {
+        return enabled ? Math.max(0, durableOffset - dispatchedOffset) : 0;
+    }
+
+    /**
+     * 把最小未完成偏移写入检查点文件，并删除已全部完成的分段
+     */
+    @Scheduled(fixedDelayString = "${ingest.wal.checkpoint.interval:1000}")
+    public synchronized void checkpoint() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        // 先读已分发偏移，之后登记的记录偏移都不小于它
+        long offset = dispatchedOffset;
+        Iterator<Long> pending = inFlight.iterator();
+        if (pending.hasNext()) {
+            offset = Math.min(offset, pending.next());
+        }
+        if (offset <= checkpointOffset) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(8).putLong(0, offset);
+        checkpointChannel.write(buffer, 0);
+        checkpointChannel.force(false);
+        checkpointOffset = offset;
+
+        Segment active = current;
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active || oldest.base + segmentSize > offset) {
+                break;
+            }
+            segments.remove(oldest.base);
+            oldest.channel.close();
+            Files.deleteIfExists(oldest.path);
+        }
+    }
+
+    /**
+     * 日志统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("segments", segments.size());
+        stats.put("writeOffset", writeOffset);
+        stats.put("durableOffset", durableOffset);
+        stats.put("dispatchedOffset", dispatchedOffset);
+        stats.put("checkpointOffset", checkpointOffset);
+        stats.put("inFlight", inFlight.size());
+        stats.put("appends", appendCount.sum());
+        stats.put("syncs", syncCount.sum());
+        stats.put("corruptSkipped", corruptCount.sum());
+        return stats;
+    }
+
+    // 调用方持有 appendLock
+    private Segment roll(Segment segment) {
+        segment.buffer.force();
+        long base = segment.base + segmentSize;
+        try {
+            Segment next = new Segment(base, segmentPath(base));
+            segments.put(base, next);
+            current = next;
+            return next;
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建读卡日志分段失败: " + base, e);
+        }
+    }
+
+    /**
+     * 扫描最后一个分段找到写入位置，截断末尾不完整的记录
+     */
+    private int recover(Segment segment) {
+        ByteBuffer reader = segment.buffer.duplicate();
+        int position = 0;
+        while (position + HEADER_SIZE <= segmentSize) {
+            int length = reader.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > segmentSize) {
+                break;
+            }
+            byte[] body = new byte[length];
+            reader.position(position + HEADER_SIZE);
+            reader.get(body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != reader.getInt(position + 4)) {
+                logger.warn("读卡日志末尾记录不完整，从偏移 {} 截断", segment.base + position);
+                break;
+            }
+            position += HEADER_SIZE + length;
+        }
+        // 清零剩余空间，避免旧数据被误认为记录
+        byte[] zeros = new byte[8192];
+        ByteBuffer writer = segment.writer;
+        writer.position(position);
+        while (writer.hasRemaining()) {
+            writer.put(zeros, 0, Math.min(zeros.length, writer.remaining()));
+        }
+        segment.buffer.force();
+        return position;
+    }
+
+    private Path segmentPath(long base) {
+        return root.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+
+    private static byte[] encode(ChipRead read) {
+        byte[] cardId = read.getCardId().getBytes(StandardCharsets.UTF_8);
+        if (cardId.length > MAX_CARD_ID_LENGTH) {
+            throw new IllegalArgumentException("卡号过长: " + read.getCardId());
+        }
+        LocalDateTime passTime = read.getPassTime();
+        long micros = passTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + passTime.getNano() / 1000;
+        ByteBuffer body = ByteBuffer.allocate(1 + cardId.length + 16);
+        body.put((byte) cardId.length).put(cardId).putLong(read.getCheckpointId()).putLong(micros);
+        return body.array();
+    }
+
+    private static ChipRead decode(byte[] body) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        int cardIdLength = buffer.get() & 0xFF;
+        String cardId = new String(body, 1, cardIdLength, StandardCharsets.UTF_8);
+        buffer.position(1 + cardIdLength);
+        long checkpointId = buffer.getLong();
+        long micros = buffer.getLong();
+        LocalDateTime passTime = LocalDateTime.ofEpochSecond(
+                Math.floorDiv(micros, 1_000_000L), (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+        return new ChipRead(cardId, checkpointId, passTime);
+    }
+
+    /**
+     * 一个日志分段（固定大小的内存映射文件）
+     */
+    private final class Segment {
+        final long base;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        // 只在 appendLock 内使用的写入视图
+        final ByteBuffer writer;
+
+        Segment(long base, Path path) throws IOException {
+            this.base = base;
+            this.path = path;
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            this.writer = buffer.duplicate();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,146 @@
+package com.marathon.service;
+
+import com.marathon.model.Event;
+import com.marathon.repository.EventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 赛事计时上下文的加载与卸载
+ * 每个赛事在各Service中有独立的缓存、比赛状态、分段、排名和入库分区，
+ * 同时计时的赛事互不影响；启动时自动加载上次处于计时状态的赛事
+ */
+@Service
+public class EventService {
+    private static final Logger logger = LoggerFactory.getLogger(EventService.class);
+
+    // 默认赛事的ID要与旧数据的 event_id 默认值一致，显式指定自增主键
+    private static final String INSERT_DEFAULT_EVENT_SQL = "INSERT INTO events (id, name, active) VALUES (?, ?, true)";
+
+    // 升级前的单赛事数据归属的默认赛事
+    @Value("${timing.event.id:1}")
+    private Long defaultEventId;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private LookupCacheService lookupCacheService;
+
+    @Autowired
+    private WaveService waveService;
+
+    @Autowired
+    private RaceStateService raceStateService;
+
+    @Autowired
+    private SplitAnalyticsService splitAnalyticsService;
+
+    @Autowired
+    private RankingService rankingService;
+
+    @Autowired
+    private RaceRecordIngestService raceRecordIngestService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void init() {
+        if (eventRepository.count() == 0) {
+            jdbcTemplate.update(INSERT_DEFAULT_EVENT_SQL, defaultEventId, "默认赛事");
+            logger.info("未找到赛事，已创建默认赛事 {}", defaultEventId);
+        }
+        for (Event event : eventRepository.findByActiveTrue()) {
+            try {
+                loadContext(event.getId());
+            } catch (RuntimeException e) {
+                logger.error("启动时加载赛事 {} 失败", event.getId(), e);
+            }
+        }
+    }
+
+    public List<Event> getAllEvents() {
+        return eventRepository.findAll();
+    }
+
+    public Optional<Event> getEvent(Long eventId) {
+        return eventRepository.findById(eventId);
+    }
+
+    public Event createEvent(Event event) {
+        event.setId(null);
+        event.setActive(false);
+        return eventRepository.save(event);
+    }
+
+    public boolean isLoaded(Long eventId) {
+        return lookupCacheService.isLoaded(eventId);
+    }
+
+    /**
+     * 加载赛事的计时上下文并开始接收读卡；与其他已加载赛事卡号冲突时拒绝
+     */
+    public synchronized Event load(Long eventId) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new RuntimeException("未找到ID为 " + eventId + " 的赛事"));
+        if (!isLoaded(eventId)) {
+            loadContext(eventId);
+        }
+        event.setActive(true);
+        return eventRepository.save(event);
+    }
+
+    /**
+     * 停止接收赛事的读卡并释放其计时上下文，数据库中的记录和成绩保留
+     */
+    public synchronized Event evict(Long eventId) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new RuntimeException("未找到ID为 " + eventId + " 的赛事"));
+        evictContext(eventId);
+        event.setActive(false);
+        return eventRepository.save(event);
+    }
+
+    // 按依赖顺序加载：打卡点和卡号 → 批次 → 比赛状态 → 分段 → 排名，最后开启入库分区
+    private void loadContext(Long eventId) {
+        long startNanos = System.nanoTime();
+        try {
+            lookupCacheService.loadEvent(eventId);
+            waveService.loadEvent(eventId);
+            raceStateService.loadEvent(eventId);
+            splitAnalyticsService.loadEvent(eventId);
+            rankingService.loadEvent(eventId);
+            raceRecordIngestService.openPartition(eventId);
+        } catch (RuntimeException e) {
+            // 加载到一半失败时撤销已加载的部分
+            evictContext(eventId);
+            throw e;
+        }
+        logger.info("赛事 {} 计时上下文加载完成，耗时 {} ms", eventId, (System.nanoTime() - startNanos) / 1_000_000L);
+    }
+
+    // 先关闭入库分区，写完队列中的读卡后再释放内存状态
+    private void evictContext(Long eventId) {
+        try {
+            raceRecordIngestService.closePartition(eventId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("停止赛事 " + eventId + " 的入库分区被中断");
+        }
+        rankingService.evictEvent(eventId);
+        splitAnalyticsService.evictEvent(eventId);
+        raceStateService.evictEvent(eventId);
+        waveService.evictEvent(eventId);
+        lookupCacheService.evictEvent(eventId);
+        logger.info("赛事 {} 计时上下文已卸载", eventId);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.marathon.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 读卡日志回放
+ * 启动时从检查点偏移开始，持续把已落盘的读卡按顺序送入读卡分发通道，
+ * 入库速度与MQTT确认解耦，数据库变慢或不可用时读卡留在日志中；
+ * 等赛事计时上下文加载完成后才开始回放，否则读卡会因赛事未加载被丢弃
+ */
+@Service
+@DependsOn("eventService")
+public class JournalReplayService {
+    private static final Logger logger = LoggerFactory.getLogger(JournalReplayService.class);
+
+    @Value("${ingest.wal.replay.batch:1000}")
+    private int replayBatch;
+
+    @Autowired
+    private ChipReadJournal chipReadJournal;
+
+    @Autowired
+    private ChipReadDispatcher chipReadDispatcher;
+
+    private final LongAdder replayedCount = new LongAdder();
+
+    private Thread replayThread;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!chipReadJournal.isEnabled()) {
+            return;
+        }
+        running = true;
+        replayThread = new Thread(this::replayLoop, "journal-replayer");
+        replayThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (replayThread == null) {
+            return;
+        }
+        running = false;
+        replayThread.interrupt();
+        replayThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public long getReplayedCount() {
+        return replayedCount.sum();
+    }
+
+    private void replayLoop() {
+        long offset = chipReadJournal.getCheckpointOffset();
+        logger.info("读卡日志从偏移 {} 开始回放", offset);
+        while (running) {
+            try {
+                long next = chipReadJournal.readFrom(offset, replayBatch, read -> {
+                    chipReadJournal.begin(read);
+                    chipReadDispatcher.dispatch(read);
+                    replayedCount.increment();
+                });
+                if (next == offset) {
+                    chipReadJournal.awaitData(offset, 100);
+                    continue;
+                }
+                chipReadJournal.markDispatched(next);
+                offset = next;
+            } catch (InterruptedException | RejectedExecutionException e) {
+                // 关闭时退出，未分发的记录下次启动从检查点重放
+                break;
+            } catch (Exception e) {
+                logger.error("读卡日志回放失败，偏移 {}", offset, e);
+                sleepQuietly();
+            }
+        }
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
\ No newline at end of file
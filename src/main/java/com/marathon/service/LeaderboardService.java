@@ -0,0 +1,302 @@
+package com.marathon.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marathon.model.RaceCategory;
+import com.marathon.model.ResultView;
+import com.marathon.repository.ResultRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 排行榜快照
+ * 每个已加载的赛事一份快照：排名变化后（最多每个刷新周期一次）用一次查询重建该赛事的全部榜单，
+ * 并预先序列化为JSON字节数组；观众轮询只读取内存中的不可变快照，版本号作为ETag，未变化时返回304
+ */
+@Service
+public class LeaderboardService {
+    private static final Logger logger = LoggerFactory.getLogger(LeaderboardService.class);
+
+    public static final String ALL = "all";
+    public static final String OVERALL = "overall";
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Autowired
+    private RankingService rankingService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LivePushService livePushService;
+
+    @Value("${live.leaderboard.limit:10}")
+    private int pushLimit;
+
+    // 常用的前N名（页面默认条数），与推送条数一起缓存截取结果；其余 limit 每次现截取，不缓存
+    private static final int[] COMMON_LIMITS = { 10, 20, 50, 100 };
+
+    // 以启动时间为前缀，避免重启后ETag与旧版本重复
+    private final String etagPrefix = Long.toString(System.currentTimeMillis(), 36);
+
+    private static final Snapshot EMPTY = new Snapshot(0, -1, Collections.emptyMap());
+
+    // 赛事ID → 榜单快照
+    private final Map<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * 各赛事排名版本变化时重建其快照，已卸载赛事的快照随之丢弃
+     */
+    @Scheduled(fixedDelayString = "${leaderboard.refresh.interval:1000}")
+    public void refresh() {
+        Set<Long> eventIds = rankingService.getEventIds();
+        for (Long eventId : eventIds) {
+            refresh(eventId);
+        }
+        snapshots.keySet().retainAll(eventIds);
+    }
+
+    private void refresh(Long eventId) {
+        Snapshot previous = snapshots.getOrDefault(eventId, EMPTY);
+        long rankingVersion = rankingService.getVersion(eventId);
+        if (rankingVersion == previous.rankingVersion) {
+            return;
+        }
+        try {
+            Snapshot current = build(eventId, previous.version + 1, rankingVersion);
+            snapshots.put(eventId, current);
+            publishChanges(eventId, previous, current);
+        } catch (Exception e) {
+            logger.error("重建赛事 {} 的排行榜快照失败", eventId, e);
+        }
+    }
+
+    /**
+     * 获取榜单，limit 为空时返回完整榜单
+     * @return 赛事未加载或榜单不存在时返回null
+     */
+    public BoardResponse getBoard(Long eventId, String boardKey, Integer limit) {
+        if (!rankingService.getEventIds().contains(eventId)) {
+            return null;
+        }
+        Snapshot current = snapshots.getOrDefault(eventId, EMPTY);
+        Board board = current.boards.get(boardKey);
+        if (board == null) {
+            if (!isKnownBoard(boardKey)) {
+                return null;
+            }
+            board = Board.EMPTY;
+        }
+        return new BoardResponse(etag(eventId, current.version), board.slice(limit, isCachedLimit(limit)));
+    }
+
+    public static String genderBoard(String gender) {
+        return "gender:" + gender;
+    }
+
+    public static String ageGroupBoard(String ageGroup) {
+        return "age:" + ageGroup;
+    }
+
+    public static String genderAgeGroupBoard(String gender, String ageGroup) {
+        return genderBoard(gender) + "|" + ageGroupBoard(ageGroup);
+    }
+
+    public static String categoryBoard(String category) {
+        return "category:" + category;
+    }
+
+    // 年龄组、附加分组不在分组定义内的榜单不由快照提供
+    private boolean isKnownBoard(String boardKey) {
+        if (ALL.equals(boardKey) || OVERALL.equals(boardKey)) {
+            return true;
+        }
+        if (boardKey.startsWith("category:")) {
+            return categoryService.getCategory(boardKey.substring("category:".length())) != null;
+        }
+        int ageIndex = boardKey.indexOf("age:");
+        if (ageIndex < 0) {
+            return boardKey.startsWith("gender:");
+        }
+        return categoryService.isAgeGroup(boardKey.substring(ageIndex + "age:".length()));
+    }
+
+    /**
+     * 有订阅者的榜单前N名发生变化时推送
+     */
+    private void publishChanges(Long eventId, Snapshot previous, Snapshot current) {
+        Set<String> boardKeys = new HashSet<>(previous.boards.keySet());
+        boardKeys.addAll(current.boards.keySet());
+        for (String boardKey : boardKeys) {
+            if (!livePushService.hasSubscribers(LivePushService.boardTopic(eventId, boardKey))) {
+                continue;
+            }
+            byte[] before = previous.boards.getOrDefault(boardKey, Board.EMPTY).slice(pushLimit, true);
+            byte[] after = current.boards.getOrDefault(boardKey, Board.EMPTY).slice(pushLimit, true);
+            if (!Arrays.equals(before, after)) {
+                livePushService.publishBoard(eventId, boardKey, etag(eventId, current.version), after);
+            }
+        }
+    }
+
+    private String etag(Long eventId, long version) {
+        return "\"" + etagPrefix + "-" + eventId + "-" + version + "\"";
+    }
+
+    private Snapshot build(Long eventId, long version, long rankingVersion) throws JsonProcessingException {
+        Map<String, List<ResultView>> views = new HashMap<>();
+        Map<Long, ResultView> validViews = new HashMap<>();
+        for (ResultView view : resultRepository.findViewsByEventId(eventId)) {
+            views.computeIfAbsent(ALL, key -> new ArrayList<>()).add(view);
+            if (!Boolean.TRUE.equals(view.getValid())) {
+                continue;
+            }
+            views.computeIfAbsent(OVERALL, key -> new ArrayList<>()).add(view);
+            validViews.put(view.getId(), view);
+
+            String ageGroup = categoryService.ageGroupLabel(view.getAge());
+            if (view.getGender() != null) {
+                views.computeIfAbsent(genderBoard(view.getGender()), key -> new ArrayList<>()).add(view);
+            }
+            if (ageGroup != null) {
+                views.computeIfAbsent(ageGroupBoard(ageGroup), key -> new ArrayList<>()).add(view);
+            }
+            if (view.getGender() != null && ageGroup != null) {
+                views.computeIfAbsent(genderAgeGroupBoard(view.getGender(), ageGroup), key -> new ArrayList<>()).add(view);
+            }
+        }
+
+        // 附加分组直接按排名引擎中该分组分区的顺序取成绩
+        for (RaceCategory category : categoryService.getCategories()) {
+            long[] resultIds = rankingService.getCategoryResultIds(eventId, category.getName());
+            if (resultIds == null) {
+                continue;
+            }
+            List<ResultView> categoryViews = new ArrayList<>(resultIds.length);
+            for (long resultId : resultIds) {
+                ResultView view = validViews.get(resultId);
+                if (view != null) {
+                    categoryViews.add(view);
+                }
+            }
+            views.put(categoryBoard(category.getName()), categoryViews);
+        }
+
+        Map<String, Board> boards = new HashMap<>();
+        for (Map.Entry<String, List<ResultView>> entry : views.entrySet()) {
+            boards.put(entry.getKey(), serialize(entry.getValue()));
+        }
+        return new Snapshot(version, rankingVersion, boards);
+    }
+
+    private boolean isCachedLimit(Integer limit) {
+        if (limit == null || limit == pushLimit) {
+            return true;
+        }
+        for (int common : COMMON_LIMITS) {
+            if (limit == common) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Board serialize(List<ResultView> views) throws JsonProcessingException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(views.size() * 192 + 2);
+        int[] elementEnds = new int[views.size()];
+        out.write('[');
+        for (int i = 0; i < views.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            byte[] element = objectMapper.writeValueAsBytes(views.get(i));
+            out.write(element, 0, element.length);
+            elementEnds[i] = out.size();
+        }
+        out.write(']');
+        return new Board(out.toByteArray(), elementEnds);
+    }
+
+    /**
+     * 榜单响应：ETag + JSON字节
+     */
+    public static final class BoardResponse {
+        private final String etag;
+        private final byte[] body;
+
+        BoardResponse(String etag, byte[] body) {
+            this.etag = etag;
+            this.body = body;
+        }
+
+        public String getEtag() { return etag; }
+
+        public byte[] getBody() { return body; }
+    }
+
+    private static final class Snapshot {
+        final long version;
+        final long rankingVersion;
+        final Map<String, Board> boards;
+
+        Snapshot(long version, long rankingVersion, Map<String, Board> boards) {
+            this.version = version;
+            this.rankingVersion = rankingVersion;
+            this.boards = boards;
+        }
+    }
+
+    /**
+     * 单个榜单的完整JSON及每个元素的结束位置，前N名按需截取，只缓存固定的几种条数，
+     * 避免任意 limit 参数在快照存续期间累积大量副本
+     */
+    private static final class Board {
+        static final Board EMPTY = new Board(new byte[] { '[', ']' }, new int[0]);
+
+        final byte[] json;
+        final int[] elementEnds;
+        final Map<Integer, byte[]> slices = new ConcurrentHashMap<>();
+
+        Board(byte[] json, int[] elementEnds) {
+            this.json = json;
+            this.elementEnds = elementEnds;
+        }
+
+        byte[] slice(Integer limit, boolean cache) {
+            if (limit == null || limit >= elementEnds.length) {
+                return json;
+            }
+            if (limit <= 0) {
+                return EMPTY.json;
+            }
+            return cache ? slices.computeIfAbsent(limit, this::copyTop) : copyTop(limit);
+        }
+
+        private byte[] copyTop(int n) {
+            int end = elementEnds[n - 1];
+            byte[] bytes = Arrays.copyOf(json, end + 1);
+            bytes[end] = ']';
+            return bytes;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,353 @@
+package com.marathon.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marathon.model.Checkpoint;
+import com.marathon.model.SplitView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 实时推送（Server-Sent Events）
+ * 观众按运动员、打卡点或排行榜订阅，事件只序列化一次后放入每个订阅者的有界队列，
+ * 由少量发送线程异步写出；队列满时丢弃事件，追不上进度、丢弃过多的慢消费者直接断开。
+ * SseEmitter.send 是阻塞写，单次发送超过 live.send.timeout 的订阅者视为卡死并断开，
+ * 同时为发送线程池临时补一个线程，卡住的写不占用正常订阅者的发送能力
+ */
+@Service
+public class LivePushService {
+    private static final Logger logger = LoggerFactory.getLogger(LivePushService.class);
+
+    @Value("${live.subscriber.queue.capacity:64}")
+    private int queueCapacity;
+
+    @Value("${live.subscriber.max.drops:256}")
+    private int maxDrops;
+
+    @Value("${live.emitter.timeout:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${live.sender.threads:4}")
+    private int senderThreads;
+
+    // 发送线程总数上限（含为卡住的发送补充的线程）
+    @Value("${live.sender.max.threads:32}")
+    private int maxSenderThreads;
+
+    @Value("${live.send.timeout:5000}")
+    private long sendTimeoutMs;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SplitAnalyticsService splitAnalyticsService;
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder disconnectedCount = new LongAdder();
+    private final LongAdder stalledCount = new LongAdder();
+
+    private ThreadPoolExecutor senders;
+
+    // 当前卡在发送中的订阅者数，发送线程池按此扩容
+    private int stalledSenders;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        senders = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, "live-push-" + threadIndex.getAndIncrement()));
+    }
+
+    @PreDestroy
+    public void stop() {
+        senders.shutdownNow();
+        for (Set<Subscriber> topicSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : topicSubscribers) {
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    public static String athleteTopic(Long athleteId) {
+        return "athlete:" + athleteId;
+    }
+
+    public static String checkpointTopic(Long checkpointId) {
+        return "checkpoint:" + checkpointId;
+    }
+
+    public static String boardTopic(Long eventId, String boardKey) {
+        return "board:" + eventId + ":" + boardKey;
+    }
+
+    /**
+     * 订阅主题
+     * @param initialData 订阅后立即推送的初始数据（JSON），可为null
+     */
+    public SseEmitter subscribe(String topic, String initialEventName, String initialData) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(topic, emitter, queueCapacity);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        // 与 remove 一样在 compute 内修改，避免加入一个刚被清理掉的空集合
+        subscribers.compute(topic, (key, topicSubscribers) -> {
+            if (topicSubscribers == null) {
+                topicSubscribers = ConcurrentHashMap.newKeySet();
+            }
+            topicSubscribers.add(subscriber);
+            return topicSubscribers;
+        });
+        subscriberCount.incrementAndGet();
+        if (initialData != null) {
+            enqueue(subscriber, new LiveEvent(initialEventName, initialData));
+        }
+        return emitter;
+    }
+
+    public boolean hasSubscribers(String topic) {
+        Set<Subscriber> topicSubscribers = subscribers.get(topic);
+        return topicSubscribers != null && !topicSubscribers.isEmpty();
+    }
+
+    /**
+     * 推送打卡分段（运动员与打卡点两个主题）
+     */
+    public void publishSplit(Long athleteId, Checkpoint checkpoint, LocalDateTime passTime) {
+        String athleteTopic = athleteTopic(athleteId);
+        String checkpointTopic = checkpointTopic(checkpoint.getId());
+        if (!hasSubscribers(athleteTopic) && !hasSubscribers(checkpointTopic)) {
+            return;
+        }
+
+        Map<String, Object> split = new LinkedHashMap<>();
+        split.put("athleteId", athleteId);
+        split.put("checkpointId", checkpoint.getId());
+        split.put("checkpointName", checkpoint.getName());
+        split.put("distance", checkpoint.getDistance());
+        split.put("passTime", passTime.toString());
+        SplitView analytics = splitAnalyticsService.getSplit(athleteId, checkpoint);
+        if (analytics != null) {
+            split.put("chipTime", analytics.getChipTimeMillis());
+            split.put("segmentTime", analytics.getSegmentMillis());
+            split.put("pace", analytics.getPaceMillisPerKm());
+            split.put("position", analytics.getPosition());
+            split.put("projectedFinish", analytics.getProjectedFinishMillis());
+        }
+        try {
+            LiveEvent event = new LiveEvent("split", objectMapper.writeValueAsString(split));
+            publish(athleteTopic, event);
+            publish(checkpointTopic, event);
+        } catch (Exception e) {
+            logger.error("推送打卡分段失败: athleteId={}", athleteId, e);
+        }
+    }
+
+    /**
+     * 推送排行榜变化
+     */
+    public void publishBoard(Long eventId, String boardKey, String etag, byte[] json) {
+        publish(boardTopic(eventId, boardKey), new LiveEvent("leaderboard", boardPayload(etag, json)));
+    }
+
+    /**
+     * 榜单事件内容：{"version": ETag去掉引号, "board": 榜单JSON}
+     */
+    public static String boardPayload(String etag, byte[] json) {
+        return "{\"version\":\"" + etag.replace("\"", "") + "\",\"board\":"
+                + new String(json, StandardCharsets.UTF_8) + "}";
+    }
+
+    /**
+     * 定期发送注释行保持连接，顺便清理已断开的订阅者
+     */
+    @Scheduled(fixedDelayString = "${live.heartbeat.interval:15000}")
+    public void heartbeat() {
+        LiveEvent event = new LiveEvent(null, null);
+        for (Set<Subscriber> topicSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : topicSubscribers) {
+                enqueue(subscriber, event);
+            }
+        }
+    }
+
+    /**
+     * 断开单次发送超时的订阅者：不再向其排队和发送，并为发送线程池补一个线程，
+     * 卡住的线程在写操作返回（或被容器超时中断）后关闭连接并归还
+     */
+    @Scheduled(fixedDelayString = "${live.send.check.interval:1000}")
+    public void disconnectStalled() {
+        long now = System.nanoTime();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (Set<Subscriber> topicSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : topicSubscribers) {
+                long started = subscriber.sendStartedNanos;
+                if (started != 0 && now - started > timeoutNanos && subscriber.stalled.compareAndSet(false, true)) {
+                    stalledCount.increment();
+                    disconnectedCount.increment();
+                    remove(subscriber);
+                    resizeSenders(1);
+                    logger.warn("订阅者发送超过 {} ms 未完成，断开: topic={}", sendTimeoutMs, subscriber.topic);
+                }
+            }
+        }
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("subscribers", (long) subscriberCount.get());
+        stats.put("topics", (long) subscribers.size());
+        stats.put("published", publishedCount.sum());
+        stats.put("dropped", droppedCount.sum());
+        stats.put("disconnectedSlowConsumers", disconnectedCount.sum());
+        stats.put("stalledSends", stalledCount.sum());
+        stats.put("senderThreads", (long) senders.getMaximumPoolSize());
+        return stats;
+    }
+
+    private void publish(String topic, LiveEvent event) {
+        Set<Subscriber> topicSubscribers = subscribers.get(topic);
+        if (topicSubscribers == null) {
+            return;
+        }
+        publishedCount.increment();
+        for (Subscriber subscriber : topicSubscribers) {
+            enqueue(subscriber, event);
+        }
+    }
+
+    private void enqueue(Subscriber subscriber, LiveEvent event) {
+        if (!subscriber.queue.offer(event)) {
+            droppedCount.increment();
+            if (subscriber.drops.incrementAndGet() > maxDrops) {
+                // 慢消费者：断开，客户端可自行重连
+                disconnectedCount.increment();
+                remove(subscriber);
+                subscriber.emitter.complete();
+            }
+            return;
+        }
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            LiveEvent event;
+            while (!subscriber.stalled.get() && (event = subscriber.queue.poll()) != null) {
+                subscriber.sendStartedNanos = System.nanoTime();
+                try {
+                    if (event.name == null) {
+                        subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        subscriber.emitter.send(SseEmitter.event().name(event.name).data(event.data, MediaType.APPLICATION_JSON));
+                    }
+                } finally {
+                    subscriber.sendStartedNanos = 0;
+                }
+            }
+            if (subscriber.stalled.get()) {
+                subscriber.emitter.complete();
+            } else {
+                // 队列发空（追上进度）才清零丢弃计数，只偶尔发出一条的慢消费者仍会累计到上限
+                subscriber.drops.set(0);
+            }
+        } catch (Exception e) {
+            remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        } finally {
+            if (subscriber.stalled.get()) {
+                // 已断开的订阅者不再调度，归还为其补充的线程
+                resizeSenders(-1);
+            } else {
+                subscriber.scheduled.set(false);
+                if (!subscriber.queue.isEmpty() && subscriber.scheduled.compareAndSet(false, true)) {
+                    senders.execute(() -> drain(subscriber));
+                }
+            }
+        }
+    }
+
+    /**
+     * 按卡住的发送数调整发送线程数，总数不超过 live.sender.max.threads
+     */
+    private synchronized void resizeSenders(int delta) {
+        stalledSenders += delta;
+        int size = Math.min(senderThreads + stalledSenders, Math.max(senderThreads, maxSenderThreads));
+        if (size > senders.getMaximumPoolSize()) {
+            senders.setMaximumPoolSize(size);
+            senders.setCorePoolSize(size);
+        } else if (size < senders.getMaximumPoolSize()) {
+            senders.setCorePoolSize(size);
+            senders.setMaximumPoolSize(size);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        AtomicBoolean removed = new AtomicBoolean();
+        // 主题下最后一个订阅者离开时一并移除主题，避免按运动员/打卡点订阅留下大量空集合
+        subscribers.computeIfPresent(subscriber.topic, (topic, topicSubscribers) -> {
+            removed.set(topicSubscribers.remove(subscriber));
+            return topicSubscribers.isEmpty() ? null : topicSubscribers;
+        });
+        if (removed.get()) {
+            subscriberCount.decrementAndGet();
+            subscriber.queue.clear();
+        }
+    }
+
+    private static final class LiveEvent {
+        final String name;
+        final String data;
+
+        LiveEvent(String name, String data) {
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    private static final class Subscriber {
+        final String topic;
+        final SseEmitter emitter;
+        final BlockingQueue<LiveEvent> queue;
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final AtomicInteger drops = new AtomicInteger();
+        // 当前发送开始的时间（nanoTime），0 表示没有发送在进行
+        volatile long sendStartedNanos;
+        final AtomicBoolean stalled = new AtomicBoolean();
+
+        Subscriber(String topic, SseEmitter emitter, int queueCapacity) {
+            this.topic = topic;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+    }
+}
\ No newline at end of file
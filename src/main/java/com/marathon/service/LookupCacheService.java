@@ -0,0 +1,356 @@
+package com.marathon.service;
+
+import com.marathon.model.Athlete;
+import com.marathon.model.Checkpoint;
+import com.marathon.repository.AthleteRepository;
+import com.marathon.repository.CheckpointRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 读卡查找缓存
+ * 按赛事加载 卡号→运动员ID、运动员ID→赛事ID 映射，以及各赛事按顺序排列的打卡点和 读卡垫→打卡点 映射；
+ * 多个赛事共用读卡垫时，先由卡号确定运动员所属赛事，再在该赛事内解析读卡垫。
+ * 运动员、打卡点变更时由对应Service负责失效。
+ * 回查数据库仍未找到的卡号和打卡点ID短时间内记为未知（负缓存），无效读卡不会每次都查库；
+ * 注册、导入运动员和打卡点变更时清除
+ */
+@Service
+public class LookupCacheService {
+
+    @Autowired
+    private AthleteRepository athleteRepository;
+
+    @Autowired
+    private CheckpointRepository checkpointRepository;
+
+    private final Map<String, Long> athleteIdsByCardId = new ConcurrentHashMap<>();
+
+    private final Map<Long, Long> eventIdsByAthleteId = new ConcurrentHashMap<>();
+
+    private final Map<Long, EventCheckpoints> eventCheckpoints = new ConcurrentHashMap<>();
+
+    // 打卡点ID为自增主键，数量很少，直接用ID作下标（包含全部已加载赛事）
+    private volatile Checkpoint[] checkpointsById = new Checkpoint[0];
+
+    private final LongAdder athleteHits = new LongAdder();
+    private final LongAdder athleteMisses = new LongAdder();
+    private final LongAdder checkpointHits = new LongAdder();
+    private final LongAdder checkpointMisses = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+
+    @Value("${lookup.negative.ttl:5000}")
+    private long negativeTtlMs;
+
+    @Value("${lookup.negative.max.entries:10000}")
+    private int negativeMaxEntries;
+
+    // 未知卡号 / 打卡点ID -> 过期时间（nanoTime）
+    private final Map<String, Long> unknownCards = new ConcurrentHashMap<>();
+    private final Map<Long, Long> unknownCheckpoints = new ConcurrentHashMap<>();
+
+    /**
+     * 加载赛事的打卡点和卡号映射；与其他已加载赛事的卡号冲突时拒绝加载
+     */
+    public synchronized void loadEvent(Long eventId) {
+        List<Object[]> mappings = athleteRepository.findCardIdMappings(eventId);
+        for (Object[] row : mappings) {
+            Long athleteId = athleteIdsByCardId.get((String) row[0]);
+            Long otherEventId = athleteId != null ? eventIdsByAthleteId.get(athleteId) : null;
+            if (otherEventId != null && !otherEventId.equals(eventId)) {
+                throw new RuntimeException("卡号 " + row[0] + " 已被正在计时的赛事 " + otherEventId + " 使用");
+            }
+        }
+        eventCheckpoints.put(eventId, new EventCheckpoints(checkpointRepository.findByEventIdOrderByOrderIndexAsc(eventId)));
+        rebuildCheckpointIndex();
+        putAthletes(eventId, mappings);
+        unknownCards.clear();
+        unknownCheckpoints.clear();
+    }
+
+    /**
+     * 移除赛事的全部缓存
+     */
+    public synchronized void evictEvent(Long eventId) {
+        eventCheckpoints.remove(eventId);
+        rebuildCheckpointIndex();
+        removeAthletes(eventId);
+    }
+
+    public boolean isLoaded(Long eventId) {
+        return eventId != null && eventCheckpoints.containsKey(eventId);
+    }
+
+    public Set<Long> getLoadedEventIds() {
+        return new HashSet<>(eventCheckpoints.keySet());
+    }
+
+    /**
+     * 重新加载赛事的全部卡号映射（赛事未加载时忽略）。
+     * 先查出新映射，再只应用差异：新增/变更的先写入，已不存在的后移除，
+     * 导入期间实时读卡的有效卡号始终命中缓存，不会落到查库或负缓存
+     */
+    public synchronized void reloadAthletes(Long eventId) {
+        if (!isLoaded(eventId)) {
+            return;
+        }
+        List<Object[]> mappings = athleteRepository.findCardIdMappings(eventId);
+        Map<String, Long> current = new HashMap<>(mappings.size() * 2);
+        for (Object[] row : mappings) {
+            current.put((String) row[0], (Long) row[1]);
+        }
+        Set<Long> athleteIds = new HashSet<>(current.values());
+
+        putAthletes(eventId, mappings);
+        // 先按旧的运动员→赛事映射移除失效卡号，再移除已删除的运动员
+        athleteIdsByCardId.entrySet().removeIf(entry -> eventId.equals(eventIdsByAthleteId.get(entry.getValue()))
+                && !entry.getValue().equals(current.get(entry.getKey())));
+        eventIdsByAthleteId.entrySet().removeIf(entry -> eventId.equals(entry.getValue())
+                && !athleteIds.contains(entry.getKey()));
+        unknownCards.clear();
+    }
+
+    /**
+     * 重新加载赛事的打卡点快照（赛事未加载时忽略）
+     */
+    public synchronized void reloadCheckpoints(Long eventId) {
+        unknownCheckpoints.clear();
+        if (!isLoaded(eventId)) {
+            return;
+        }
+        eventCheckpoints.put(eventId, new EventCheckpoints(checkpointRepository.findByEventIdOrderByOrderIndexAsc(eventId)));
+        rebuildCheckpointIndex();
+    }
+
+    /**
+     * 根据卡号查找已加载赛事中的运动员ID，未命中时回查数据库
+     * @return 运动员ID，不存在时返回null
+     */
+    public Long findAthleteId(String cardId) {
+        if (cardId == null) {
+            return null;
+        }
+        Long athleteId = athleteIdsByCardId.get(cardId);
+        if (athleteId != null) {
+            athleteHits.increment();
+            return athleteId;
+        }
+
+        athleteMisses.increment();
+        if (isKnownUnknown(unknownCards, cardId)) {
+            return null;
+        }
+        Set<Long> loadedEventIds = getLoadedEventIds();
+        if (loadedEventIds.isEmpty()) {
+            return null;
+        }
+        List<Athlete> athletes = athleteRepository.findByCardIdAndEventIdIn(cardId, loadedEventIds);
+        if (athletes.isEmpty()) {
+            markUnknown(unknownCards, cardId);
+            return null;
+        }
+        putAthlete(athletes.get(0));
+        return athletes.get(0).getId();
+    }
+
+    /**
+     * 卡号被哪个已加载赛事使用（只查缓存，用于注册时的跨赛事卡号冲突检查）
+     * @return 赛事ID，未被已加载赛事使用时返回null
+     */
+    public Long findLoadedEventIdByCard(String cardId) {
+        Long athleteId = cardId != null ? athleteIdsByCardId.get(cardId) : null;
+        return athleteId != null ? eventIdsByAthleteId.get(athleteId) : null;
+    }
+
+    /**
+     * 运动员所属赛事，未缓存时回查数据库
+     * @return 赛事ID，运动员不存在时返回null
+     */
+    public Long findEventId(Long athleteId) {
+        Long eventId = eventIdsByAthleteId.get(athleteId);
+        if (eventId != null) {
+            return eventId;
+        }
+        return athleteRepository.findById(athleteId).map(Athlete::getEventId).orElse(null);
+    }
+
+    /**
+     * 根据ID查找打卡点，未命中时回查数据库并刷新所属赛事的快照
+     * @return 打卡点，不存在时返回null
+     */
+    public Checkpoint findCheckpoint(Long checkpointId) {
+        if (checkpointId == null) {
+            return null;
+        }
+        Checkpoint[] byId = checkpointsById;
+        if (checkpointId >= 0 && checkpointId < byId.length && byId[checkpointId.intValue()] != null) {
+            checkpointHits.increment();
+            return byId[checkpointId.intValue()];
+        }
+
+        checkpointMisses.increment();
+        if (isKnownUnknown(unknownCheckpoints, checkpointId)) {
+            return null;
+        }
+        Optional<Checkpoint> checkpointOpt = checkpointRepository.findById(checkpointId);
+        if (checkpointOpt.isPresent()) {
+            reloadCheckpoints(checkpointOpt.get().getEventId());
+        } else {
+            markUnknown(unknownCheckpoints, checkpointId);
+        }
+        return checkpointOpt.orElse(null);
+    }
+
+    /**
+     * 把读卡器上报的读卡垫编号解析为赛事内的打卡点
+     * @return 打卡点，赛事未加载或该赛事未使用此读卡垫时返回null
+     */
+    public Checkpoint resolveCheckpoint(Long eventId, Long matId) {
+        EventCheckpoints checkpoints = eventCheckpoints.get(eventId);
+        Checkpoint checkpoint = checkpoints != null && matId != null ? checkpoints.byMat.get(matId) : null;
+        if (checkpoint != null) {
+            checkpointHits.increment();
+        } else {
+            checkpointMisses.increment();
+        }
+        return checkpoint;
+    }
+
+    /**
+     * 赛事按顺序排列的全部打卡点，赛事未加载时为空
+     */
+    public List<Checkpoint> getCheckpoints(Long eventId) {
+        EventCheckpoints checkpoints = eventCheckpoints.get(eventId);
+        return checkpoints != null ? checkpoints.ordered : Collections.emptyList();
+    }
+
+    public void putAthlete(Athlete athlete) {
+        unknownCards.remove(athlete.getCardId());
+        if (isLoaded(athlete.getEventId())) {
+            eventIdsByAthleteId.put(athlete.getId(), athlete.getEventId());
+            athleteIdsByCardId.put(athlete.getCardId(), athlete.getId());
+        }
+    }
+
+    public void evictAthlete(String cardId) {
+        Long athleteId = athleteIdsByCardId.remove(cardId);
+        if (athleteId != null) {
+            eventIdsByAthleteId.remove(athleteId);
+        }
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("events", (long) eventCheckpoints.size());
+        stats.put("athletes", (long) athleteIdsByCardId.size());
+        stats.put("athleteHits", athleteHits.sum());
+        stats.put("athleteMisses", athleteMisses.sum());
+        long checkpoints = 0;
+        for (EventCheckpoints event : eventCheckpoints.values()) {
+            checkpoints += event.ordered.size();
+        }
+        stats.put("checkpoints", checkpoints);
+        stats.put("checkpointHits", checkpointHits.sum());
+        stats.put("checkpointMisses", checkpointMisses.sum());
+        stats.put("negativeHits", negativeHits.sum());
+        stats.put("unknownCards", (long) unknownCards.size());
+        stats.put("unknownCheckpoints", (long) unknownCheckpoints.size());
+        return stats;
+    }
+
+    private <K> boolean isKnownUnknown(Map<K, Long> unknown, K key) {
+        Long expiresAt = unknown.get(key);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - expiresAt < 0) {
+            negativeHits.increment();
+            return true;
+        }
+        unknown.remove(key, expiresAt);
+        return false;
+    }
+
+    private <K> void markUnknown(Map<K, Long> unknown, K key) {
+        if (negativeTtlMs <= 0) {
+            return;
+        }
+        // 大量随机无效读卡时整体清空，不让负缓存无限增长
+        if (unknown.size() >= negativeMaxEntries) {
+            unknown.clear();
+        }
+        unknown.put(key, System.nanoTime() + negativeTtlMs * 1_000_000L);
+    }
+
+    private void putAthletes(Long eventId, List<Object[]> mappings) {
+        for (Object[] row : mappings) {
+            eventIdsByAthleteId.put((Long) row[1], eventId);
+            athleteIdsByCardId.put((String) row[0], (Long) row[1]);
+        }
+    }
+
+    private void removeAthletes(Long eventId) {
+        Set<Long> athleteIds = new HashSet<>();
+        for (Map.Entry<Long, Long> entry : eventIdsByAthleteId.entrySet()) {
+            if (eventId.equals(entry.getValue())) {
+                athleteIds.add(entry.getKey());
+            }
+        }
+        athleteIdsByCardId.values().removeAll(athleteIds);
+        eventIdsByAthleteId.keySet().removeAll(athleteIds);
+    }
+
+    private void rebuildCheckpointIndex() {
+        long maxId = 0;
+        for (EventCheckpoints event : eventCheckpoints.values()) {
+            for (Checkpoint checkpoint : event.ordered) {
+                maxId = Math.max(maxId, checkpoint.getId());
+            }
+        }
+        Checkpoint[] byId = new Checkpoint[(int) maxId + 1];
+        for (EventCheckpoints event : eventCheckpoints.values()) {
+            for (Checkpoint checkpoint : event.ordered) {
+                byId[checkpoint.getId().intValue()] = checkpoint;
+            }
+        }
+        checkpointsById = byId;
+    }
+
+    /**
+     * 读卡器上报的编号：设置了读卡垫编号时用读卡垫编号，否则为打卡点ID
+     */
+    public static Long matOf(Checkpoint checkpoint) {
+        return checkpoint.getMatId() != null ? checkpoint.getMatId() : checkpoint.getId();
+    }
+
+    /**
+     * 单个赛事的打卡点快照，整体替换
+     */
+    private static final class EventCheckpoints {
+        final List<Checkpoint> ordered;
+        final Map<Long, Checkpoint> byMat = new HashMap<>();
+
+        EventCheckpoints(List<Checkpoint> checkpoints) {
+            ordered = Collections.unmodifiableList(new ArrayList<>(checkpoints));
+            for (Checkpoint checkpoint : checkpoints) {
+                byMat.put(matOf(checkpoint), checkpoint);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+package com.marathon.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.marathon.model.ChipRead;
+import com.marathon.model.MutableChipRead;
+import com.marathon.monitor.IngestMetrics;
+import com.marathon.util.ChipReadDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+
+public class MqttMessageHandler implements MessageHandler {
+    private static final Logger logger = LoggerFactory.getLogger(MqttMessageHandler.class);
+
+    @Autowired
+    private ChipReadDispatcher chipReadDispatcher;
+
+    @Autowired
+    private ChipReadJournal chipReadJournal;
+
+    @Autowired
+    private IngestMetrics ingestMetrics;
+
+    private final ChipReadDecoder decoder = new ChipReadDecoder(new JsonFactory(), ZoneId.systemDefault());
+
+    // 每个MQTT回调线程复用一个解码目标
+    private final ThreadLocal<MutableChipRead> reusableRead = ThreadLocal.withInitial(MutableChipRead::new);
+
+    @Override
+    public void handleMessage(Message<?> message) throws MessagingException {
+        Object payload = message.getPayload();
+        ChipRead read;
+        long parseStart = System.nanoTime();
+        try {
+            byte[] bytes = payload instanceof byte[]
+                    ? (byte[]) payload
+                    : payload.toString().getBytes(StandardCharsets.UTF_8);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Received MQTT message: {} bytes", bytes.length);
+            }
+
+            // 解析二进制或JSON报文
+            MutableChipRead mutableRead = reusableRead.get();
+            decoder.decode(bytes, mutableRead);
+
+            // 按打卡点分片的主题（marathon/timing/{checkpointId}）可省略消息体中的打卡点ID
+            if (!mutableRead.hasCheckpointId()) {
+                Long topicCheckpointId = checkpointIdFromTopic(message.getHeaders().get(MqttHeaders.RECEIVED_TOPIC, String.class));
+                if (topicCheckpointId == null) {
+                    throw new IllegalArgumentException("读卡报文缺少 checkpointId");
+                }
+                mutableRead.setCheckpointId(topicCheckpointId);
+            }
+
+            read = mutableRead.toChipRead();
+        } catch (Exception e) {
+            logger.error("Error processing MQTT message: {}", e.getMessage(), e);
+            return;
+        }
+        ingestMetrics.recordParse(System.nanoTime() - parseStart);
+
+        if (!chipReadJournal.isEnabled()) {
+            // 按运动员分发，过滤重复读卡后放入入库队列
+            chipReadDispatcher.dispatch(read);
+            return;
+        }
+        try {
+            // 先写入本地日志并落盘，返回后才确认MQTT消息；由回放线程送入入库管道
+            chipReadJournal.append(read);
+        } catch (RuntimeException e) {
+            // 抛出异常使消息不被确认，由Broker重新投递
+            throw new MessagingException(message, "写入读卡日志失败", e);
+        }
+    }
+
+    private Long checkpointIdFromTopic(String topic) {
+        if (topic == null) {
+            return null;
+        }
+        return Long.valueOf(topic.substring(topic.lastIndexOf('/') + 1));
+    }
+}
\ No newline at end of file
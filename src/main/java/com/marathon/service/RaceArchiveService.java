@@ -0,0 +1,128 @@
+package com.marathon.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * 赛事打卡记录归档
+ * 按主键区间分块把已结束赛事的记录从 race_records 移到 race_records_archive，每块一个事务，
+ * 避免长事务和大范围锁；若该赛事有独立分区（p+赛事ID），迁移完成后确认分区为空、
+ * 且分区范围恰好只包含该赛事，才删除分区
+ */
+@Service
+public class RaceArchiveService {
+    private static final Logger logger = LoggerFactory.getLogger(RaceArchiveService.class);
+
+    private static final String CREATE_ARCHIVE_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS race_records_archive LIKE race_records";
+
+    private static final String SELECT_ID_RANGE_SQL = "SELECT MIN(id), MAX(id) FROM race_records WHERE event_id = ?";
+
+    private static final String COPY_CHUNK_SQL =
+            "INSERT INTO race_records_archive SELECT * FROM race_records WHERE event_id = ? AND id BETWEEN ? AND ?";
+
+    private static final String DELETE_CHUNK_SQL =
+            "DELETE FROM race_records WHERE event_id = ? AND id BETWEEN ? AND ?";
+
+    private static final String SELECT_PARTITIONS_SQL =
+            "SELECT PARTITION_NAME, PARTITION_METHOD, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'race_records' AND PARTITION_NAME IS NOT NULL " +
+            "ORDER BY PARTITION_ORDINAL_POSITION";
+
+    @Value("${archive.chunk.size:10000}")
+    private int chunkSize;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private LookupCacheService lookupCacheService;
+
+    /**
+     * 归档一个赛事的全部打卡记录
+     * @return 迁移的记录条数
+     */
+    public synchronized long archiveEvent(long eventId) {
+        if (lookupCacheService.isLoaded(eventId)) {
+            throw new RuntimeException("不能归档正在计时的赛事: " + eventId);
+        }
+        long startNanos = System.nanoTime();
+        jdbcTemplate.execute(CREATE_ARCHIVE_TABLE_SQL);
+
+        long[] range = jdbcTemplate.queryForObject(SELECT_ID_RANGE_SQL,
+                (rs, rowNum) -> new long[] { rs.getLong(1), rs.getLong(2) }, eventId);
+        long moved = 0;
+        if (range != null && range[1] > 0) {
+            for (long from = range[0]; from <= range[1]; from += chunkSize) {
+                long to = Math.min(from + chunkSize - 1, range[1]);
+                long fromId = from;
+                moved += transactionTemplate.execute(status -> {
+                    jdbcTemplate.update(COPY_CHUNK_SQL, eventId, fromId, to);
+                    return jdbcTemplate.update(DELETE_CHUNK_SQL, eventId, fromId, to);
+                });
+            }
+        }
+
+        dropEventPartition(eventId);
+
+        logger.info("归档赛事 {} 的打卡记录 {} 条，耗时 {} ms",
+                eventId, moved, (System.nanoTime() - startNanos) / 1_000_000L);
+        return moved;
+    }
+
+    /**
+     * 删除赛事的独立分区 p+赛事ID（不存在时忽略）。
+     * DROP PARTITION 会连同分区内数据一起删除，因此要求：RANGE 分区、范围恰好为 [赛事ID, 赛事ID+1)，
+     * 且分区内已没有记录；不满足时拒绝删除
+     */
+    private void dropEventPartition(long eventId) {
+        String partition = "p" + eventId;
+        List<String[]> partitions = jdbcTemplate.query(SELECT_PARTITIONS_SQL,
+                (rs, rowNum) -> new String[] { rs.getString(1), rs.getString(2), rs.getString(3) });
+        int position = -1;
+        for (int i = 0; i < partitions.size(); i++) {
+            if (partition.equalsIgnoreCase(partitions.get(i)[0])) {
+                position = i;
+            }
+        }
+        if (position < 0) {
+            return;
+        }
+
+        String[] current = partitions.get(position);
+        // RANGE 分区的 PARTITION_DESCRIPTION 为 LESS THAN 的值；首个分区的下界按赛事ID从1开始计
+        long lowerBound = position > 0 ? parseBound(partitions.get(position - 1)[2]) : 1L;
+        long upperBound = parseBound(current[2]);
+        if (!"RANGE".equalsIgnoreCase(current[1]) || lowerBound != eventId || upperBound != eventId + 1) {
+            throw new RuntimeException("分区 " + partition + " 的范围不是仅包含赛事 " + eventId
+                    + "（" + current[1] + " [" + lowerBound + ", " + current[2] + ")），拒绝删除；记录已归档");
+        }
+
+        Long remaining = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM race_records PARTITION (" + partition + ")", Long.class);
+        if (remaining == null || remaining > 0) {
+            throw new RuntimeException("分区 " + partition + " 仍有 " + remaining + " 条记录，拒绝删除");
+        }
+        jdbcTemplate.execute("ALTER TABLE race_records DROP PARTITION " + partition);
+        logger.info("已删除赛事 {} 的空分区 {}", eventId, partition);
+    }
+
+    private static long parseBound(String description) {
+        try {
+            return Long.parseLong(description.trim());
+        } catch (RuntimeException e) {
+            // MAXVALUE 或非整数边界
+            return Long.MIN_VALUE;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,413 @@
+package com.marathon.service;
+
+import com.marathon.model.Checkpoint;
+import com.marathon.model.RaceState;
+import com.marathon.model.RecomputeJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 赛事成绩批量重算（打卡点配置修正后使用），只对已加载的赛事执行
+ * 按运动员顺序流式读取一遍 race_records，在 ForkJoinPool 中按运动员区间并行重建比赛状态并判定有效性，
+ * 按批分多个短事务写回成绩（不长时间锁住全场成绩，实时入库的成绩保存不被阻塞），最后只重建一次排名；
+ * 同一时间只运行一个任务，可查询进度，写回开始前可取消
+ */
+@Service
+public class RaceRecomputeService {
+    private static final Logger logger = LoggerFactory.getLogger(RaceRecomputeService.class);
+
+    private static final String SELECT_MAX_RECORD_ID_SQL =
+            "SELECT COALESCE(MAX(id), 0) FROM race_records WHERE event_id = ?";
+
+    // 读取的列和排序都与 idx_rr_event_athlete (event_id, athlete_id, checkpoint_id, pass_time) 一致，
+    // 只按索引顺序扫描、不额外排序；每个运动员的记录在计算时再按通过时间排序
+    private static final String SELECT_RECORDS_SQL =
+            "SELECT athlete_id, checkpoint_id, pass_time FROM race_records WHERE event_id = ? AND id <= ? " +
+            "ORDER BY athlete_id ASC, checkpoint_id ASC, pass_time ASC";
+
+    // 任务读取之后新落库的记录，状态替换后补上
+    private static final String SELECT_RECORDS_AFTER_SQL =
+            "SELECT athlete_id, checkpoint_id, pass_time FROM race_records WHERE event_id = ? AND id > ? " +
+            "ORDER BY pass_time ASC";
+
+    private static final String SELECT_RESULTS_SQL = "SELECT id, athlete_id FROM results WHERE event_id = ?";
+
+    private static final String UPDATE_RESULT_SQL =
+            "UPDATE results SET total_time_ms = ?, gun_time_ms = ?, net_time_ms = ?, valid = ? WHERE id = ?";
+
+    private static final String INSERT_RESULT_SQL =
+            "INSERT INTO results (event_id, athlete_id, total_time_ms, gun_time_ms, net_time_ms, valid) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String INVALIDATE_RESULT_SQL =
+            "UPDATE results SET valid = false, ranking = NULL, gender_ranking = NULL, age_group_ranking = NULL " +
+            "WHERE id = ?";
+
+    @Value("${recompute.threads:4}")
+    private int parallelism;
+
+    @Value("${recompute.fork.threshold:512}")
+    private int forkThreshold;
+
+    // 每个写回事务的成绩行数
+    @Value("${recompute.write.batch.size:500}")
+    private int writeBatchSize;
+
+    @Autowired
+    private LookupCacheService lookupCacheService;
+
+    @Autowired
+    private RaceStateService raceStateService;
+
+    @Autowired
+    private WaveService waveService;
+
+    @Autowired
+    private RankingService rankingService;
+
+    @Autowired
+    private SplitAnalyticsService splitAnalyticsService;
+
+    @Autowired
+    private TimingService timingService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    private final AtomicLong jobSequence = new AtomicLong();
+
+    private ForkJoinPool forkJoinPool;
+
+    private ExecutorService jobRunner;
+
+    private volatile RecomputeJob currentJob;
+
+    @Autowired
+    public RaceRecomputeService(DataSource dataSource, @Value("${export.fetch.size:1000}") int fetchSize) {
+        // 与成绩导出相同，MySQL 下逐行流式读取
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    @PostConstruct
+    public void start() {
+        forkJoinPool = new ForkJoinPool(parallelism);
+        jobRunner = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "race-recompute"));
+    }
+
+    @PreDestroy
+    public void stop() {
+        RecomputeJob job = currentJob;
+        if (job != null) {
+            job.requestCancel();
+        }
+        jobRunner.shutdownNow();
+        forkJoinPool.shutdownNow();
+    }
+
+    /**
+     * 提交一次赛事成绩重算
+     * @return 新任务；赛事未加载或已有任务在运行时抛出异常
+     */
+    public synchronized RecomputeJob submit(long eventId) {
+        if (!lookupCacheService.isLoaded(eventId)) {
+            throw new RuntimeException("赛事 " + eventId + " 未加载，无法重算");
+        }
+        RecomputeJob running = currentJob;
+        if (running != null && running.getStatus() == RecomputeJob.Status.RUNNING) {
+            throw new RuntimeException("已有重算任务正在运行: " + running.getId());
+        }
+        RecomputeJob job = new RecomputeJob(jobSequence.incrementAndGet(), eventId);
+        currentJob = job;
+        jobRunner.execute(() -> run(job));
+        return job;
+    }
+
+    /**
+     * 查询任务，只保留最近一次
+     */
+    public RecomputeJob getJob(long jobId) {
+        RecomputeJob job = currentJob;
+        return job != null && job.getId() == jobId ? job : null;
+    }
+
+    /**
+     * 请求取消任务；开始写回成绩后不再响应取消
+     */
+    public RecomputeJob cancel(long jobId) {
+        RecomputeJob job = getJob(jobId);
+        if (job != null) {
+            job.requestCancel();
+        }
+        return job;
+    }
+
+    private void run(RecomputeJob job) {
+        long startNanos = System.nanoTime();
+        long eventId = job.getEventId();
+        try {
+            long maxRecordId = jdbcTemplate.queryForObject(SELECT_MAX_RECORD_ID_SQL, Long.class, eventId);
+            AthleteRecords records = load(job, maxRecordId);
+
+            job.startPhase(RecomputeJob.Phase.COMPUTING);
+            job.setTotalAthletes(records.athleteCount);
+            RaceState[] states = new RaceState[records.athleteCount];
+            boolean[] valid = new boolean[records.athleteCount];
+            forkJoinPool.invoke(new ComputeTask(job, records, states, valid, 0, records.athleteCount));
+            checkCancelled(job);
+
+            // 写回分批提交，开始后不再响应取消；中途失败时已提交的批次保留，重新执行任务即可
+            job.startPhase(RecomputeJob.Phase.WRITING);
+            write(job, records, states, valid);
+
+            // 替换内存状态，并补上读取之后才落库的记录
+            Map<Long, RaceState> rebuilt = new HashMap<>(records.athleteCount * 2);
+            for (int i = 0; i < records.athleteCount; i++) {
+                rebuilt.put(records.athleteIds[i], states[i]);
+            }
+            raceStateService.replaceAll(eventId, rebuilt);
+            Set<Long> lateAthletes = new LinkedHashSet<>();
+            jdbcTemplate.query(SELECT_RECORDS_AFTER_SQL, rs -> {
+                Checkpoint checkpoint = lookupCacheService.findCheckpoint(rs.getLong(2));
+                if (checkpoint != null) {
+                    raceStateService.record(rs.getLong(1), checkpoint, rs.getTimestamp(3).toLocalDateTime());
+                    lateAthletes.add(rs.getLong(1));
+                }
+            }, eventId, maxRecordId);
+            // 这些运动员的成绩已被上面的写回按旧记录覆盖（任务期间完赛的会被作废），按补齐后的状态重新计算
+            for (Long athleteId : lateAthletes) {
+                try {
+                    timingService.calculateResult(athleteId);
+                } catch (Exception e) {
+                    logger.error("重算后补算成绩失败: athleteId={}", athleteId, e);
+                }
+            }
+
+            job.startPhase(RecomputeJob.Phase.RANKING);
+            rankingService.rebuild(eventId);
+            splitAnalyticsService.rebuild(eventId);
+
+            job.startPhase(RecomputeJob.Phase.DONE);
+            job.finish(RecomputeJob.Status.COMPLETED, null);
+            logger.info("赛事 {} 成绩重算完成: 打卡记录 {} 条, 运动员 {} 人, 写回成绩 {} 条, 耗时 {} ms",
+                    eventId, job.getLoadedRecords(), records.athleteCount, job.getWrittenResults(),
+                    (System.nanoTime() - startNanos) / 1_000_000L);
+        } catch (CancellationException e) {
+            job.finish(RecomputeJob.Status.CANCELLED, null);
+            logger.info("赛事成绩重算已取消: job={}, 赛事={}, 阶段={}", job.getId(), eventId, job.getPhase());
+        } catch (Exception e) {
+            job.finish(RecomputeJob.Status.FAILED, e.getMessage());
+            logger.error("赛事成绩重算失败: job={}, 赛事={}, 阶段={}", job.getId(), eventId, job.getPhase(), e);
+        }
+    }
+
+    /**
+     * 按运动员顺序流式读取赛事的全部打卡记录，按列存放
+     */
+    private AthleteRecords load(RecomputeJob job, long maxRecordId) {
+        AthleteRecords records = new AthleteRecords();
+        streamingJdbcTemplate.query(SELECT_RECORDS_SQL, rs -> {
+            records.add(rs.getLong(1), rs.getLong(2), RaceStateService.toMillis(rs.getTimestamp(3).toLocalDateTime()));
+            if ((records.recordCount & 0xFFF) == 0) {
+                job.addLoadedRecords(0x1000);
+                checkCancelled(job);
+            }
+        }, job.getEventId(), maxRecordId);
+        job.addLoadedRecords(records.recordCount & 0xFFF);
+        records.seal();
+        return records;
+    }
+
+    private void write(RecomputeJob job, AthleteRecords records, RaceState[] states, boolean[] valid) {
+        long eventId = job.getEventId();
+        Map<Long, Long> resultIds = new HashMap<>();
+        jdbcTemplate.query(SELECT_RESULTS_SQL, rs -> {
+            resultIds.put(rs.getLong(2), rs.getLong(1));
+        }, eventId);
+
+        List<Object[]> updates = new ArrayList<>(writeBatchSize);
+        List<Object[]> inserts = new ArrayList<>(writeBatchSize);
+        List<Object[]> invalidations = new ArrayList<>(writeBatchSize);
+        for (int i = 0; i < records.athleteCount; i++) {
+            Long athleteId = records.athleteIds[i];
+            Long resultId = resultIds.remove(athleteId);
+            RaceState state = states[i];
+            if (state.isFinished()) {
+                long finishMillis = state.getFinishMillis();
+                Long gunTime = waveService.gunTime(eventId, finishMillis);
+                Long netTime = waveService.netTime(eventId, athleteId, finishMillis);
+                if (resultId == null) {
+                    inserts.add(new Object[] { eventId, athleteId, state.getElapsedMillis(), gunTime, netTime, valid[i] });
+                } else {
+                    updates.add(new Object[] { state.getElapsedMillis(), gunTime, netTime, valid[i], resultId });
+                    if (!valid[i]) {
+                        invalidations.add(new Object[] { resultId });
+                    }
+                }
+            } else if (resultId != null) {
+                invalidations.add(new Object[] { resultId });
+            }
+            if (updates.size() + inserts.size() + invalidations.size() >= writeBatchSize) {
+                writeBatch(job, updates, inserts, invalidations);
+            }
+        }
+        // 没有任何打卡记录的成绩同样作废
+        for (Long resultId : resultIds.values()) {
+            invalidations.add(new Object[] { resultId });
+        }
+        writeBatch(job, updates, inserts, invalidations);
+    }
+
+    /**
+     * 一批成绩在一个短事务内写回，只锁住本批的行
+     */
+    private void writeBatch(RecomputeJob job, List<Object[]> updates, List<Object[]> inserts,
+                            List<Object[]> invalidations) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_RESULT_SQL, updates);
+            }
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_RESULT_SQL, inserts);
+            }
+            if (!invalidations.isEmpty()) {
+                jdbcTemplate.batchUpdate(INVALIDATE_RESULT_SQL, invalidations);
+            }
+        });
+        job.addWrittenResults(updates.size() + inserts.size());
+        updates.clear();
+        inserts.clear();
+        invalidations.clear();
+    }
+
+    private static void checkCancelled(RecomputeJob job) {
+        if (job.isCancelRequested()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * 按运动员区间拆分，叶子区间内逐个重建比赛状态
+     */
+    private final class ComputeTask extends RecursiveAction {
+        private final RecomputeJob job;
+        private final AthleteRecords records;
+        private final RaceState[] states;
+        private final boolean[] valid;
+        private final int from;
+        private final int to;
+
+        ComputeTask(RecomputeJob job, AthleteRecords records, RaceState[] states, boolean[] valid, int from, int to) {
+            this.job = job;
+            this.records = records;
+            this.states = states;
+            this.valid = valid;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (job.isCancelRequested()) {
+                return;
+            }
+            if (to - from > forkThreshold) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ComputeTask(job, records, states, valid, from, mid),
+                        new ComputeTask(job, records, states, valid, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                records.sortByPassTime(records.offsets[i], records.offsets[i + 1]);
+                RaceState state = new RaceState();
+                for (int r = records.offsets[i]; r < records.offsets[i + 1]; r++) {
+                    Checkpoint checkpoint = lookupCacheService.findCheckpoint(records.checkpointIds[r]);
+                    if (checkpoint != null) {
+                        state.record(checkpoint, records.passMillis[r]);
+                    }
+                }
+                states[i] = state;
+                valid[i] = raceStateService.isValid(job.getEventId(), state);
+            }
+            job.addComputedAthletes(to - from);
+        }
+    }
+
+    /**
+     * 按运动员分组的打卡记录（列式存放）：第 i 个运动员的记录位于 [offsets[i], offsets[i+1])
+     */
+    private static final class AthleteRecords {
+        long[] athleteIds = new long[1024];
+        int[] offsets = new int[1025];
+        long[] checkpointIds = new long[8192];
+        long[] passMillis = new long[8192];
+        int athleteCount;
+        int recordCount;
+
+        void add(long athleteId, long checkpointId, long millis) {
+            if (athleteCount == 0 || athleteIds[athleteCount - 1] != athleteId) {
+                if (athleteCount == athleteIds.length) {
+                    athleteIds = Arrays.copyOf(athleteIds, athleteCount * 2);
+                    offsets = Arrays.copyOf(offsets, athleteCount * 2 + 1);
+                }
+                offsets[athleteCount] = recordCount;
+                athleteIds[athleteCount++] = athleteId;
+            }
+            if (recordCount == checkpointIds.length) {
+                checkpointIds = Arrays.copyOf(checkpointIds, recordCount * 2);
+                passMillis = Arrays.copyOf(passMillis, recordCount * 2);
+            }
+            checkpointIds[recordCount] = checkpointId;
+            passMillis[recordCount++] = millis;
+        }
+
+        void seal() {
+            offsets[athleteCount] = recordCount;
+        }
+
+        /**
+         * 按通过时间排序 [from, to) 内的记录（单个运动员，条数很少，插入排序）
+         */
+        void sortByPassTime(int from, int to) {
+            for (int i = from + 1; i < to; i++) {
+                long millis = passMillis[i];
+                long checkpointId = checkpointIds[i];
+                int j = i - 1;
+                while (j >= from && passMillis[j] > millis) {
+                    passMillis[j + 1] = passMillis[j];
+                    checkpointIds[j + 1] = checkpointIds[j];
+                    j--;
+                }
+                passMillis[j + 1] = millis;
+                checkpointIds[j + 1] = checkpointId;
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,459 @@
+package com.marathon.service;
+
+import com.marathon.model.Checkpoint;
+import com.marathon.model.ChipRead;
+import com.marathon.monitor.IngestMetrics;
+import com.marathon.util.DurationFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 打卡数据异步入库管道
+ * MQTT回调线程只负责解析，按卡号确定运动员所属赛事后放入该赛事入库分区的有界队列；
+ * 每个已加载的赛事一个分区（独立的队列和写入线程），写入线程按批次取出，
+ * 在赛事内把读卡垫解析为打卡点后以JDBC批量插入 race_records；
+ * 插入时一并写入该分段的枪声时间、净时间、芯片时间和分段用时
+ */
+@Service
+public class RaceRecordIngestService {
+    private static final Logger logger = LoggerFactory.getLogger(RaceRecordIngestService.class);
+
+    private static final String INSERT_RECORD_SQL =
+            "INSERT INTO race_records (event_id, athlete_id, checkpoint_id, pass_time, gun_time_ms, net_time_ms, " +
+            "chip_time_ms, duration) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Value("${ingest.queue.capacity:65536}")
+    private int queueCapacity;
+
+    @Value("${ingest.batch.size:500}")
+    private int batchSize;
+
+    @Value("${ingest.flush.interval:50}")
+    private long flushIntervalMs;
+
+    @Value("${ingest.offer.timeout:1000}")
+    private long offerTimeoutMs;
+
+    @Value("${ingest.retry.backoff:1000}")
+    private long retryBackoffMs;
+
+    @Autowired
+    private LookupCacheService lookupCacheService;
+
+    @Autowired
+    private TimingService timingService;
+
+    @Autowired
+    private RaceStateService raceStateService;
+
+    @Autowired
+    private WaveService waveService;
+
+    @Autowired
+    private SplitAnalyticsService splitAnalyticsService;
+
+    @Autowired
+    private ChipReadJournal chipReadJournal;
+
+    @Autowired
+    private LivePushService livePushService;
+
+    @Autowired
+    private IngestMetrics ingestMetrics;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    // 赛事ID → 入库分区
+    private final Map<Long, Partition> partitions = new ConcurrentHashMap<>();
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (Long eventId : partitions.keySet()) {
+            closePartition(eventId);
+        }
+    }
+
+    /**
+     * 为赛事启动入库分区
+     */
+    public void openPartition(Long eventId) {
+        partitions.computeIfAbsent(eventId, id -> {
+            Partition partition = new Partition(id);
+            partition.writerThread.start();
+            return partition;
+        });
+    }
+
+    /**
+     * 停止赛事的入库分区，队列中已有的读卡写完后返回
+     */
+    public void closePartition(Long eventId) throws InterruptedException {
+        Partition partition = partitions.remove(eventId);
+        if (partition != null) {
+            partition.running = false;
+            partition.writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * 提交一次读卡，按运动员所属赛事放入对应分区；队列满时最多阻塞 offerTimeout 毫秒，对上游形成背压。
+     * 来自读卡日志的读卡不丢弃，一直等待到入队或分区关闭（关闭后由下次启动重放）
+     * @return 是否成功入队
+     */
+    public boolean submit(ChipRead read) {
+        Partition partition = partitionOf(read);
+        if (partition == null) {
+            return false;
+        }
+        Long eventId = partition.eventId;
+        try {
+            do {
+                if (partition.queue.offer(read, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    acceptedCount.incrementAndGet();
+                    return true;
+                }
+            } while (read.getJournalOffset() >= 0 && partition.running);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        droppedCount.incrementAndGet();
+        ingestMetrics.droppedRead();
+        logger.error("赛事 {} 打卡队列已满，丢弃读卡: cardId={}, checkpointId={}",
+                eventId, read.getCardId(), read.getCheckpointId());
+        return false;
+    }
+
+    /**
+     * 最多等待 maxWaitMs 尝试入队；队列仍满时返回false，读卡既不丢弃也不标记完成，由调用方保留后重试。
+     * 未知卡号、赛事未加载的读卡与 submit 一样直接处理，返回true
+     */
+    public boolean trySubmit(ChipRead read, long maxWaitMs) throws InterruptedException {
+        Partition partition = partitionOf(read);
+        if (partition == null) {
+            return true;
+        }
+        if (partition.queue.offer(read, maxWaitMs, TimeUnit.MILLISECONDS)) {
+            acceptedCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 读卡所属赛事的入库分区；未知卡号或赛事未加载时记录后标记完成，返回null
+     */
+    private Partition partitionOf(ChipRead read) {
+        Long athleteId = lookupCacheService.findAthleteId(read.getCardId());
+        if (athleteId == null) {
+            ingestMetrics.unknownCard();
+            logger.warn("No athlete found with card ID: {}", read.getCardId());
+            chipReadJournal.complete(read);
+            return null;
+        }
+        Long eventId = lookupCacheService.findEventId(athleteId);
+        Partition partition = eventId != null ? partitions.get(eventId) : null;
+        if (partition == null) {
+            droppedCount.incrementAndGet();
+            ingestMetrics.droppedRead();
+            logger.warn("赛事 {} 未加载，丢弃读卡: cardId={}, checkpointId={}", eventId, read.getCardId(), read.getCheckpointId());
+            chipReadJournal.complete(read);
+        }
+        return partition;
+    }
+
+    /**
+     * 全部分区排队中的读卡数
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Partition partition : partitions.values()) {
+            depth += partition.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * 各赛事分区排队中的读卡数
+     */
+    public Map<Long, Integer> getQueueDepths() {
+        Map<Long, Integer> depths = new TreeMap<>();
+        for (Partition partition : partitions.values()) {
+            depths.put(partition.eventId, partition.queue.size());
+        }
+        return depths;
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * 单个赛事的入库分区：有界队列和写入线程，赛事之间互不阻塞
+     */
+    private final class Partition {
+        final Long eventId;
+        final BlockingQueue<ChipRead> queue = new ArrayBlockingQueue<>(queueCapacity);
+        final Thread writerThread;
+        volatile boolean running = true;
+
+        Partition(Long eventId) {
+            this.eventId = eventId;
+            this.writerThread = new Thread(this::drainLoop, "race-record-writer-" + eventId);
+        }
+
+        private void drainLoop() {
+            List<ChipRead> batch = new ArrayList<>(batchSize);
+            while (running || !queue.isEmpty()) {
+                try {
+                    ChipRead first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    fillBatch(batch);
+                    writeBatch(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    logger.error("批量写入赛事 {} 的打卡记录失败，本批 {} 条", eventId, batch.size(), e);
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        /**
+         * 在 flushInterval 内尽量攒满一个批次
+         */
+        private void fillBatch(List<ChipRead> batch) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+            while (batch.size() < batchSize) {
+                queue.drainTo(batch, batchSize - batch.size());
+                long remaining = deadline - System.nanoTime();
+                if (batch.size() >= batchSize || remaining <= 0) {
+                    break;
+                }
+                ChipRead next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+        }
+
+        private void writeBatch(List<ChipRead> batch) throws InterruptedException {
+            List<Object[]> batchArgs = new ArrayList<>(batch.size());
+            List<Checkpoint> checkpoints = new ArrayList<>(batch.size());
+            // 终点读卡：运动员ID -> 过终点时间（毫秒）
+            Map<Long, Long> finishPassMillis = new LinkedHashMap<>();
+            // 本批次内的过起点时间（比赛状态要到落库后才更新）
+            Map<Long, Long> batchStartMillis = new HashMap<>();
+            Map<Long, long[]> batchTrails = new HashMap<>();
+            List<Checkpoint> orderedCheckpoints = lookupCacheService.getCheckpoints(eventId);
+            long lookupStart = System.nanoTime();
+            for (ChipRead read : batch) {
+                Long athleteId = lookupCacheService.findAthleteId(read.getCardId());
+                if (athleteId == null) {
+                    ingestMetrics.unknownCard();
+                    logger.warn("No athlete found with card ID: {}", read.getCardId());
+                    continue;
+                }
+                // 共用读卡垫时上报的是读卡垫编号，在本赛事内解析为打卡点
+                Checkpoint checkpoint = lookupCacheService.resolveCheckpoint(eventId, read.getCheckpointId());
+                if (checkpoint == null) {
+                    ingestMetrics.unknownCheckpoint();
+                    logger.warn("No checkpoint found in event {} with mat ID: {}", eventId, read.getCheckpointId());
+                    continue;
+                }
+
+                long passMillis = RaceStateService.toMillis(read.getPassTime());
+                long startMillis = Math.max(raceStateService.getStartMillis(athleteId),
+                        batchStartMillis.getOrDefault(athleteId, 0L));
+                if (Boolean.TRUE.equals(checkpoint.getIsStart())) {
+                    startMillis = Math.max(startMillis, passMillis);
+                    batchStartMillis.put(athleteId, startMillis);
+                }
+                Long chipTime = startMillis > 0 ? passMillis - startMillis : null;
+
+                // 已落库的分段加上本批次之前的读卡，得到距上一打卡点的用时
+                long[] trail = batchTrails.computeIfAbsent(athleteId,
+                        id -> splitAnalyticsService.trailSnapshot(eventId, id, orderedCheckpoints));
+                Long segment = SplitAnalyticsService.segmentMillis(orderedCheckpoints, trail, checkpoint, passMillis);
+                int slot = SplitAnalyticsService.slotOf(orderedCheckpoints, checkpoint);
+                if (slot >= 0 && (trail[slot] == 0 || passMillis < trail[slot])) {
+                    trail[slot] = passMillis;
+                }
+
+                batchArgs.add(new Object[] { eventId, athleteId, checkpoint.getId(),
+                        Timestamp.valueOf(read.getPassTime()), waveService.gunTime(eventId, passMillis),
+                        waveService.netTime(eventId, athleteId, passMillis), chipTime,
+                        segment != null ? DurationFormat.formatPrecise(segment) : null });
+                checkpoints.add(checkpoint);
+                if (Boolean.TRUE.equals(checkpoint.getIsFinish())) {
+                    finishPassMillis.put(athleteId, passMillis);
+                }
+            }
+            ingestMetrics.recordLookup(System.nanoTime() - lookupStart);
+
+            if (!batchArgs.isEmpty()) {
+                long persistStart = System.nanoTime();
+                boolean[] rejected = insertRecords(batchArgs);
+                ingestMetrics.recordPersist(System.nanoTime() - persistStart);
+                if (rejected != null) {
+                    // 被拒绝的记录未落库，不更新比赛状态也不计算成绩
+                    removeRejected(rejected, batchArgs, checkpoints, finishPassMillis);
+                }
+                logger.debug("批量写入打卡记录 {} 条", batchArgs.size());
+            }
+            // 已落库（或无法解析、不会再入库）的读卡从日志中标记完成
+            for (ChipRead read : batch) {
+                chipReadJournal.complete(read);
+            }
+
+            // 落库后更新比赛状态并推送实时分段
+            for (int i = 0; i < batchArgs.size(); i++) {
+                Object[] args = batchArgs.get(i);
+                Long athleteId = (Long) args[1];
+                LocalDateTime passTime = ((Timestamp) args[3]).toLocalDateTime();
+                long passMillis = RaceStateService.toMillis(passTime);
+                raceStateService.record(athleteId, checkpoints.get(i), passTime);
+                splitAnalyticsService.record(athleteId, checkpoints.get(i), passMillis, (Long) args[6]);
+                livePushService.publishSplit(athleteId, checkpoints.get(i), passTime);
+                ingestMetrics.recordSplitLatency(passMillis);
+            }
+
+            // 终点打卡在记录落库后再计算成绩
+            for (Map.Entry<Long, Long> finish : finishPassMillis.entrySet()) {
+                Long athleteId = finish.getKey();
+                try {
+                    long rankStart = System.nanoTime();
+                    timingService.calculateResult(athleteId);
+                    ingestMetrics.recordRank(System.nanoTime() - rankStart);
+                    ingestMetrics.recordLeaderboardLatency(finish.getValue());
+                } catch (Exception e) {
+                    logger.error("计算成绩失败: athleteId={}", athleteId, e);
+                }
+            }
+        }
+
+        /**
+         * 批量插入；启用读卡日志时数据库暂时不可用（连接、超时、死锁等）会按间隔重试，不丢弃本批读卡。
+         * 其他错误重试也不会成功，改为逐条插入，无法写入的记录记录日志后跳过，分区和读卡日志继续前进
+         * @return 被拒绝的记录标记，全部写入时返回null
+         */
+        private boolean[] insertRecords(List<Object[]> batchArgs) throws InterruptedException {
+            while (true) {
+                try {
+                    transactionTemplate.executeWithoutResult(
+                            status -> jdbcTemplate.batchUpdate(INSERT_RECORD_SQL, batchArgs));
+                    return null;
+                } catch (RuntimeException e) {
+                    if (!isTransient(e)) {
+                        logger.warn("批量写入赛事 {} 的打卡记录失败，改为逐条写入: {}", eventId, e.getMessage());
+                        return insertOneByOne(batchArgs);
+                    }
+                    if (!chipReadJournal.isEnabled() || !running) {
+                        throw e;
+                    }
+                    logger.warn("批量写入打卡记录失败，{} ms 后重试: {}", retryBackoffMs, e.getMessage());
+                    Thread.sleep(retryBackoffMs);
+                }
+            }
+        }
+
+        private boolean[] insertOneByOne(List<Object[]> batchArgs) throws InterruptedException {
+            boolean[] rejected = new boolean[batchArgs.size()];
+            for (int i = 0; i < batchArgs.size(); i++) {
+                Object[] args = batchArgs.get(i);
+                while (true) {
+                    try {
+                        jdbcTemplate.update(INSERT_RECORD_SQL, args);
+                        break;
+                    } catch (RuntimeException e) {
+                        if (isTransient(e) && chipReadJournal.isEnabled() && running) {
+                            logger.warn("写入打卡记录失败，{} ms 后重试: {}", retryBackoffMs, e.getMessage());
+                            Thread.sleep(retryBackoffMs);
+                            continue;
+                        }
+                        if (isTransient(e)) {
+                            throw e;
+                        }
+                        rejected[i] = true;
+                        ingestMetrics.rejectedRecord();
+                        logger.error("打卡记录无法写入，已跳过: {}", Arrays.toString(args), e);
+                        break;
+                    }
+                }
+            }
+            return rejected;
+        }
+
+        private void removeRejected(boolean[] rejected, List<Object[]> batchArgs, List<Checkpoint> checkpoints,
+                                    Map<Long, Long> finishPassMillis) {
+            List<Object[]> acceptedArgs = new ArrayList<>(batchArgs.size());
+            List<Checkpoint> acceptedCheckpoints = new ArrayList<>(checkpoints.size());
+            finishPassMillis.clear();
+            for (int i = 0; i < rejected.length; i++) {
+                if (rejected[i]) {
+                    continue;
+                }
+                Object[] args = batchArgs.get(i);
+                acceptedArgs.add(args);
+                acceptedCheckpoints.add(checkpoints.get(i));
+                if (Boolean.TRUE.equals(checkpoints.get(i).getIsFinish())) {
+                    finishPassMillis.put((Long) args[1],
+                            RaceStateService.toMillis(((Timestamp) args[3]).toLocalDateTime()));
+                }
+            }
+            batchArgs.clear();
+            batchArgs.addAll(acceptedArgs);
+            checkpoints.clear();
+            checkpoints.addAll(acceptedCheckpoints);
+        }
+    }
+
+    /**
+     * 重试可能成功的错误：取不到连接、连接中断、锁超时/死锁等
+     */
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException
+                || e instanceof CannotGetJdbcConnectionException || e instanceof CannotCreateTransactionException;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,191 @@
+package com.marathon.service;
+
+import com.marathon.model.Checkpoint;
+import com.marathon.model.RecordPassTime;
+import com.marathon.model.RaceState;
+import com.marathon.repository.RaceRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 运动员比赛状态机
+ * 每条打卡记录落库后增量更新对应运动员的状态，算成绩和校验是否经过全部打卡点均为 O(1)；
+ * 状态按赛事分开存放，加载赛事时按时间顺序从 race_records 重建，卸载时整体丢弃
+ */
+@Service
+public class RaceStateService {
+    private static final Logger logger = LoggerFactory.getLogger(RaceStateService.class);
+
+    private static final String SELECT_RECORDS_SQL =
+            "SELECT athlete_id, checkpoint_id, pass_time FROM race_records WHERE event_id = ? ORDER BY pass_time ASC";
+
+    @Autowired
+    private RaceRecordRepository raceRecordRepository;
+
+    @Autowired
+    private LookupCacheService lookupCacheService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 赛事ID → (运动员ID → 比赛状态)
+    private final Map<Long, Map<Long, RaceState>> states = new ConcurrentHashMap<>();
+
+    /**
+     * 从 race_records 重建赛事内全部运动员的状态
+     */
+    public void loadEvent(Long eventId) {
+        Map<Long, RaceState> eventStates = new ConcurrentHashMap<>();
+        long[] count = new long[1];
+        jdbcTemplate.query(SELECT_RECORDS_SQL, rs -> {
+            Checkpoint checkpoint = lookupCacheService.findCheckpoint(rs.getLong(2));
+            if (checkpoint != null) {
+                eventStates.computeIfAbsent(rs.getLong(1), id -> new RaceState())
+                        .record(checkpoint, toMillis(rs.getTimestamp(3).toLocalDateTime()));
+                count[0]++;
+            }
+        }, eventId);
+        states.put(eventId, eventStates);
+        logger.info("从 race_records 重建赛事 {} 的比赛状态: 运动员 {} 人, 打卡记录 {} 条",
+                eventId, eventStates.size(), count[0]);
+    }
+
+    public void evictEvent(Long eventId) {
+        states.remove(eventId);
+    }
+
+    /**
+     * 重新从数据库加载单个运动员的状态（人工修改打卡记录后使用）
+     */
+    public RaceState reload(Long athleteId) {
+        Long eventId = lookupCacheService.findEventId(athleteId);
+        RaceState state = new RaceState();
+        for (RecordPassTime record : raceRecordRepository.findPassTimesByAthlete(eventId, athleteId)) {
+            Checkpoint checkpoint = lookupCacheService.findCheckpoint(record.getCheckpointId());
+            if (checkpoint != null) {
+                state.record(checkpoint, toMillis(record.getPassTime()));
+            }
+        }
+        Map<Long, RaceState> eventStates = eventId != null ? states.get(eventId) : null;
+        if (eventStates != null) {
+            eventStates.put(athleteId, state);
+        }
+        return state;
+    }
+
+    /**
+     * 记录一次已落库的打卡（打卡点所属赛事未加载时忽略）
+     */
+    public void record(Long athleteId, Checkpoint checkpoint, LocalDateTime passTime) {
+        Map<Long, RaceState> eventStates = states.get(checkpoint.getEventId());
+        if (eventStates == null) {
+            return;
+        }
+        RaceState state = eventStates.computeIfAbsent(athleteId, id -> new RaceState());
+        synchronized (state) {
+            state.record(checkpoint, toMillis(passTime));
+        }
+    }
+
+    /**
+     * 运动员当前状态的只读计算结果
+     * @return 无打卡记录时返回null
+     */
+    public Snapshot getSnapshot(Long athleteId) {
+        Long eventId = lookupCacheService.findEventId(athleteId);
+        RaceState state = find(eventId, athleteId);
+        if (state == null) {
+            return null;
+        }
+        synchronized (state) {
+            return new Snapshot(state.getElapsedMillis(), isValid(eventId, state),
+                    state.getLastCheckpointId(), state.getLastSplitMillis(), state.getFinishMillis());
+        }
+    }
+
+    /**
+     * 经过了所属赛事的全部打卡点且没有顺序倒退
+     */
+    public boolean isValid(Long eventId, RaceState state) {
+        return state.getVisitedCount() == lookupCacheService.getCheckpoints(eventId).size() && !state.isOrderViolated();
+    }
+
+    /**
+     * 用批量重算得到的状态整体替换赛事的内存状态，不在其中的运动员被移除
+     */
+    public void replaceAll(Long eventId, Map<Long, RaceState> rebuilt) {
+        Map<Long, RaceState> eventStates = states.get(eventId);
+        if (eventStates != null) {
+            eventStates.putAll(rebuilt);
+            eventStates.keySet().retainAll(rebuilt.keySet());
+        }
+    }
+
+    /**
+     * 运动员本人过起点垫的时间（毫秒时间戳），尚未过起点时返回0
+     */
+    public long getStartMillis(Long athleteId) {
+        RaceState state = find(lookupCacheService.findEventId(athleteId), athleteId);
+        if (state == null) {
+            return 0L;
+        }
+        synchronized (state) {
+            return state.getStartMillis();
+        }
+    }
+
+    public void remove(Long eventId, Long athleteId) {
+        Map<Long, RaceState> eventStates = states.get(eventId);
+        if (eventStates != null) {
+            eventStates.remove(athleteId);
+        }
+    }
+
+    private RaceState find(Long eventId, Long athleteId) {
+        Map<Long, RaceState> eventStates = eventId != null ? states.get(eventId) : null;
+        return eventStates != null ? eventStates.get(athleteId) : null;
+    }
+
+    static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 状态快照：总用时（未完赛为-1）、是否有效、最后打卡点及时间、过终点时间
+     */
+    public static final class Snapshot {
+        private final long elapsedMillis;
+        private final boolean valid;
+        private final long lastCheckpointId;
+        private final long lastSplitMillis;
+        private final long finishMillis;
+
+        Snapshot(long elapsedMillis, boolean valid, long lastCheckpointId, long lastSplitMillis, long finishMillis) {
+            this.elapsedMillis = elapsedMillis;
+            this.valid = valid;
+            this.lastCheckpointId = lastCheckpointId;
+            this.lastSplitMillis = lastSplitMillis;
+            this.finishMillis = finishMillis;
+        }
+
+        public boolean isFinished() { return elapsedMillis >= 0; }
+
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        public boolean isValid() { return valid; }
+
+        public long getLastCheckpointId() { return lastCheckpointId; }
+
+        public long getLastSplitMillis() { return lastSplitMillis; }
+
+        public long getFinishMillis() { return finishMillis; }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,359 @@
+package com.marathon.service;
+
+import com.marathon.model.Athlete;
+import com.marathon.model.RaceCategory;
+import com.marathon.model.Result;
+import com.marathon.repository.ResultRepository;
+import com.marathon.util.RankIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存排名引擎
+ * 按总排名、性别、年龄组及配置的附加分组分别维护顺序统计树，一条成绩一次遍历更新全部所属分区，O(log N)；
+ * 名次变化交给 ResultRankWriter 合并后异步写回 results 表（附加分组名次只在内存中）；
+ * 每个赛事一套独立的分区，可单独加载和卸载
+ */
+@Service
+public class RankingService {
+
+    private static final int OVERALL = 0;
+    private static final int GENDER = 1;
+    private static final int AGE_GROUP = 2;
+
+    // 附加分组的名次不写回数据库
+    private static final int CATEGORY = -1;
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Autowired
+    private ResultRankWriter resultRankWriter;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    private final Map<Long, EventRanking> events = new ConcurrentHashMap<>();
+
+    /**
+     * 从数据库加载赛事的全部有效成绩并校正名次；赛事已加载时原地重建
+     */
+    public void loadEvent(Long eventId) {
+        EventRanking ranking = events.computeIfAbsent(eventId, id -> new EventRanking());
+        synchronized (ranking) {
+            // 先写回积压名次，保证重建时读到的名次列是最新的
+            resultRankWriter.flush();
+            ranking.rebuild(resultRepository.findByEventIdAndValidTrueOrderByTotalTimeMillisAsc(eventId));
+        }
+        resultRankWriter.flush();
+    }
+
+    /**
+     * 赛事已加载时重建其排名
+     */
+    public void rebuild(Long eventId) {
+        if (events.containsKey(eventId)) {
+            loadEvent(eventId);
+        }
+    }
+
+    public void evictEvent(Long eventId) {
+        events.remove(eventId);
+    }
+
+    /**
+     * 已加载排名的赛事
+     */
+    public Set<Long> getEventIds() {
+        return new HashSet<>(events.keySet());
+    }
+
+    /**
+     * 新增或更新一条成绩，只刷新所属赛事中受影响的名次（赛事未加载时忽略）
+     */
+    public void updateResult(Result result) {
+        EventRanking ranking = events.get(result.getEventId());
+        if (ranking == null) {
+            return;
+        }
+        synchronized (ranking) {
+            ranking.update(result);
+        }
+    }
+
+    /**
+     * 成绩中不影响名次的字段被批量修改后（如发枪时间修正），使赛事的排行榜快照失效
+     */
+    public void markChanged(Long eventId) {
+        EventRanking ranking = events.get(eventId);
+        if (ranking != null) {
+            synchronized (ranking) {
+                ranking.version++;
+            }
+        }
+    }
+
+    /**
+     * 赛事的排名版本：成绩变化或名次写回后都会变化
+     */
+    public long getVersion(Long eventId) {
+        EventRanking ranking = events.get(eventId);
+        return (ranking != null ? ranking.version : 0L) + resultRankWriter.getFlushCount();
+    }
+
+    /**
+     * 立即写回全部待写名次（比赛结束时调用）
+     * @return 写回的行数
+     */
+    public int flushRankings() {
+        return resultRankWriter.flush();
+    }
+
+    /**
+     * 附加分组内按名次排列的成绩ID，赛事未加载或分组不存在时返回null
+     */
+    public long[] getCategoryResultIds(Long eventId, String category) {
+        EventRanking ranking = events.get(eventId);
+        if (ranking == null) {
+            return null;
+        }
+        synchronized (ranking) {
+            return ranking.categoryResultIds(category);
+        }
+    }
+
+    /**
+     * 成绩在附加分组内的名次，不在该分组时返回-1
+     */
+    public int getCategoryRank(Long eventId, Long resultId, String category) {
+        EventRanking ranking = events.get(eventId);
+        if (ranking == null) {
+            return -1;
+        }
+        synchronized (ranking) {
+            return ranking.categoryRank(resultId, category);
+        }
+    }
+
+    /**
+     * 单个赛事的全部排名分区，以自身为锁，赛事之间互不阻塞
+     */
+    private final class EventRanking {
+        private final RankPartition overallPartition = new RankPartition(OVERALL);
+        private final Map<String, RankPartition> genderPartitions = new HashMap<>();
+        private final Map<Integer, RankPartition> ageGroupPartitions = new HashMap<>();
+        private final Map<String, RankPartition> categoryPartitions = new HashMap<>();
+        private final Map<Long, RankedEntry> entries = new HashMap<>();
+        private final List<RankedEntry> removedEntries = new ArrayList<>();
+
+        // 每次成绩变化后递增，与名次写回次数一起供排行榜快照判断是否需要重建
+        volatile long version;
+
+        void rebuild(List<Result> results) {
+            overallPartition.clear();
+            genderPartitions.clear();
+            ageGroupPartitions.clear();
+            categoryPartitions.clear();
+            for (RaceCategory category : categoryService.getCategories()) {
+                categoryPartitions.put(category.getName(), new RankPartition(CATEGORY));
+            }
+            entries.clear();
+            removedEntries.clear();
+
+            for (Result result : results) {
+                insert(result, null);
+            }
+            flush();
+            version++;
+        }
+
+        void update(Result result) {
+            RankedEntry existing = entries.remove(result.getId());
+            if (existing != null) {
+                remove(existing);
+            }
+
+            if (Boolean.TRUE.equals(result.getValid())) {
+                insert(result, existing);
+            } else if (existing != null) {
+                removedEntries.add(existing);
+            }
+            flush();
+            version++;
+        }
+
+        long[] categoryResultIds(String category) {
+            RankPartition partition = categoryPartitions.get(category);
+            if (partition == null) {
+                return null;
+            }
+            long[] resultIds = new long[partition.index.size()];
+            partition.index.forEachFrom(1, (id, rank) -> resultIds[rank - 1] = id);
+            return resultIds;
+        }
+
+        int categoryRank(Long resultId, String category) {
+            RankPartition partition = categoryPartitions.get(category);
+            RankedEntry entry = entries.get(resultId);
+            if (partition == null || entry == null) {
+                return -1;
+            }
+            return partition.index.rank(entry.totalMillis, entry.resultId);
+        }
+
+        /**
+         * previous 为被替换的旧条目：名次异步写回，实体上的名次列可能尚未落库，
+         * 因此沿用内存中已下发的名次作为比较基准，只有重建时才取数据库列
+         */
+        private void insert(Result result, RankedEntry previous) {
+            Athlete athlete = result.getAthlete();
+            RankedEntry entry = new RankedEntry(result.getId(), toMillis(result));
+            if (previous != null) {
+                System.arraycopy(previous.ranks, 0, entry.ranks, 0, entry.ranks.length);
+            } else {
+                entry.ranks[OVERALL] = valueOf(result.getRanking());
+                entry.ranks[GENDER] = valueOf(result.getGenderRanking());
+                entry.ranks[AGE_GROUP] = valueOf(result.getAgeGroupRanking());
+            }
+
+            entry.partitions[OVERALL] = overallPartition;
+            if (athlete.getGender() != null) {
+                entry.partitions[GENDER] = genderPartitions.computeIfAbsent(
+                        athlete.getGender(), gender -> new RankPartition(GENDER));
+            }
+            int ageGroup = categoryService.ageGroupIndex(athlete.getAge());
+            if (ageGroup >= 0) {
+                entry.partitions[AGE_GROUP] = ageGroupPartitions.computeIfAbsent(
+                        ageGroup, group -> new RankPartition(AGE_GROUP));
+            }
+            List<RaceCategory> categories = categoryService.getCategories();
+            for (int i = 0; i < categories.size(); i++) {
+                RaceCategory category = categories.get(i);
+                if (category.matches(athlete.getGender(), athlete.getAge())) {
+                    if (entry.categoryPartitions == null) {
+                        entry.categoryPartitions = new ArrayList<>(2);
+                    }
+                    entry.categoryPartitions.add(categoryPartitions.get(category.getName()));
+                }
+            }
+
+            for (RankPartition partition : entry.partitions) {
+                if (partition != null) {
+                    partition.markDirty(partition.index.insert(entry.totalMillis, entry.resultId));
+                }
+            }
+            if (entry.categoryPartitions != null) {
+                for (RankPartition partition : entry.categoryPartitions) {
+                    partition.index.insert(entry.totalMillis, entry.resultId);
+                }
+            }
+            entries.put(entry.resultId, entry);
+        }
+
+        private void remove(RankedEntry entry) {
+            for (RankPartition partition : entry.partitions) {
+                if (partition != null) {
+                    partition.markDirty(partition.index.remove(entry.totalMillis, entry.resultId));
+                }
+            }
+            if (entry.categoryPartitions != null) {
+                for (RankPartition partition : entry.categoryPartitions) {
+                    partition.index.remove(entry.totalMillis, entry.resultId);
+                }
+            }
+        }
+
+        /**
+         * 收集名次发生变化的成绩，交给写回队列
+         */
+        private void flush() {
+            Map<Long, RankedEntry> changed = new LinkedHashMap<>();
+            flushPartition(overallPartition, changed);
+            for (RankPartition partition : genderPartitions.values()) {
+                flushPartition(partition, changed);
+            }
+            for (RankPartition partition : ageGroupPartitions.values()) {
+                flushPartition(partition, changed);
+            }
+
+            for (RankedEntry entry : changed.values()) {
+                resultRankWriter.enqueue(entry.resultId, entry.ranks[OVERALL], entry.ranks[GENDER], entry.ranks[AGE_GROUP]);
+            }
+            for (RankedEntry entry : removedEntries) {
+                resultRankWriter.enqueue(entry.resultId, 0, 0, 0);
+            }
+            removedEntries.clear();
+        }
+
+        private void flushPartition(RankPartition partition, Map<Long, RankedEntry> changed) {
+            if (partition.dirtyFrom == Integer.MAX_VALUE) {
+                return;
+            }
+            partition.index.forEachFrom(partition.dirtyFrom, (id, rank) -> {
+                RankedEntry entry = entries.get(id);
+                if (entry.ranks[partition.slot] != rank) {
+                    entry.ranks[partition.slot] = rank;
+                    changed.put(id, entry);
+                }
+            });
+            partition.dirtyFrom = Integer.MAX_VALUE;
+        }
+    }
+
+    private static long toMillis(Result result) {
+        return result.getTotalTimeMillis();
+    }
+
+    private static int valueOf(Integer rank) {
+        return rank != null ? rank : 0;
+    }
+
+    /**
+     * 单个排名分区（总排名 / 某性别 / 某年龄组 / 某附加分组）
+     */
+    private static final class RankPartition {
+        final int slot;
+        final RankIndex index = new RankIndex();
+        int dirtyFrom = Integer.MAX_VALUE;
+
+        RankPartition(int slot) {
+            this.slot = slot;
+        }
+
+        void markDirty(int rank) {
+            if (rank > 0 && rank < dirtyFrom) {
+                dirtyFrom = rank;
+            }
+        }
+
+        void clear() {
+            index.clear();
+            dirtyFrom = Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 一条成绩在各分区中的位置及已写回数据库的名次
+     */
+    private static final class RankedEntry {
+        final long resultId;
+        final long totalMillis;
+        final RankPartition[] partitions = new RankPartition[3];
+        final int[] ranks = new int[3];
+        List<RankPartition> categoryPartitions;
+
+        RankedEntry(long resultId, long totalMillis) {
+            this.resultId = resultId;
+            this.totalMillis = totalMillis;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,263 @@
+package com.marathon.service;
+
+import com.marathon.model.ChipRead;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 重复读卡过滤
+ * 运动员通过地毯时同一芯片会被连续读到多次，按(卡号, 打卡点)在时间窗口内只保留一次：
+ * FIRST 策略立即放行首次读卡；LAST 策略暂存最近一次读卡，窗口内无新读卡后再放行。
+ * 到期放行的读卡交给单独的放行线程入队，定时清理线程本身不阻塞：放行队列满时窗口保留，
+ * 入库队列在 offerTimeout 内仍满时读卡交回重试队列，都在下次清理时再放行
+ */
+@Service
+public class ReadDeduplicationService {
+
+    public enum DedupPolicy {
+        FIRST, LAST
+    }
+
+    @Value("${ingest.dedup.window:3000}")
+    private long windowMs;
+
+    @Value("${ingest.dedup.policy:FIRST}")
+    private DedupPolicy policy;
+
+    @Value("${ingest.dedup.release.capacity:10000}")
+    private int releaseCapacity;
+
+    @Value("${ingest.offer.timeout:1000}")
+    private long offerTimeoutMs;
+
+    @Autowired
+    private RaceRecordIngestService raceRecordIngestService;
+
+    @Autowired
+    private LookupCacheService lookupCacheService;
+
+    @Autowired
+    private ChipReadJournal chipReadJournal;
+
+    private final ConcurrentHashMap<Long, ReadWindow> windows = new ConcurrentHashMap<>();
+
+    private final LongAdder receivedCount = new LongAdder();
+    private final LongAdder suppressedCount = new LongAdder();
+    private final LongAdder deferredCount = new LongAdder();
+
+    private ThreadPoolExecutor releaser;
+
+    // 入库队列已满、交回等待重新放行的读卡
+    private final ConcurrentLinkedQueue<ChipRead> retries = new ConcurrentLinkedQueue<>();
+
+    @PostConstruct
+    public void start() {
+        releaser = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(releaseCapacity),
+                runnable -> new Thread(runnable, "dedup-release"), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 提交一次读卡，重复读卡在此丢弃，不会进入入库队列
+     */
+    public void submit(ChipRead read) {
+        receivedCount.increment();
+
+        Long athleteId = lookupCacheService.findAthleteId(read.getCardId());
+        if (windowMs <= 0 || athleteId == null || read.getCheckpointId() == null) {
+            // 未知卡号交给入库管道记录告警
+            raceRecordIngestService.submit(read);
+            return;
+        }
+
+        long key = windowKey(athleteId, read.getCheckpointId());
+        long eventMillis = read.getPassTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+        long now = System.currentTimeMillis();
+
+        if (policy == DedupPolicy.FIRST) {
+            submitFirst(key, read, eventMillis, now);
+        } else {
+            submitLast(key, read, eventMillis, now);
+        }
+    }
+
+    private void submitFirst(long key, ChipRead read, long eventMillis, long now) {
+        boolean[] accepted = { false };
+        windows.compute(key, (k, window) -> {
+            if (window == null || Math.abs(eventMillis - window.firstEventMillis) > windowMs) {
+                accepted[0] = true;
+                window = new ReadWindow(eventMillis);
+            }
+            window.lastEventMillis = Math.max(window.lastEventMillis, eventMillis);
+            window.lastSeenAt = now;
+            return window;
+        });
+
+        if (accepted[0]) {
+            raceRecordIngestService.submit(read);
+        } else {
+            suppressedCount.increment();
+            chipReadJournal.complete(read);
+        }
+    }
+
+    private void submitLast(long key, ChipRead read, long eventMillis, long now) {
+        ChipRead[] previousCrossing = { null };
+        ChipRead[] discarded = { null };
+        windows.compute(key, (k, window) -> {
+            if (window == null) {
+                window = new ReadWindow(eventMillis);
+            } else if (eventMillis - window.lastEventMillis > windowMs) {
+                // 与上次读卡间隔超过窗口，视为新一次通过
+                previousCrossing[0] = window.pending;
+                window = new ReadWindow(eventMillis);
+            } else if (eventMillis < window.lastEventMillis) {
+                // 乱序到达的较早读卡
+                suppressedCount.increment();
+                discarded[0] = read;
+                window.lastSeenAt = now;
+                return window;
+            } else if (window.pending != null) {
+                suppressedCount.increment();
+                discarded[0] = window.pending;
+            }
+            window.pending = read;
+            window.lastEventMillis = eventMillis;
+            window.lastSeenAt = now;
+            return window;
+        });
+
+        if (discarded[0] != null) {
+            chipReadJournal.complete(discarded[0]);
+        }
+        if (previousCrossing[0] != null) {
+            raceRecordIngestService.submit(previousCrossing[0]);
+        }
+    }
+
+    /**
+     * 定期淘汰过期窗口；LAST 策略在此放行暂存的最后一次读卡
+     */
+    @Scheduled(fixedDelayString = "${ingest.dedup.sweep.interval:500}")
+    public void evictExpired() {
+        ChipRead retry;
+        while ((retry = retries.peek()) != null) {
+            ChipRead read = retry;
+            try {
+                releaser.execute(() -> releaseNow(read));
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+            retries.poll();
+        }
+
+        long expireBefore = System.currentTimeMillis() - windowMs;
+        for (Map.Entry<Long, ReadWindow> entry : windows.entrySet()) {
+            if (entry.getValue().lastSeenAt < expireBefore) {
+                release(entry.getKey(), expireBefore);
+            }
+        }
+    }
+
+    /**
+     * 关闭时先等放行线程处理完，再在当前线程放行剩余的暂存读卡
+     */
+    @PreDestroy
+    public void flushPending() throws InterruptedException {
+        releaser.shutdown();
+        releaser.awaitTermination(5, TimeUnit.SECONDS);
+        ChipRead retry;
+        while ((retry = retries.poll()) != null) {
+            raceRecordIngestService.submit(retry);
+        }
+        for (Long key : windows.keySet()) {
+            ChipRead[] pending = { null };
+            windows.computeIfPresent(key, (k, window) -> {
+                pending[0] = window.pending;
+                return null;
+            });
+            if (pending[0] != null) {
+                raceRecordIngestService.submit(pending[0]);
+            }
+        }
+    }
+
+    private void release(Long key, long expireBefore) {
+        // 在锁内复查，避免移除刚被并发刷新的窗口；交给放行线程失败时保留窗口
+        windows.computeIfPresent(key, (k, window) -> {
+            if (window.lastSeenAt >= expireBefore) {
+                return window;
+            }
+            ChipRead pending = window.pending;
+            if (pending != null) {
+                try {
+                    releaser.execute(() -> releaseNow(pending));
+                } catch (RejectedExecutionException e) {
+                    deferredCount.increment();
+                    return window;
+                }
+            }
+            return null;
+        });
+    }
+
+    // 放行线程上执行，入库队列满时最多等待 offerTimeout，之后交回重试队列
+    private void releaseNow(ChipRead read) {
+        try {
+            if (raceRecordIngestService.trySubmit(read, offerTimeoutMs)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        deferredCount.increment();
+        retries.add(read);
+    }
+
+    /**
+     * 过滤统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("policy", policy);
+        stats.put("windowMs", windowMs);
+        stats.put("openWindows", windows.size());
+        stats.put("received", receivedCount.sum());
+        stats.put("suppressed", suppressedCount.sum());
+        stats.put("releaseQueue", releaser.getQueue().size());
+        stats.put("retrying", retries.size());
+        stats.put("deferred", deferredCount.sum());
+        return stats;
+    }
+
+    // 打卡点ID为自增小整数，占低20位
+    private static long windowKey(long athleteId, long checkpointId) {
+        return (athleteId << 20) | (checkpointId & 0xFFFFF);
+    }
+
+    private static final class ReadWindow {
+        final long firstEventMillis;
+        long lastEventMillis;
+        volatile long lastSeenAt;
+        ChipRead pending;
+
+        ReadWindow(long firstEventMillis) {
+            this.firstEventMillis = firstEventMillis;
+            this.lastEventMillis = firstEventMillis;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.marathon.service;
+
+import com.marathon.model.AthleteFinishedEvent;
+import com.marathon.model.Result;
+import com.marathon.repository.ResultRepository;
+import com.marathon.util.SmsSender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 完赛成绩短信自动通知
+ * 监听完赛事件后只记下到期时间，同一运动员再次完赛（成绩修正）时重新计时；
+ * 到期后从数据库读取已写回的名次，再放入短信发送队列。
+ * 事件在入库线程上同步发布，这里不做任何I/O
+ */
+@Service
+public class ResultNotificationService {
+    private static final Logger logger = LoggerFactory.getLogger(ResultNotificationService.class);
+
+    @Value("${sms.notify.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sms.notify.delay:30000}")
+    private long delayMs;
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Autowired
+    private SmsSender smsSender;
+
+    // 运动员ID -> 到期时间（毫秒）
+    private final Map<Long, Long> dueTimes = new ConcurrentHashMap<>();
+
+    private final AtomicLong notifiedCount = new AtomicLong();
+
+    @EventListener
+    public void onAthleteFinished(AthleteFinishedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.isValid()) {
+            dueTimes.put(event.getAthleteId(), System.currentTimeMillis() + delayMs);
+        } else {
+            // 成绩被判无效，取消尚未发送的通知
+            dueTimes.remove(event.getAthleteId());
+        }
+    }
+
+    /**
+     * 把到期的完赛通知放入短信队列
+     */
+    @Scheduled(fixedDelayString = "${sms.notify.poll.interval:1000}")
+    public void notifyDue() {
+        if (dueTimes.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<Long> dueAthleteIds = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : dueTimes.entrySet()) {
+            // 只移除未被重新计时的条目
+            if (entry.getValue() <= now && dueTimes.remove(entry.getKey(), entry.getValue())) {
+                dueAthleteIds.add(entry.getKey());
+            }
+        }
+        if (dueAthleteIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (Result result : resultRepository.findAllWithAthleteByAthleteIdIn(dueAthleteIds)) {
+                if (Boolean.TRUE.equals(result.getValid()) && smsSender.sendResultSms(result)) {
+                    notifiedCount.incrementAndGet();
+                }
+            }
+        } catch (Exception e) {
+            logger.error("发送完赛通知失败，{} 名运动员", dueAthleteIds.size(), e);
+        }
+    }
+
+    public int getPendingCount() {
+        return dueTimes.size();
+    }
+
+    public long getNotifiedCount() {
+        return notifiedCount.get();
+    }
+}
\ No newline at end of file
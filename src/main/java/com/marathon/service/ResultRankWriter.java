@@ -0,0 +1,163 @@
+package com.marathon.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 名次写回（write-behind）
+ * 排名引擎计算出的名次先放入内存，同一成绩的多次变化合并为一条，
+ * 定时（或积压超过上限、最大延迟时提前）通过一次JDBC批量更新写回 results 表
+ */
+@Service
+public class ResultRankWriter {
+    private static final Logger logger = LoggerFactory.getLogger(ResultRankWriter.class);
+
+    private static final String UPDATE_RANKING_SQL =
+            "UPDATE results SET ranking = ?, gender_ranking = ?, age_group_ranking = ? WHERE id = ?";
+
+    @Value("${ranking.flush.interval:500}")
+    private long flushIntervalMs;
+
+    @Value("${ranking.flush.max.lag:2000}")
+    private long maxLagMs;
+
+    @Value("${ranking.flush.max.pending:5000}")
+    private int maxPending;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 成绩ID -> {总排名, 性别排名, 年龄组排名}，0表示无名次
+    private Map<Long, int[]> pending = new HashMap<>();
+    private long oldestPendingMillis;
+
+    // 保证写回按顺序进行，避免旧批次覆盖新批次
+    private final Object flushLock = new Object();
+    private final AtomicBoolean earlyFlushRequested = new AtomicBoolean();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong writtenRows = new AtomicLong();
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "result-rank-writer"));
+        executor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 关闭时写回剩余名次
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+
+    /**
+     * 记录一条成绩的最新名次，覆盖尚未写回的旧值
+     */
+    public void enqueue(long resultId, int ranking, int genderRanking, int ageGroupRanking) {
+        boolean flushEarly;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (pending.isEmpty()) {
+                oldestPendingMillis = now;
+            }
+            pending.put(resultId, new int[] { ranking, genderRanking, ageGroupRanking });
+            flushEarly = pending.size() >= maxPending || now - oldestPendingMillis >= maxLagMs;
+        }
+        if (flushEarly && earlyFlushRequested.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                earlyFlushRequested.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    /**
+     * 立即写回全部待写名次（比赛结束或需要数据库与内存一致时调用）
+     * @return 写回的行数
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            Map<Long, int[]> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+                batch = pending;
+                pending = new HashMap<>();
+            }
+
+            List<Object[]> batchArgs = new ArrayList<>(batch.size());
+            for (Map.Entry<Long, int[]> entry : batch.entrySet()) {
+                int[] ranks = entry.getValue();
+                batchArgs.add(new Object[] {
+                        nullIfZero(ranks[0]), nullIfZero(ranks[1]), nullIfZero(ranks[2]), entry.getKey() });
+            }
+            try {
+                jdbcTemplate.batchUpdate(UPDATE_RANKING_SQL, batchArgs);
+            } catch (RuntimeException e) {
+                // 写回失败时放回队列，已有更新的值优先
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        oldestPendingMillis = System.currentTimeMillis();
+                    }
+                    batch.forEach(pending::putIfAbsent);
+                }
+                throw e;
+            }
+            flushCount.incrementAndGet();
+            writtenRows.addAndGet(batch.size());
+            return batch.size();
+        }
+    }
+
+    /**
+     * 已完成的写回次数，排行榜据此判断名次是否已落库
+     */
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getWrittenRows() {
+        return writtenRows.get();
+    }
+
+    private void flushQuietly() {
+        try {
+            int rows = flush();
+            if (rows > 0) {
+                logger.debug("写回名次 {} 条", rows);
+            }
+        } catch (Exception e) {
+            logger.error("名次写回失败，稍后重试", e);
+        }
+    }
+
+    private static Integer nullIfZero(int rank) {
+        return rank > 0 ? rank : null;
+    }
+}
\ No newline at end of file
@@ -1,47 +1,52 @@
 package com.marathon.service;
 
-import com.marathon.model.Athlete;
 import com.marathon.model.Result;
+import com.marathon.model.ResultView;
 import com.marathon.repository.AthleteRepository;
+import com.marathon.repository.ResultExportRepository;
 import com.marathon.repository.ResultRepository;
-import com.opencsv.CSVWriter;
+import com.marathon.util.CsvRowWriter;
+import com.marathon.util.DurationFormat;
+import com.marathon.util.SmsSender;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 public class ResultService {
 
+    // 键集分页的起点，排在所有成绩之前
+    private static final long FIRST_TIME = Long.MIN_VALUE;
+    private static final long FIRST_ID = 0L;
+
     private final ResultRepository resultRepository;
     private final AthleteRepository athleteRepository;
-
-    @Value("${twilio.account.sid}")
-    private String twilioAccountSid;
-
-    @Value("${twilio.auth.token}")
-    private String twilioAuthToken;
-
-    @Value("${twilio.phone.number}")
-    private String twilioPhoneNumber;
+    private final ResultExportRepository resultExportRepository;
+    private final RankingService rankingService;
+    private final SmsSender smsSender;
 
     @Autowired
-    public ResultService(ResultRepository resultRepository, AthleteRepository athleteRepository) {
+    public ResultService(ResultRepository resultRepository, AthleteRepository athleteRepository,
+                         ResultExportRepository resultExportRepository, RankingService rankingService,
+                         SmsSender smsSender) {
         this.resultRepository = resultRepository;
         this.athleteRepository = athleteRepository;
+        this.resultExportRepository = resultExportRepository;
+        this.rankingService = rankingService;
+        this.smsSender = smsSender;
     }
 
     /**
-     * 获取所有成绩
+     * 获取赛事的所有成绩（含无效成绩）
      */
-    public List<Result> getAllResults() {
-        return resultRepository.findAllByOrderByTotalTimeAsc();
+    public List<ResultView> getAllResults(Long eventId) {
+        return resultRepository.findViewsByEventId(eventId);
     }
 
     /**
@@ -61,37 +66,77 @@ public class ResultService {
     /**
      * 根据性别筛选成绩
      */
-    public List<Result> getResultsByGender(String gender) {
-        return resultRepository.findByAthleteGenderAndValidTrueOrderByTotalTimeAsc(gender);
+    public List<ResultView> getResultsByGender(Long eventId, String gender) {
+        return resultRepository.findValidViewsByGenderAfter(eventId, gender, FIRST_TIME, FIRST_ID, Pageable.unpaged());
     }
 
     /**
      * 根据年龄组筛选成绩
      */
-    public List<Result> getResultsByAgeGroup(int minAge, int maxAge) {
-        return resultRepository.findByAthleteAgeBetweenAndValidTrueOrderByTotalTimeAsc(minAge, maxAge);
+    public List<ResultView> getResultsByAgeGroup(Long eventId, int minAge, int maxAge) {
+        return resultRepository.findValidViewsByAgeAfter(eventId, minAge, maxAge, FIRST_TIME, FIRST_ID,
+                Pageable.unpaged());
     }
 
     /**
      * 根据性别和年龄组筛选成绩
      */
-    public List<Result> getResultsByGenderAndAgeGroup(String gender, int minAge, int maxAge) {
-        return resultRepository.findByAthleteGenderAndAthleteAgeBetweenAndValidTrueOrderByTotalTimeAsc(
-                gender, minAge, maxAge);
+    public List<ResultView> getResultsByGenderAndAgeGroup(Long eventId, String gender, int minAge, int maxAge) {
+        return resultRepository.findValidViewsByGenderAndAgeAfter(eventId, gender, minAge, maxAge, FIRST_TIME, FIRST_ID,
+                Pageable.unpaged());
+    }
+
+    /**
+     * 按成绩键集分页查询，gender、minAge/maxAge 为null时不过滤；未指定任何筛选时包含无效成绩，与完整成绩榜一致
+     * @param after 上一页最后一条的游标（见 {@link #cursorOf}），为null时从第一条开始
+     */
+    public List<ResultView> getResultPage(Long eventId, String gender, Integer minAge, Integer maxAge,
+                                          String after, int size) {
+        long afterTime = FIRST_TIME;
+        long afterId = FIRST_ID;
+        if (after != null) {
+            int separator = after.indexOf('_');
+            try {
+                afterTime = Long.parseLong(after.substring(0, separator));
+                afterId = Long.parseLong(after.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new RuntimeException("分页游标格式错误: " + after);
+            }
+        }
+        // 每种筛选组合各用一条固定条件的查询，执行计划与对应索引一致
+        Pageable page = PageRequest.of(0, size);
+        if (gender != null && minAge != null) {
+            return resultRepository.findValidViewsByGenderAndAgeAfter(eventId, gender, minAge, maxAge, afterTime,
+                    afterId, page);
+        }
+        if (gender != null) {
+            return resultRepository.findValidViewsByGenderAfter(eventId, gender, afterTime, afterId, page);
+        }
+        if (minAge != null) {
+            return resultRepository.findValidViewsByAgeAfter(eventId, minAge, maxAge, afterTime, afterId, page);
+        }
+        return resultRepository.findViewsAfter(eventId, afterTime, afterId, page);
+    }
+
+    /**
+     * 成绩在分页顺序中的位置：成绩毫秒_成绩ID
+     */
+    public static String cursorOf(ResultView view) {
+        return view.getTotalTimeMillis() + "_" + view.getId();
     }
 
     /**
      * 获取有效成绩（按总时间排序）
      */
-    public List<Result> getValidResults() {
-        return resultRepository.findByValidTrueOrderByTotalTimeAsc();
+    public List<Result> getValidResults(Long eventId) {
+        return resultRepository.findByEventIdAndValidTrueOrderByTotalTimeMillisAsc(eventId);
     }
 
     /**
      * 获取无效成绩
      */
-    public List<Result> getInvalidResults() {
-        return resultRepository.findByValidFalse();
+    public List<Result> getInvalidResults(Long eventId) {
+        return resultRepository.findByEventIdAndValidFalse(eventId);
     }
 
     /**
@@ -103,114 +148,70 @@ public class ResultService {
         if (resultOptional.isPresent()) {
             Result result = resultOptional.get();
             result.setValid(isValid);
-            return resultRepository.save(result);
+            Result savedResult = resultRepository.save(result);
+            rankingService.updateResult(savedResult);
+            return savedResult;
         } else {
             throw new RuntimeException("未找到ID为 " + id + " 的成绩");
         }
     }
 
     /**
-     * 导出成绩到CSV
+     * 导出赛事成绩到CSV（JDBC游标逐行写出，内存占用与成绩数量无关）
      */
-    public void exportResultsToCsv(Writer writer) throws IOException {
-        List<Result> results = getAllResults();
+    public void exportResultsToCsv(long eventId, Writer writer) throws IOException {
+        CsvRowWriter csvWriter = new CsvRowWriter(writer);
 
-        try (CSVWriter csvWriter = new CSVWriter(writer)) {
-            // 写入CSV表头
-            String[] header = {"排名", "姓名", "性别", "年龄", "成绩", "是否有效", "总排名", "年龄组排名", "性别排名"};
-            csvWriter.writeNext(header);
+        // 写入CSV表头
+        csvWriter.writeRow("排名", "姓名", "性别", "年龄", "成绩", "枪声时间", "净时间", "是否有效",
+                "总排名", "年龄组排名", "性别排名");
 
-            // 格式化时间
-            DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss");
-
-            // 写入数据
-            for (Result result : results) {
-                String[] data = {
-                        result.getRanking() != null ? result.getRanking().toString() : "N/A",
-                        result.getAthlete().getName(),
-                        result.getAthlete().getGender(),
-                        result.getAthlete().getAge().toString(),
-                        result.getTotalTime().format(timeFormatter),
-                        result.getValid() ? "是" : "否",
-                        result.getRanking() != null ? result.getRanking().toString() : "N/A",
-                        result.getAgeGroupRanking() != null ? result.getAgeGroupRanking().toString() : "N/A",
-                        result.getGenderRanking() != null ? result.getGenderRanking().toString() : "N/A"
-                };
-                csvWriter.writeNext(data);
-            }
-        }
+        // 写入数据
+        resultExportRepository.forEachResultRow(eventId, row -> {
+            rankingField(csvWriter, row.getRanking());
+            csvWriter.field(row.getName())
+                    .field(row.getGender())
+                    .field(row.getAge())
+                    .field(DurationFormat.format(row.getTotalTimeMillis()))
+                    .field(DurationFormat.format(row.getGunTimeMillis()))
+                    .field(DurationFormat.format(row.getNetTimeMillis()))
+                    .field(row.isValid() ? "是" : "否");
+            rankingField(csvWriter, row.getRanking());
+            rankingField(csvWriter, row.getAgeGroupRanking());
+            rankingField(csvWriter, row.getGenderRanking());
+            csvWriter.endRow();
+        });
+        csvWriter.flush();
     }
 
-    /**
-     * 发送成绩短信通知
-     */
-    public boolean sendResultSms(Long athleteId) {
-        Optional<Result> resultOptional = resultRepository.findByAthleteId(athleteId);
-
-        if (resultOptional.isPresent()) {
-            Result result = resultOptional.get();
-            Athlete athlete = result.getAthlete();
-
-            if (athlete.getPhone() == null || athlete.getPhone().trim().isEmpty()) {
-                throw new RuntimeException("该运动员未提供手机号码");
-            }
-
-            // 初始化Twilio
-            Twilio.init(twilioAccountSid, twilioAuthToken);
-
-            // 格式化时间
-            DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH小时mm分ss秒");
-            String formattedTime = result.getTotalTime().format(timeFormatter);
-
-            // 构建短信内容
-            String messageBody = String.format(
-                    "【马拉松成绩通知】尊敬的%s，您的马拉松成绩为：%s，总排名：%d，%s组排名：%d，%s排名：%d。感谢您的参与！",
-                    athlete.getName(),
-                    formattedTime,
-                    result.getRanking(),
-                    getAgeGroup(athlete.getAge()),
-                    result.getAgeGroupRanking(),
-                    athlete.getGender(),
-                    result.getGenderRanking()
-            );
-
-            try {
-                // 发送短信
-                Message message = Message.creator(
-                        new PhoneNumber(athlete.getPhone()),
-                        new PhoneNumber(twilioPhoneNumber),
-                        messageBody
-                ).create();
-
-                return message.getStatus() == Message.Status.SENT;
-            } catch (Exception e) {
-                throw new RuntimeException("发送短信失败: " + e.getMessage());
-            }
+    private static void rankingField(CsvRowWriter csvWriter, int ranking) {
+        if (ranking > 0) {
+            csvWriter.field(ranking);
         } else {
-            throw new RuntimeException("未找到该运动员的成绩记录");
+            csvWriter.field("N/A");
         }
     }
 
     /**
-     * 根据年龄获取年龄组
+     * 手动发送成绩短信通知（放入发送队列，不在请求线程上调用短信通道）
+     * @return 是否已入队；已发送过或队列已满时返回 false
      */
-    private String getAgeGroup(Integer age) {
-        if (age >= 18 && age <= 30) {
-            return "18-30岁";
-        } else if (age >= 31 && age <= 45) {
-            return "31-45岁";
-        } else if (age >= 46 && age <= 60) {
-            return "46-60岁";
-        } else {
-            return "61岁以上";
+    public boolean sendResultSms(Long athleteId) {
+        Result result = resultRepository.findByAthleteId(athleteId)
+                .orElseThrow(() -> new RuntimeException("未找到该运动员的成绩记录"));
+
+        String phone = result.getAthlete().getPhone();
+        if (phone == null || phone.trim().isEmpty()) {
+            throw new RuntimeException("该运动员未提供手机号码");
         }
+        return smsSender.sendResultSms(result);
     }
 
     /**
      * 获取前N名成绩
      */
-    public List<Result> getTopNResults(int n) {
-        return resultRepository.findTopNByValidTrueOrderByTotalTimeAsc(n);
+    public List<Result> getTopNResults(Long eventId, int n) {
+        return resultRepository.findTopNByEventIdAndValidTrueOrderByTotalTimeMillisAsc(eventId, n);
     }
 
     /**
@@ -230,22 +231,20 @@ public class ResultService {
     }
 
     /**
-     * 获取平均完赛时间
+     * 获取赛事的平均完赛时间（毫秒）
      */
-    public LocalTime getAverageFinishTime() {
-        List<Result> validResults = getValidResults();
+    public long getAverageFinishTimeMillis(Long eventId) {
+        List<Result> validResults = getValidResults(eventId);
 
         if (validResults.isEmpty()) {
-            return LocalTime.of(0, 0, 0);
+            return 0L;
         }
 
-        long totalSeconds = 0;
+        long totalMillis = 0;
         for (Result result : validResults) {
-            LocalTime time = result.getTotalTime();
-            totalSeconds += time.toSecondOfDay();
+            totalMillis += result.getTotalTimeMillis();
         }
 
-        long averageSeconds = totalSeconds / validResults.size();
-        return LocalTime.ofSecondOfDay(averageSeconds);
+        return totalMillis / validResults.size();
     }
 }
\ No newline at end of file
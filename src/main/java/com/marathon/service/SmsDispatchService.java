@@ -0,0 +1,257 @@
+package com.marathon.service;
+
+import com.marathon.model.SmsRecord;
+import com.marathon.repository.SmsRecordRepository;
+import com.marathon.util.SmsProvider;
+import com.marathon.util.TokenBucket;
+import com.marathon.util.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 短信异步发送
+ * 调用方只把短信放入有界队列，发送线程池按令牌桶限流后调用短信通道；
+ * 失败时按指数退避重新入队，成功后写入 sms_records，同一运动员只发送一次
+ */
+@Service
+public class SmsDispatchService {
+    private static final Logger logger = LoggerFactory.getLogger(SmsDispatchService.class);
+
+    @Value("${sms.queue.capacity:50000}")
+    private int queueCapacity;
+
+    @Value("${sms.workers:4}")
+    private int workerCount;
+
+    // 虚拟线程模式下发送线程阻塞在短信接口调用上时不占用平台线程
+    @Value("${server.threads.virtual:false}")
+    private boolean virtualThreads;
+
+    @Value("${sms.rate.limit:10}")
+    private double ratePerSecond;
+
+    @Value("${sms.rate.burst:10}")
+    private int rateBurst;
+
+    @Value("${sms.retry.max.attempts:5}")
+    private int maxAttempts;
+
+    @Value("${sms.retry.backoff:2000}")
+    private long retryBackoffMs;
+
+    @Value("${sms.retry.backoff.max:60000}")
+    private long maxRetryBackoffMs;
+
+    @Autowired
+    private SmsProvider smsProvider;
+
+    @Autowired
+    private SmsRecordRepository smsRecordRepository;
+
+    // 已发送记录：运动员ID -> 消息ID（启动时从 sms_records 加载）
+    private final Map<Long, String> sentRecords = new ConcurrentHashMap<>();
+
+    // 排队或等待重试中的运动员，避免同一条短信重复入队
+    private final Set<Long> pendingAthleteIds = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private BlockingQueue<SmsTask> queue;
+    private TokenBucket rateLimiter;
+    private ExecutorService workers;
+    private ScheduledExecutorService retryScheduler;
+    private volatile boolean running;
+
+    private static final class SmsTask {
+        final Long athleteId;
+        final String phone;
+        final String content;
+        int attempts;
+
+        SmsTask(Long athleteId, String phone, String content) {
+            this.athleteId = athleteId;
+            this.phone = phone;
+            this.content = content;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        for (SmsRecord record : smsRecordRepository.findAll()) {
+            sentRecords.put(record.getAthleteId(), record.getMessageId());
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        rateLimiter = new TokenBucket(ratePerSecond, rateBurst);
+        running = true;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = virtualThreads ? VirtualThreads.factory("sms-sender-")
+                : runnable -> new Thread(runnable, "sms-sender-" + threadIndex.incrementAndGet());
+        workers = Executors.newFixedThreadPool(workerCount, threadFactory);
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::workLoop);
+        }
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "sms-retry"));
+        logger.info("短信发送已启动: {} 个{}发送线程，限流 {}/s，已发送记录 {} 条",
+                workerCount, virtualThreads ? "虚拟" : "", ratePerSecond, sentRecords.size());
+    }
+
+    /**
+     * 关闭时不再等待限流，未发出的短信不写发送记录，之后可重新触发
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        retryScheduler.shutdownNow();
+        workers.shutdownNow();
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+        if (!queue.isEmpty()) {
+            logger.warn("关闭时仍有 {} 条短信未发送", queue.size());
+        }
+    }
+
+    /**
+     * 将一条成绩短信放入发送队列，不等待发送结果
+     * @return 是否入队；已发送过、正在排队或队列已满时返回 false
+     */
+    public boolean enqueue(Long athleteId, String phone, String content) {
+        if (sentRecords.containsKey(athleteId)) {
+            logger.info("运动员{}已发送过成绩短信，跳过", athleteId);
+            return false;
+        }
+        if (!pendingAthleteIds.add(athleteId)) {
+            return false;
+        }
+        if (!queue.offer(new SmsTask(athleteId, phone, content))) {
+            pendingAthleteIds.remove(athleteId);
+            rejectedCount.incrementAndGet();
+            logger.error("短信队列已满，丢弃: athleteId={}", athleteId);
+            return false;
+        }
+        enqueuedCount.incrementAndGet();
+        return true;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public boolean hasSent(Long athleteId) {
+        return sentRecords.containsKey(athleteId);
+    }
+
+    public String getMessageId(Long athleteId) {
+        return sentRecords.get(athleteId);
+    }
+
+    public Map<Long, String> getAllSentRecords() {
+        return new HashMap<>(sentRecords);
+    }
+
+    /**
+     * 清除发送记录（含数据库），之后可重新发送
+     */
+    public void clearSentRecords() {
+        smsRecordRepository.deleteAllInBatch();
+        sentRecords.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", queue.size());
+        stats.put("pending", pendingAthleteIds.size());
+        stats.put("enqueued", enqueuedCount.get());
+        stats.put("rejected", rejectedCount.get());
+        stats.put("sent", sentCount.get());
+        stats.put("retried", retryCount.get());
+        stats.put("failed", failedCount.get());
+        stats.put("sentRecords", sentRecords.size());
+        return stats;
+    }
+
+    private void workLoop() {
+        while (running) {
+            try {
+                SmsTask task = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (task == null) {
+                    continue;
+                }
+                rateLimiter.acquire();
+                send(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                logger.error("短信发送线程异常", e);
+            }
+        }
+    }
+
+    private void send(SmsTask task) {
+        task.attempts++;
+        String messageId;
+        try {
+            messageId = smsProvider.send(task.phone, task.content);
+        } catch (RuntimeException e) {
+            if (task.attempts >= maxAttempts || !smsProvider.isRetryable(e)) {
+                pendingAthleteIds.remove(task.athleteId);
+                failedCount.incrementAndGet();
+                logger.error("短信发送失败，放弃: athleteId={}, 第{}次: {}", task.athleteId, task.attempts, e.getMessage());
+            } else {
+                scheduleRetry(task, e);
+            }
+            return;
+        }
+
+        // 先记入内存再移出排队集合，避免期间重复入队
+        sentRecords.put(task.athleteId, messageId);
+        pendingAthleteIds.remove(task.athleteId);
+        sentCount.incrementAndGet();
+        logger.info("短信发送成功: athleteId={}, messageId={}", task.athleteId, messageId);
+        try {
+            smsRecordRepository.save(new SmsRecord(task.athleteId, task.phone, messageId, LocalDateTime.now()));
+        } catch (Exception e) {
+            logger.error("写入短信发送记录失败: athleteId={}", task.athleteId, e);
+        }
+    }
+
+    // 指数退避：backoff * 2^(attempts-1)，不超过上限
+    private void scheduleRetry(SmsTask task, RuntimeException cause) {
+        long delay = Math.min(retryBackoffMs << Math.min(task.attempts - 1, 20), maxRetryBackoffMs);
+        retryCount.incrementAndGet();
+        logger.warn("短信发送失败，{} ms 后重试: athleteId={}, 第{}次: {}",
+                delay, task.athleteId, task.attempts, cause.getMessage());
+        retryScheduler.schedule(() -> {
+            if (!queue.offer(task)) {
+                pendingAthleteIds.remove(task.athleteId);
+                failedCount.incrementAndGet();
+                logger.error("短信队列已满，重试丢弃: athleteId={}", task.athleteId);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+}
\ No newline at end of file
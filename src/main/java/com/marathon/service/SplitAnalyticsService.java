@@ -0,0 +1,336 @@
+package com.marathon.service;
+
+import com.marathon.model.Checkpoint;
+import com.marathon.model.SplitView;
+import com.marathon.util.RankIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分段分析（内存）
+ * 每个运动员按打卡点在赛事内的顺序下标记录首次通过时间和芯片时间，每个打卡点维护一棵按芯片时间排序的顺序统计树，
+ * 每次读卡 O(log N) 更新；分段用时、配速、某点名次和预计完赛时间按需计算，不扫描 race_records。
+ * 数据按赛事分开存放、各自加锁，赛事之间互不阻塞
+ */
+@Service
+public class SplitAnalyticsService {
+    private static final Logger logger = LoggerFactory.getLogger(SplitAnalyticsService.class);
+
+    private static final String SELECT_RECORDS_SQL =
+            "SELECT athlete_id, checkpoint_id, pass_time, chip_time_ms FROM race_records WHERE event_id = ? " +
+            "ORDER BY pass_time ASC";
+
+    // 芯片时间未知
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    @Autowired
+    private LookupCacheService lookupCacheService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, EventSplits> events = new ConcurrentHashMap<>();
+
+    /**
+     * 从 race_records 重建赛事的分段数据
+     */
+    public void loadEvent(Long eventId) {
+        EventSplits splits = new EventSplits(eventId);
+        jdbcTemplate.query(SELECT_RECORDS_SQL, rs -> {
+            Checkpoint checkpoint = lookupCacheService.findCheckpoint(rs.getLong(2));
+            if (checkpoint != null) {
+                long chipTime = rs.getLong(4);
+                splits.record(rs.getLong(1), checkpoint, RaceStateService.toMillis(rs.getTimestamp(3).toLocalDateTime()),
+                        rs.wasNull() ? null : chipTime);
+            }
+        }, eventId);
+        events.put(eventId, splits);
+        logger.info("重建赛事 {} 的分段分析: 运动员 {} 人, 打卡点 {} 个",
+                eventId, splits.athletes.size(), splits.checkpointIndexes.size());
+    }
+
+    /**
+     * 赛事已加载时重建其分段数据
+     */
+    public void rebuild(Long eventId) {
+        if (events.containsKey(eventId)) {
+            loadEvent(eventId);
+        }
+    }
+
+    public void evictEvent(Long eventId) {
+        events.remove(eventId);
+    }
+
+    /**
+     * 记录一次已落库的打卡，同一打卡点多次读卡时取最早一次
+     * @param chipTimeMillis 芯片时间，起点未知时为null
+     */
+    public void record(Long athleteId, Checkpoint checkpoint, long passMillis, Long chipTimeMillis) {
+        EventSplits splits = events.get(checkpoint.getEventId());
+        if (splits != null) {
+            splits.record(athleteId, checkpoint, passMillis, chipTimeMillis);
+        }
+    }
+
+    /**
+     * 运动员按打卡点顺序的全部分段
+     */
+    public List<SplitView> getAthleteSplits(Long athleteId) {
+        Long eventId = lookupCacheService.findEventId(athleteId);
+        EventSplits splits = eventId != null ? events.get(eventId) : null;
+        return splits != null ? splits.athleteSplits(athleteId) : new ArrayList<>();
+    }
+
+    /**
+     * 运动员在某打卡点的分段，未到达时返回null
+     */
+    public SplitView getSplit(Long athleteId, Checkpoint checkpoint) {
+        EventSplits splits = events.get(checkpoint.getEventId());
+        return splits != null ? splits.split(athleteId, checkpoint) : null;
+    }
+
+    /**
+     * 打卡点按芯片时间的前 limit 名
+     */
+    public List<SplitView> getCheckpointLeaders(Checkpoint checkpoint, int limit) {
+        EventSplits splits = events.get(checkpoint.getEventId());
+        return splits != null ? splits.leaders(checkpoint, limit) : new ArrayList<>();
+    }
+
+    /**
+     * 到达某打卡点的人数
+     */
+    public int getCheckpointCount(Checkpoint checkpoint) {
+        EventSplits splits = events.get(checkpoint.getEventId());
+        return splits != null ? splits.count(checkpoint.getId()) : 0;
+    }
+
+    /**
+     * 运动员已记录的各打卡点通过时间副本，下标为打卡点在 orderedCheckpoints 中的位置（0表示未到达），
+     * 供入库前计算分段用时
+     */
+    public long[] trailSnapshot(Long eventId, Long athleteId, List<Checkpoint> orderedCheckpoints) {
+        EventSplits splits = events.get(eventId);
+        return splits != null ? splits.trailSnapshot(athleteId, orderedCheckpoints) : new long[orderedCheckpoints.size()];
+    }
+
+    /**
+     * 距上一个已到达打卡点（按打卡点顺序）的用时，没有更早的打卡点时返回null
+     */
+    public static Long segmentMillis(List<Checkpoint> orderedCheckpoints, long[] trail, Checkpoint checkpoint,
+                                     long passMillis) {
+        int previous = previousVisited(trail, slotOf(orderedCheckpoints, checkpoint));
+        return previous >= 0 ? passMillis - trail[previous] : null;
+    }
+
+    /**
+     * 打卡点在赛事打卡点顺序中的位置，不属于该列表时返回-1
+     */
+    public static int slotOf(List<Checkpoint> orderedCheckpoints, Checkpoint checkpoint) {
+        for (int i = 0; i < orderedCheckpoints.size(); i++) {
+            if (orderedCheckpoints.get(i).getId().equals(checkpoint.getId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int previousVisited(long[] trail, int slot) {
+        for (int i = Math.min(slot, trail.length) - 1; i >= 0; i--) {
+            if (trail[i] != 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Long perKm(long millis, float kilometers) {
+        return kilometers > 0 ? Math.round(millis / (double) kilometers) : null;
+    }
+
+    /**
+     * 单个赛事的分段数据，以自身为锁。
+     * 运动员的记录按打卡点在赛事内的顺序下标存放，数组长度即赛事打卡点数；
+     * 打卡点快照变化（增删、调整顺序）时按打卡点ID搬到新下标
+     */
+    private final class EventSplits {
+        final Long eventId;
+        final Map<Long, AthleteSplits> athletes = new HashMap<>();
+        final Map<Long, RankIndex> checkpointIndexes = new HashMap<>();
+        // 当前下标布局对应的打卡点快照，以及 打卡点ID -> 下标
+        List<Checkpoint> layout = Collections.emptyList();
+        Map<Long, Integer> slots = new HashMap<>();
+
+        EventSplits(Long eventId) {
+            this.eventId = eventId;
+            ensureLayout();
+        }
+
+        synchronized void record(Long athleteId, Checkpoint checkpoint, long passMillis, Long chipTimeMillis) {
+            ensureLayout();
+            Integer slot = slots.get(checkpoint.getId());
+            if (slot == null) {
+                return;
+            }
+            AthleteSplits splits = athletes.computeIfAbsent(athleteId, id -> new AthleteSplits(layout.size()));
+            if (splits.passMillis[slot] != 0 && splits.passMillis[slot] <= passMillis) {
+                return;
+            }
+
+            RankIndex index = checkpointIndexes.computeIfAbsent(checkpoint.getId(), id -> new RankIndex());
+            if (splits.chipMillis[slot] != UNKNOWN) {
+                index.remove(splits.chipMillis[slot], athleteId);
+            }
+            splits.passMillis[slot] = passMillis;
+            splits.chipMillis[slot] = chipTimeMillis != null ? chipTimeMillis : UNKNOWN;
+            if (chipTimeMillis != null) {
+                index.insert(chipTimeMillis, athleteId);
+            }
+        }
+
+        synchronized List<SplitView> athleteSplits(Long athleteId) {
+            ensureLayout();
+            AthleteSplits splits = athletes.get(athleteId);
+            List<SplitView> views = new ArrayList<>();
+            if (splits == null) {
+                return views;
+            }
+            for (int slot = 0; slot < layout.size(); slot++) {
+                if (splits.passMillis[slot] != 0) {
+                    views.add(view(athleteId, splits, slot));
+                }
+            }
+            return views;
+        }
+
+        synchronized SplitView split(Long athleteId, Checkpoint checkpoint) {
+            ensureLayout();
+            AthleteSplits splits = athletes.get(athleteId);
+            Integer slot = slots.get(checkpoint.getId());
+            if (splits == null || slot == null || splits.passMillis[slot] == 0) {
+                return null;
+            }
+            return view(athleteId, splits, slot);
+        }
+
+        synchronized List<SplitView> leaders(Checkpoint checkpoint, int limit) {
+            ensureLayout();
+            List<SplitView> views = new ArrayList<>(Math.min(limit, 100));
+            Integer slot = slots.get(checkpoint.getId());
+            RankIndex index = checkpointIndexes.get(checkpoint.getId());
+            if (slot != null && index != null) {
+                index.forEachBetween(1, limit, (athleteId, rank) -> views.add(view(athleteId, athletes.get(athleteId), slot)));
+            }
+            return views;
+        }
+
+        synchronized int count(Long checkpointId) {
+            RankIndex index = checkpointIndexes.get(checkpointId);
+            return index != null ? index.size() : 0;
+        }
+
+        synchronized long[] trailSnapshot(Long athleteId, List<Checkpoint> orderedCheckpoints) {
+            ensureLayout();
+            AthleteSplits splits = athletes.get(athleteId);
+            long[] trail = new long[orderedCheckpoints.size()];
+            if (splits != null) {
+                for (int i = 0; i < trail.length; i++) {
+                    Integer slot = slots.get(orderedCheckpoints.get(i).getId());
+                    if (slot != null) {
+                        trail[i] = splits.passMillis[slot];
+                    }
+                }
+            }
+            return trail;
+        }
+
+        private SplitView view(long athleteId, AthleteSplits splits, int slot) {
+            Checkpoint checkpoint = layout.get(slot);
+            Long chipTime = splits.chipMillis[slot] != UNKNOWN ? splits.chipMillis[slot] : null;
+
+            Long segment = null;
+            Long pace = null;
+            int previous = previousVisited(splits.passMillis, slot);
+            if (previous >= 0) {
+                segment = splits.passMillis[slot] - splits.passMillis[previous];
+                pace = perKm(segment, checkpoint.getDistance() - layout.get(previous).getDistance());
+            }
+
+            Integer position = null;
+            Long projected = null;
+            if (chipTime != null) {
+                position = checkpointIndexes.get(checkpoint.getId()).rank(chipTime, athleteId);
+                Checkpoint finish = layout.get(layout.size() - 1);
+                if (checkpoint.getDistance() > 0) {
+                    projected = Math.round(chipTime * (double) finish.getDistance() / checkpoint.getDistance());
+                }
+            }
+            return new SplitView(athleteId, checkpoint.getId(), checkpoint.getName(), checkpoint.getDistance(),
+                    chipTime, segment, pace, position, projected);
+        }
+
+        /**
+         * 打卡点快照整体替换后，把已有记录按打卡点ID搬到新下标，已删除打卡点的记录丢弃
+         */
+        private void ensureLayout() {
+            List<Checkpoint> current = lookupCacheService.getCheckpoints(eventId);
+            if (current == layout) {
+                return;
+            }
+            Map<Long, Integer> currentSlots = new HashMap<>();
+            int[] from = new int[current.size()];
+            for (int i = 0; i < current.size(); i++) {
+                Long checkpointId = current.get(i).getId();
+                currentSlots.put(checkpointId, i);
+                Integer old = slots.get(checkpointId);
+                from[i] = old != null ? old : -1;
+            }
+            for (AthleteSplits splits : athletes.values()) {
+                splits.relayout(from);
+            }
+            checkpointIndexes.keySet().retainAll(currentSlots.keySet());
+            layout = current;
+            slots = currentSlots;
+        }
+    }
+
+    /**
+     * 单个运动员的分段记录，按打卡点在赛事内的顺序下标
+     */
+    private static final class AthleteSplits {
+        long[] passMillis;
+        long[] chipMillis;
+
+        AthleteSplits(int length) {
+            passMillis = new long[length];
+            chipMillis = new long[length];
+            Arrays.fill(chipMillis, UNKNOWN);
+        }
+
+        /**
+         * @param from 新下标 -> 旧下标，-1 表示新增的打卡点
+         */
+        void relayout(int[] from) {
+            long[] pass = new long[from.length];
+            long[] chip = new long[from.length];
+            for (int i = 0; i < from.length; i++) {
+                pass[i] = from[i] >= 0 ? passMillis[from[i]] : 0;
+                chip[i] = from[i] >= 0 ? chipMillis[from[i]] : UNKNOWN;
+            }
+            passMillis = pass;
+            chipMillis = chip;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,211 @@
+package com.marathon.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 发枪时间修正后的分段时间批量重算
+ * 按 race_records 主键区间切块，由线程池并行处理，每块一次查询、一次批量更新；
+ * 芯片时间与发枪时间无关，不参与重算
+ */
+@Service
+public class SplitRecomputeService {
+    private static final Logger logger = LoggerFactory.getLogger(SplitRecomputeService.class);
+
+    private static final String SELECT_ID_RANGE_SQL = "SELECT MIN(id), MAX(id) FROM race_records WHERE event_id = ?";
+
+    private static final String SELECT_CHUNK_SQL =
+            "SELECT id, athlete_id, pass_time FROM race_records WHERE event_id = ? AND id BETWEEN ? AND ?";
+
+    private static final String SELECT_WAVE_CHUNK_SQL =
+            "SELECT rr.id, rr.athlete_id, rr.pass_time FROM race_records rr " +
+            "JOIN athletes a ON a.id = rr.athlete_id WHERE rr.event_id = ? AND rr.id BETWEEN ? AND ? AND a.wave_id = ?";
+
+    private static final String SELECT_ATHLETE_RECORDS_SQL =
+            "SELECT id, athlete_id, pass_time FROM race_records WHERE event_id = ? AND athlete_id = ?";
+
+    private static final String UPDATE_RECORD_SQL =
+            "UPDATE race_records SET gun_time_ms = ?, net_time_ms = ? WHERE id = ?";
+
+    private static final String SELECT_RESULTS_SQL = "SELECT id, athlete_id FROM results WHERE event_id = ?";
+
+    private static final String SELECT_WAVE_RESULTS_SQL =
+            "SELECT r.id, r.athlete_id FROM results r JOIN athletes a ON a.id = r.athlete_id WHERE a.wave_id = ?";
+
+    private static final String SELECT_ATHLETE_RESULTS_SQL = "SELECT id, athlete_id FROM results WHERE athlete_id = ?";
+
+    private static final String UPDATE_RESULT_SQL =
+            "UPDATE results SET gun_time_ms = ?, net_time_ms = ? WHERE id = ?";
+
+    @Value("${recompute.threads:4}")
+    private int threads;
+
+    @Value("${recompute.chunk.size:20000}")
+    private int chunkSize;
+
+    @Autowired
+    private WaveService waveService;
+
+    @Autowired
+    private RaceStateService raceStateService;
+
+    @Autowired
+    private RankingService rankingService;
+
+    @Autowired
+    private LookupCacheService lookupCacheService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ExecutorService workers;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads,
+                runnable -> new Thread(runnable, "split-recompute-" + threadIndex.getAndIncrement()));
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * 修正批次发枪时间并重算受影响的分段和成绩；
+     * 最早一批的发枪时间变化时赛事开始时间随之变化，需重算该赛事全部记录
+     * @return 重算的打卡记录条数
+     */
+    public synchronized long correctGunTime(Long waveId, LocalDateTime gunTime) {
+        Long eventId = waveService.getWave(waveId).getEventId();
+        boolean raceStartChanged = waveService.updateGunTime(waveId, gunTime);
+        return recompute(eventId, raceStartChanged ? null : waveId);
+    }
+
+    /**
+     * 重算赛事打卡记录和成绩的枪声时间、净时间
+     * @param waveId 只重算该批次的运动员，为null时重算赛事全部运动员
+     * @return 重算的打卡记录条数
+     */
+    public synchronized long recompute(Long eventId, Long waveId) {
+        long startNanos = System.nanoTime();
+        long[] range = jdbcTemplate.queryForObject(SELECT_ID_RANGE_SQL,
+                (rs, rowNum) -> new long[] { rs.getLong(1), rs.getLong(2) }, eventId);
+        long records = 0;
+        if (range != null && range[1] > 0) {
+            long minId = range[0];
+            long maxId = range[1];
+
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (long from = minId; from <= maxId; from += chunkSize) {
+                long to = Math.min(from + chunkSize - 1, maxId);
+                long fromId = from;
+                futures.add(workers.submit(() -> recomputeChunk(eventId, fromId, to, waveId)));
+            }
+            records = sum(futures);
+        }
+
+        int results = waveId == null
+                ? recomputeResults(eventId, SELECT_RESULTS_SQL, eventId)
+                : recomputeResults(eventId, SELECT_WAVE_RESULTS_SQL, waveId);
+        rankingService.markChanged(eventId);
+
+        logger.info("重算分段时间完成: 赛事={}, 批次={}, 打卡记录 {} 条, 成绩 {} 条, 耗时 {} ms",
+                eventId, waveId == null ? "全部" : waveId, records, results, (System.nanoTime() - startNanos) / 1_000_000L);
+        return records;
+    }
+
+    /**
+     * 运动员调整批次后重算其分段和成绩
+     */
+    public void recomputeAthlete(Long athleteId) {
+        Long eventId = lookupCacheService.findEventId(athleteId);
+        if (eventId == null) {
+            return;
+        }
+        List<Object[]> batchArgs = new ArrayList<>();
+        jdbcTemplate.query(SELECT_ATHLETE_RECORDS_SQL, splitTimes(eventId, batchArgs), eventId, athleteId);
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_RECORD_SQL, batchArgs);
+        }
+        if (recomputeResults(eventId, SELECT_ATHLETE_RESULTS_SQL, athleteId) > 0) {
+            rankingService.markChanged(eventId);
+        }
+    }
+
+    private int recomputeChunk(Long eventId, long fromId, long toId, Long waveId) {
+        List<Object[]> batchArgs = new ArrayList<>();
+        if (waveId == null) {
+            jdbcTemplate.query(SELECT_CHUNK_SQL, splitTimes(eventId, batchArgs), eventId, fromId, toId);
+        } else {
+            jdbcTemplate.query(SELECT_WAVE_CHUNK_SQL, splitTimes(eventId, batchArgs), eventId, fromId, toId, waveId);
+        }
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_RECORD_SQL, batchArgs);
+        }
+        return batchArgs.size();
+    }
+
+    // 读取 (id, athlete_id, pass_time)，生成 UPDATE_RECORD_SQL 的参数
+    private RowCallbackHandler splitTimes(Long eventId, List<Object[]> batchArgs) {
+        return rs -> {
+            long athleteId = rs.getLong(2);
+            long passMillis = RaceStateService.toMillis(rs.getTimestamp(3).toLocalDateTime());
+            batchArgs.add(new Object[] { waveService.gunTime(eventId, passMillis),
+                    waveService.netTime(eventId, athleteId, passMillis), rs.getLong(1) });
+        };
+    }
+
+    // 成绩的过终点时间取自内存中的比赛状态
+    private int recomputeResults(Long eventId, String sql, Object... args) {
+        List<Object[]> batchArgs = new ArrayList<>();
+        jdbcTemplate.query(sql, rs -> {
+            long athleteId = rs.getLong(2);
+            RaceStateService.Snapshot state = raceStateService.getSnapshot(athleteId);
+            if (state != null && state.isFinished()) {
+                batchArgs.add(new Object[] {
+                        waveService.gunTime(eventId, state.getFinishMillis()),
+                        waveService.netTime(eventId, athleteId, state.getFinishMillis()),
+                        rs.getLong(1) });
+            }
+        }, args);
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_RESULT_SQL, batchArgs);
+        }
+        return batchArgs.size();
+    }
+
+    private static long sum(List<Future<Integer>> futures) {
+        long total = 0;
+        try {
+            for (Future<Integer> future : futures) {
+                total += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new RuntimeException("重算分段时间被中断");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new RuntimeException("重算分段时间失败: " + e.getCause().getMessage(), e.getCause());
+        }
+        return total;
+    }
+}
\ No newline at end of file
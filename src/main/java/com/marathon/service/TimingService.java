@@ -1,20 +1,21 @@
 package com.marathon.service;
 
 import com.marathon.model.Athlete;
+import com.marathon.model.AthleteFinishedEvent;
 import com.marathon.model.Checkpoint;
 import com.marathon.model.RaceRecord;
 import com.marathon.model.Result;
 import com.marathon.repository.AthleteRepository;
-import com.marathon.repository.CheckpointRepository;
 import com.marathon.repository.RaceRecordRepository;
 import com.marathon.repository.ResultRepository;
+import com.marathon.util.DurationFormat;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -23,131 +24,123 @@ public class TimingService {
     @Autowired
     private RaceRecordRepository raceRecordRepository;
 
-    @Autowired
-    private CheckpointRepository checkpointRepository;
-
     @Autowired
     private AthleteRepository athleteRepository;
 
     @Autowired
     private ResultRepository resultRepository;
 
-    public void calculateResult(Long athleteId) {
-        Optional<Athlete> athleteOpt = athleteRepository.findById(athleteId);
-        if (!athleteOpt.isPresent()) {
-            return;
-        }
+    @Autowired
+    private RankingService rankingService;
 
-        Athlete athlete = athleteOpt.get();
+    @Autowired
+    private LookupCacheService lookupCacheService;
 
-        // 获取起点和终点打卡记录
-        List<RaceRecord> startFinishRecords = raceRecordRepository.findStartFinishRecords(athleteId);
-        if (startFinishRecords.size() < 2) {
-            return;
-        }
+    @Autowired
+    private RaceStateService raceStateService;
 
-        RaceRecord startRecord = null;
-        RaceRecord finishRecord = null;
+    @Autowired
+    private WaveService waveService;
 
-        for (RaceRecord record : startFinishRecords) {
-            if (record.getCheckpoint().getIsStart()) {
-                startRecord = record;
-            } else if (record.getCheckpoint().getIsFinish()) {
-                finishRecord = record;
-            }
-        }
+    @Autowired
+    private SplitAnalyticsService splitAnalyticsService;
 
-        if (startRecord == null || finishRecord == null) {
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    public void calculateResult(Long athleteId) {
+        // 总用时和有效性直接取自内存中的比赛状态
+        RaceStateService.Snapshot state = raceStateService.getSnapshot(athleteId);
+        if (state == null || !state.isFinished()) {
             return;
         }
 
-        // 计算总时间
-        Duration duration = Duration.between(startRecord.getPassTime(), finishRecord.getPassTime());
-        LocalTime totalTime = LocalTime.ofNanoOfDay(duration.toNanos());
-
-        // 检查是否通过所有打卡点
-        long totalCheckpoints = checkpointRepository.count();
-        long athleteCheckpoints = raceRecordRepository.countDistinctCheckpointsByAthlete(athleteId);
-
-        boolean isValid = (athleteCheckpoints == totalCheckpoints);
-
-        // 保存成绩
-        Result result = new Result(athlete, totalTime);
-        result.setValid(isValid);
-        resultRepository.save(result);
-
-        // 更新排名
-        updateRankings();
-    }
-
-    private void updateRankings() {
-        // 更新总排名
-        List<Result> allResults = resultRepository.findAllByValidTrueOrderByTotalTimeAsc();
-        for (int i = 0; i < allResults.size(); i++) {
-            Result result = allResults.get(i);
-            result.setRanking(i + 1);
-            resultRepository.save(result);
+        // 成绩取芯片时间，另记枪声时间和净时间（按运动员所属赛事的批次）
+        Long eventId = lookupCacheService.findEventId(athleteId);
+        Long totalTime = state.getElapsedMillis();
+        Long gunTime = waveService.gunTime(eventId, state.getFinishMillis());
+        Long netTime = waveService.netTime(eventId, athleteId, state.getFinishMillis());
+        boolean isValid = state.isValid();
+
+        // 保存成绩（重复计算时覆盖已有成绩，未变化时不写库）
+        Optional<Result> existing = resultRepository.findByAthleteId(athleteId);
+        Result result;
+        if (existing.isPresent()) {
+            result = existing.get();
+            if (totalTime.equals(result.getTotalTimeMillis()) && Objects.equals(gunTime, result.getGunTimeMillis())
+                    && Objects.equals(netTime, result.getNetTimeMillis()) && Objects.equals(isValid, result.getValid())) {
+                return;
+            }
+        } else {
+            Optional<Athlete> athleteOpt = athleteRepository.findById(athleteId);
+            if (!athleteOpt.isPresent()) {
+                return;
+            }
+            result = new Result(athleteOpt.get(), totalTime);
         }
+        result.setTotalTimeMillis(totalTime);
+        result.setGunTimeMillis(gunTime);
+        result.setNetTimeMillis(netTime);
+        result.setValid(isValid);
+        result = resultRepository.save(result);
 
-        // 更新性别排名
-        updateGenderRankings("男");
-        updateGenderRankings("女");
+        // 增量更新排名
+        rankingService.updateResult(result);
 
-        // 更新年龄组排名
-        updateAgeGroupRankings(18, 30);
-        updateAgeGroupRankings(31, 45);
-        updateAgeGroupRankings(46, 60);
-        updateAgeGroupRankings(61, 100);
+        // 发布完赛事件，由监听方异步处理短信通知等
+        eventPublisher.publishEvent(new AthleteFinishedEvent(athleteId, result.getId(), totalTime, isValid));
     }
 
-    private void updateGenderRankings(String gender) {
-        List<Result> genderResults = resultRepository.findByAthleteGenderAndValidTrueOrderByTotalTimeAsc(gender);
-        for (int i = 0; i < genderResults.size(); i++) {
-            Result result = genderResults.get(i);
-            result.setGenderRanking(i + 1);
-            resultRepository.save(result);
-        }
+    /**
+     * 从数据库重新加载运动员的打卡记录后重算成绩
+     */
+    public void recalculateResult(Long athleteId) {
+        raceStateService.reload(athleteId);
+        calculateResult(athleteId);
     }
 
-    private void updateAgeGroupRankings(int minAge, int maxAge) {
-        List<Result> ageGroupResults = resultRepository.findByAthleteAgeBetweenAndValidTrueOrderByTotalTimeAsc(minAge, maxAge);
-        for (int i = 0; i < ageGroupResults.size(); i++) {
-            Result result = ageGroupResults.get(i);
-            result.setAgeGroupRanking(i + 1);
-            resultRepository.save(result);
-        }
+    public List<RaceRecord> getAthleteRecords(Long athleteId) {
+        Long eventId = lookupCacheService.findEventId(athleteId);
+        return raceRecordRepository.findByEventIdAndAthleteIdOrderByPassTimeAsc(eventId, athleteId);
     }
-}
 
-public List<RaceRecord> getAthleteRecords(Long athleteId) {
-    return raceRecordRepository.findByAthleteIdOrderByPassTimeAsc(athleteId);
-}
+    public void createManualRecord(String cardId, Long checkpointId, String timestamp) {
+        // 实现与MQTT处理类似的逻辑，但不通过MQTT
+        Long athleteId = lookupCacheService.findAthleteId(cardId);
+        if (athleteId == null) {
+            throw new RuntimeException("No athlete found with card ID: " + cardId);
+        }
 
-public void createManualRecord(String cardId, Long checkpointId, String timestamp) {
-    // 实现与MQTT处理类似的逻辑，但不通过MQTT
-    Optional<Athlete> athleteOpt = athleteRepository.findByCardId(cardId);
-    if (!athleteOpt.isPresent()) {
-        throw new RuntimeException("No athlete found with card ID: " + cardId);
-    }
+        Long eventId = lookupCacheService.findEventId(athleteId);
+        Checkpoint checkpoint = lookupCacheService.findCheckpoint(checkpointId);
+        if (checkpoint == null || !checkpoint.getEventId().equals(eventId)) {
+            throw new RuntimeException("No checkpoint found in event " + eventId + " with ID: " + checkpointId);
+        }
 
-    Optional<Checkpoint> checkpointOpt = checkpointRepository.findById(checkpointId);
-    if (!checkpointOpt.isPresent()) {
-        throw new RuntimeException("No checkpoint found with ID: " + checkpointId);
+        LocalDateTime passTime = LocalDateTime.parse(timestamp);
+
+        RaceRecord record = new RaceRecord(eventId, athleteRepository.getReferenceById(athleteId), checkpoint, passTime);
+        long passMillis = RaceStateService.toMillis(passTime);
+        long startMillis = Boolean.TRUE.equals(checkpoint.getIsStart())
+                ? passMillis : raceStateService.getStartMillis(athleteId);
+        record.setGunTimeMillis(waveService.gunTime(eventId, passMillis));
+        record.setNetTimeMillis(waveService.netTime(eventId, athleteId, passMillis));
+        record.setChipTimeMillis(startMillis > 0 ? passMillis - startMillis : null);
+        List<Checkpoint> orderedCheckpoints = lookupCacheService.getCheckpoints(eventId);
+        Long segment = SplitAnalyticsService.segmentMillis(orderedCheckpoints,
+                splitAnalyticsService.trailSnapshot(eventId, athleteId, orderedCheckpoints), checkpoint, passMillis);
+        record.setDuration(segment != null ? DurationFormat.formatPrecise(segment) : null);
+        raceRecordRepository.save(record);
+        raceStateService.record(athleteId, checkpoint, passTime);
+        splitAnalyticsService.record(athleteId, checkpoint, passMillis, record.getChipTimeMillis());
+
+        // 如果是终点打卡，计算成绩
+        if (checkpoint.getIsFinish()) {
+            calculateResult(athleteId);
+        }
     }
 
-    Athlete athlete = athleteOpt.get();
-    Checkpoint checkpoint = checkpointOpt.get();
-    LocalDateTime passTime = LocalDateTime.parse(timestamp);
-
-    RaceRecord record = new RaceRecord(athlete, checkpoint, passTime);
-    raceRecordRepository.save(record);
-
-    // 如果是终点打卡，计算成绩
-    if (checkpoint.getIsFinish()) {
-        calculateResult(athlete.getId());
+    public List<Result> getLeaderboard(Long eventId, Integer limit) {
+        return resultRepository.findTopNByEventIdAndValidTrueOrderByTotalTimeMillisAsc(eventId, limit);
     }
-}
-
-public List<Result> getLeaderboard(Integer limit) {
-    return resultRepository.findTop10ByValidTrueOrderByTotalTimeAsc();
 }
\ No newline at end of file
@@ -0,0 +1,211 @@
+package com.marathon.service;
+
+import com.marathon.model.Wave;
+import com.marathon.repository.AthleteRepository;
+import com.marathon.repository.WaveRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 出发批次与发枪时间
+ * 按赛事在内存中保存各批次发枪时间和 运动员→批次 映射，读卡入库时据此直接算出枪声时间和净时间：
+ * 枪声时间自本赛事第一批次发枪起算，净时间自本人所在批次发枪起算（未分批次的运动员按第一批次）
+ */
+@Service
+public class WaveService {
+    private static final Logger logger = LoggerFactory.getLogger(WaveService.class);
+
+    // 未指定赛事时使用的默认赛事
+    @Value("${timing.event.id:1}")
+    private long defaultEventId;
+
+    @Autowired
+    private WaveRepository waveRepository;
+
+    @Autowired
+    private AthleteRepository athleteRepository;
+
+    private final Map<Long, EventWaves> events = new ConcurrentHashMap<>();
+
+    /**
+     * 加载赛事的批次和批次分配
+     */
+    public void loadEvent(Long eventId) {
+        events.put(eventId, new EventWaves());
+        reloadWaves(eventId);
+        reloadAssignments(eventId);
+        EventWaves waves = events.get(eventId);
+        logger.info("赛事 {} 加载出发批次 {} 个, 已分配批次的运动员 {} 人",
+                eventId, waves.gunMillisByWave.size(), waves.waveIdsByAthlete.size());
+    }
+
+    public void evictEvent(Long eventId) {
+        events.remove(eventId);
+    }
+
+    /**
+     * 重新加载赛事全部运动员的批次分配（赛事未加载时忽略）
+     */
+    public void reloadAssignments(Long eventId) {
+        EventWaves waves = events.get(eventId);
+        if (waves == null) {
+            return;
+        }
+        waves.waveIdsByAthlete.clear();
+        for (Object[] row : athleteRepository.findWaveAssignments(eventId)) {
+            waves.waveIdsByAthlete.put((Long) row[0], (Long) row[1]);
+        }
+    }
+
+    /**
+     * 重新加载赛事全部批次的发枪时间（赛事未加载时忽略）
+     */
+    public void reloadWaves(Long eventId) {
+        EventWaves waves = events.get(eventId);
+        if (waves == null) {
+            return;
+        }
+        synchronized (waves) {
+            Map<Long, Long> byWave = new HashMap<>();
+            long start = 0L;
+            for (Wave wave : waveRepository.findByEventIdOrderByGunTimeAsc(eventId)) {
+                long gunMillis = RaceStateService.toMillis(wave.getGunTime());
+                byWave.put(wave.getId(), gunMillis);
+                if (start == 0L) {
+                    start = gunMillis;
+                }
+            }
+            waves.gunMillisByWave = byWave;
+            waves.raceStartMillis = start;
+        }
+    }
+
+    public List<Wave> getAllWaves(Long eventId) {
+        return waveRepository.findByEventIdOrderByGunTimeAsc(eventId);
+    }
+
+    public Wave getWave(Long waveId) {
+        return waveRepository.findById(waveId)
+                .orElseThrow(() -> new RuntimeException("未找到ID为 " + waveId + " 的出发批次"));
+    }
+
+    public Wave createWave(Wave wave) {
+        if (wave.getGunTime() == null) {
+            throw new RuntimeException("发枪时间不能为空");
+        }
+        if (wave.getEventId() == null) {
+            wave.setEventId(defaultEventId);
+        }
+        Wave savedWave = waveRepository.save(wave);
+        reloadWaves(savedWave.getEventId());
+        return savedWave;
+    }
+
+    /**
+     * 修正批次发枪时间
+     * @return 所属赛事的开始时间（最早一批发枪）是否随之变化
+     */
+    public boolean updateGunTime(Long waveId, LocalDateTime gunTime) {
+        Wave wave = getWave(waveId);
+        long oldStart = getRaceStartMillis(wave.getEventId());
+        wave.setGunTime(gunTime);
+        waveRepository.save(wave);
+        reloadWaves(wave.getEventId());
+        logger.info("出发批次 {} 发枪时间修正为 {}", wave.getName(), gunTime);
+        return getRaceStartMillis(wave.getEventId()) != oldStart;
+    }
+
+    /**
+     * 更新运动员所属批次
+     */
+    public void assignAthlete(Long eventId, Long athleteId, Long waveId) {
+        EventWaves waves = events.get(eventId);
+        if (waves == null) {
+            return;
+        }
+        if (waveId == null) {
+            waves.waveIdsByAthlete.remove(athleteId);
+        } else {
+            waves.waveIdsByAthlete.put(athleteId, waveId);
+        }
+    }
+
+    public void removeAthlete(Long eventId, Long athleteId) {
+        EventWaves waves = events.get(eventId);
+        if (waves != null) {
+            waves.waveIdsByAthlete.remove(athleteId);
+        }
+    }
+
+    /**
+     * 批次是否存在且属于该赛事
+     */
+    public boolean existsWave(Long eventId, Long waveId) {
+        EventWaves waves = events.get(eventId);
+        if (waves != null) {
+            return waves.gunMillisByWave.containsKey(waveId);
+        }
+        return waveRepository.findById(waveId).map(wave -> eventId.equals(wave.getEventId())).orElse(false);
+    }
+
+    /**
+     * 赛事开始时间（最早一批发枪），尚未设置批次或赛事未加载时返回0
+     */
+    public long getRaceStartMillis(Long eventId) {
+        EventWaves waves = events.get(eventId);
+        return waves != null ? waves.raceStartMillis : 0L;
+    }
+
+    /**
+     * 运动员所在批次的发枪时间，未分批次时为赛事开始时间
+     */
+    public long getWaveGunMillis(Long eventId, Long athleteId) {
+        EventWaves waves = events.get(eventId);
+        if (waves == null) {
+            return 0L;
+        }
+        Long waveId = waves.waveIdsByAthlete.get(athleteId);
+        if (waveId != null) {
+            Long gunMillis = waves.gunMillisByWave.get(waveId);
+            if (gunMillis != null) {
+                return gunMillis;
+            }
+        }
+        return waves.raceStartMillis;
+    }
+
+    /**
+     * 枪声时间（毫秒），尚未设置批次时返回null
+     */
+    public Long gunTime(Long eventId, long passMillis) {
+        long start = getRaceStartMillis(eventId);
+        return start > 0 ? passMillis - start : null;
+    }
+
+    /**
+     * 净时间（毫秒），尚未设置批次时返回null
+     */
+    public Long netTime(Long eventId, Long athleteId, long passMillis) {
+        long gunMillis = getWaveGunMillis(eventId, athleteId);
+        return gunMillis > 0 ? passMillis - gunMillis : null;
+    }
+
+    /**
+     * 单个赛事的批次数据
+     */
+    private static final class EventWaves {
+        // 批次ID → 发枪毫秒时间戳，整体替换
+        volatile Map<Long, Long> gunMillisByWave = new HashMap<>();
+        volatile long raceStartMillis;
+        final Map<Long, Long> waveIdsByAthlete = new ConcurrentHashMap<>();
+    }
+}
\ No newline at end of file
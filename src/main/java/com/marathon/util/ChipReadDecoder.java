@@ -0,0 +1,220 @@
+package com.marathon.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.marathon.model.MutableChipRead;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/**
+ * 读卡报文解码，支持两种格式：
+ * <pre>
+ * 二进制（大端）: [0xC1][卡号长度 1字节][卡号 ASCII][打卡点ID int32，0表示取主题][UTC时间戳 int64 微秒]
+ * JSON:          {"cardId":"...","checkpointId":1,"timestamp":"2024-04-21T07:30:00.123"}
+ * </pre>
+ * 二进制直接从字节数组读取，JSON使用流式 JsonParser，不构建中间Map
+ */
+public class ChipReadDecoder {
+    public static final byte BINARY_MAGIC = (byte) 0xC1;
+
+    // 魔数 + 卡号长度 + 打卡点ID + 时间戳
+    private static final int BINARY_FIXED_LENGTH = 1 + 1 + 4 + 8;
+
+    private static final long DAYS_0000_TO_1970 = 719528L;
+
+    private final JsonFactory jsonFactory;
+    private final ZoneRules zoneRules;
+    private final long fixedOffsetMicros;
+
+    public ChipReadDecoder(JsonFactory jsonFactory, ZoneId zone) {
+        this.jsonFactory = jsonFactory;
+        this.zoneRules = zone.getRules();
+        this.fixedOffsetMicros = zoneRules.isFixedOffset()
+                ? zoneRules.getOffset(Instant.EPOCH).getTotalSeconds() * 1_000_000L
+                : Long.MIN_VALUE;
+    }
+
+    /**
+     * 按首字节识别格式并解码到 target
+     */
+    public void decode(byte[] payload, MutableChipRead target) throws IOException {
+        target.reset();
+        if (payload.length > 0 && payload[0] == BINARY_MAGIC) {
+            decodeBinary(payload, target);
+        } else {
+            decodeJson(payload, target);
+        }
+        if (target.getCardIdLength() == 0 || !target.hasPassTime()) {
+            throw new IOException("读卡报文缺少 cardId 或 timestamp");
+        }
+    }
+
+    private void decodeBinary(byte[] payload, MutableChipRead target) throws IOException {
+        if (payload.length < BINARY_FIXED_LENGTH) {
+            throw new IOException("二进制读卡报文长度不足: " + payload.length);
+        }
+        int cardIdLength = payload[1] & 0xFF;
+        if (payload.length != BINARY_FIXED_LENGTH + cardIdLength) {
+            throw new IOException("二进制读卡报文长度不符: " + payload.length);
+        }
+
+        int pos = 2;
+        for (int i = 0; i < cardIdLength; i++) {
+            if (!target.appendCardId((char) (payload[pos++] & 0x7F))) {
+                throw new IOException("卡号过长: " + cardIdLength);
+            }
+        }
+
+        int checkpointId = readInt(payload, pos);
+        pos += 4;
+        if (checkpointId != 0) {
+            target.setCheckpointId(checkpointId);
+        }
+
+        long epochMicros = readLong(payload, pos);
+        target.setPassTimeMicros(epochMicros + offsetMicros(epochMicros));
+    }
+
+    private void decodeJson(byte[] payload, MutableChipRead target) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("读卡报文不是JSON对象");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (field) {
+                    case "cardId":
+                        char[] chars = parser.getTextCharacters();
+                        int end = parser.getTextOffset() + parser.getTextLength();
+                        for (int i = parser.getTextOffset(); i < end; i++) {
+                            if (!target.appendCardId(chars[i])) {
+                                throw new IOException("卡号过长: " + parser.getTextLength());
+                            }
+                        }
+                        break;
+                    case "checkpointId":
+                        target.setCheckpointId(value == JsonToken.VALUE_STRING
+                                ? Long.parseLong(parser.getText()) : parser.getLongValue());
+                        break;
+                    case "timestamp":
+                        target.setPassTimeMicros(parseLocalMicros(
+                                parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+    }
+
+    private long offsetMicros(long epochMicros) {
+        if (fixedOffsetMicros != Long.MIN_VALUE) {
+            return fixedOffsetMicros;
+        }
+        Instant instant = Instant.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L));
+        return zoneRules.getOffset(instant).getTotalSeconds() * 1_000_000L;
+    }
+
+    /**
+     * 解析 yyyy-MM-ddTHH:mm:ss[.f{1,9}] 为本地时间微秒数，其他写法交给 LocalDateTime.parse
+     */
+    static long parseLocalMicros(char[] chars, int offset, int length) {
+        if (length >= 19 && chars[offset + 4] == '-' && chars[offset + 7] == '-' && chars[offset + 10] == 'T'
+                && chars[offset + 13] == ':' && chars[offset + 16] == ':') {
+            int year = digits(chars, offset, 4);
+            int month = digits(chars, offset + 5, 2);
+            int day = digits(chars, offset + 8, 2);
+            int hour = digits(chars, offset + 11, 2);
+            int minute = digits(chars, offset + 14, 2);
+            int second = digits(chars, offset + 17, 2);
+            int micros = 0;
+            boolean valid = year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= lengthOfMonth(year, month)
+                    && hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59 && second >= 0 && second <= 59;
+            if (valid && length > 19) {
+                int fractionLength = length - 20;
+                valid = chars[offset + 19] == '.' && fractionLength >= 1 && fractionLength <= 9;
+                if (valid) {
+                    int fraction = digits(chars, offset + 20, Math.min(fractionLength, 6));
+                    valid = fraction >= 0 && (fractionLength <= 6 || digits(chars, offset + 26, fractionLength - 6) >= 0);
+                    for (int i = fractionLength; i < 6; i++) {
+                        fraction *= 10;
+                    }
+                    micros = fraction;
+                }
+            }
+            if (valid) {
+                long epochSecond = epochDay(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+                return epochSecond * 1_000_000L + micros;
+            }
+        }
+
+        LocalDateTime time = LocalDateTime.parse(new String(chars, offset, length));
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1000;
+    }
+
+    // 解析定长十进制数字，含非数字字符时返回-1
+    private static int digits(char[] chars, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    // 与 LocalDate.toEpochDay 相同的算法（year >= 0）
+    private static long epochDay(int year, int month, int day) {
+        long y = year;
+        long total = 365 * y + (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    private static int readInt(byte[] bytes, int pos) {
+        return (bytes[pos] & 0xFF) << 24 | (bytes[pos + 1] & 0xFF) << 16
+                | (bytes[pos + 2] & 0xFF) << 8 | (bytes[pos + 3] & 0xFF);
+    }
+
+    private static long readLong(byte[] bytes, int pos) {
+        return (long) readInt(bytes, pos) << 32 | (readInt(bytes, pos + 4) & 0xFFFFFFFFL);
+    }
+}
\ No newline at end of file
@@ -1,12 +1,14 @@
 package com.marathon.util;
 
 import com.marathon.model.Result;
+import com.marathon.repository.ResultExportRepository;
 import com.opencsv.CSVWriter;
 import com.opencsv.bean.ColumnPositionMappingStrategy;
 import com.opencsv.bean.StatefulBeanToCsv;
 import com.opencsv.bean.StatefulBeanToCsvBuilder;
 import com.opencsv.exceptions.CsvDataTypeMismatchException;
 import com.opencsv.exceptions.CsvRequiredFieldEmptyException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -16,6 +18,9 @@ import java.util.List;
 @Component
 public class CsvExporter {
 
+    @Autowired
+    private ResultExportRepository resultExportRepository;
+
     /**
      * 导出成绩数据到CSV
      * @param results 成绩列表
@@ -31,7 +36,7 @@ public class CsvExporter {
             // 定义CSV列顺序
             String[] columns = {
                     "ranking", "athleteName", "athleteGender", "athleteAge",
-                    "totalTime", "ageGroupRanking", "genderRanking", "valid"
+                    "totalTimeMillis", "ageGroupRanking", "genderRanking", "valid"
             };
             mappingStrategy.setColumnMapping(columns);
 
@@ -77,7 +82,7 @@ public class CsvExporter {
                         String.valueOf(result.getAthlete().getAge()),
                         result.getAthlete().getIdCard(),
                         result.getAthlete().getPhone() != null ? result.getAthlete().getPhone() : "",
-                        result.getTotalTime().toString(),
+                        DurationFormat.formatPrecise(result.getTotalTimeMillis()),
                         result.getAgeGroupRanking() != null ? String.valueOf(result.getAgeGroupRanking()) : "",
                         result.getGenderRanking() != null ? String.valueOf(result.getGenderRanking()) : "",
                         result.getValid() ? "有效" : "无效"
@@ -90,6 +95,50 @@ public class CsvExporter {
         }
     }
 
+    /**
+     * 流式导出赛事的详细成绩数据到CSV，直接从数据库游标逐行写出，不加载完整成绩列表
+     * @param eventId 赛事ID
+     * @param writer 输出写入器
+     * @throws IOException 写入异常
+     */
+    public void streamDetailedResultsToCsv(long eventId, Writer writer) throws IOException {
+        CsvRowWriter csvWriter = new CsvRowWriter(writer);
+
+        // 写入表头
+        csvWriter.writeRow(
+                "排名", "姓名", "性别", "年龄", "身份证号", "手机号",
+                "总成绩", "年龄组排名", "性别排名", "成绩有效性"
+        );
+
+        // 写入数据行
+        resultExportRepository.forEachResultRow(eventId, row -> {
+            if (row.getRanking() > 0) {
+                csvWriter.field(row.getRanking());
+            } else {
+                csvWriter.field("null");
+            }
+            csvWriter.field(row.getName())
+                    .field(row.getGender())
+                    .field(row.getAge())
+                    .field(row.getIdCard())
+                    .field(row.getPhone() != null ? row.getPhone() : "")
+                    .field(DurationFormat.formatPrecise(row.getTotalTimeMillis()));
+            if (row.getAgeGroupRanking() > 0) {
+                csvWriter.field(row.getAgeGroupRanking());
+            } else {
+                csvWriter.field("");
+            }
+            if (row.getGenderRanking() > 0) {
+                csvWriter.field(row.getGenderRanking());
+            } else {
+                csvWriter.field("");
+            }
+            csvWriter.field(row.isValid() ? "有效" : "无效");
+            csvWriter.endRow();
+        });
+        csvWriter.flush();
+    }
+
     /**
      * 导出打卡记录到CSV
      * @param records 打卡记录数据（这里使用Object数组，实际应用中应使用具体类型）
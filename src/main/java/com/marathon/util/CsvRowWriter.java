@@ -0,0 +1,84 @@
+package com.marathon.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 轻量CSV行写入器，复用行缓冲，逐行写出
+ * 输出格式与 OpenCSV CSVWriter 默认配置一致：字段加双引号，引号转义为两个引号，换行为\n
+ */
+public class CsvRowWriter {
+
+    private final Writer writer;
+    private final StringBuilder row = new StringBuilder(256);
+    private char[] chars = new char[256];
+    private boolean firstField = true;
+
+    public CsvRowWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * 追加一个文本字段，null 写为空字段
+     */
+    public CsvRowWriter field(String value) {
+        separator();
+        if (value != null) {
+            row.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    row.append('"');
+                }
+                row.append(c);
+            }
+            row.append('"');
+        }
+        return this;
+    }
+
+    /**
+     * 追加一个整数字段
+     */
+    public CsvRowWriter field(int value) {
+        separator();
+        row.append('"').append(value).append('"');
+        return this;
+    }
+
+    /**
+     * 整行写入
+     */
+    public void writeRow(String... fields) throws IOException {
+        for (String field : fields) {
+            field(field);
+        }
+        endRow();
+    }
+
+    /**
+     * 结束当前行并写出
+     */
+    public void endRow() throws IOException {
+        row.append('\n');
+        int length = row.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        row.getChars(0, length, chars, 0);
+        writer.write(chars, 0, length);
+        row.setLength(0);
+        firstField = true;
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void separator() {
+        if (!firstField) {
+            row.append(',');
+        }
+        firstField = false;
+    }
+}
\ No newline at end of file
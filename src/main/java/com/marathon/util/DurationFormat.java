@@ -0,0 +1,72 @@
+package com.marathon.util;
+
+/**
+ * 毫秒时长格式化，小时数不限于24
+ */
+public final class DurationFormat {
+
+    private DurationFormat() {}
+
+    /**
+     * 格式化为 HH:mm:ss，为null时返回空串
+     */
+    public static String format(Long millis) {
+        if (millis == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(12);
+        appendHms(sb, millis);
+        return sb.toString();
+    }
+
+    /**
+     * 格式化为 HH:mm:ss.SSS，为null时返回空串
+     */
+    public static String formatPrecise(Long millis) {
+        if (millis == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(16);
+        appendHms(sb, millis);
+        long fraction = Math.abs(millis) % 1000;
+        sb.append('.');
+        if (fraction < 100) {
+            sb.append('0');
+        }
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction).toString();
+    }
+
+    /**
+     * 格式化为 HH小时mm分ss秒
+     */
+    public static String formatChinese(long millis) {
+        long seconds = millis / 1000;
+        return String.format("%02d小时%02d分%02d秒", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    private static void appendHms(StringBuilder sb, long millis) {
+        if (millis < 0) {
+            sb.append('-');
+            millis = -millis;
+        }
+        long seconds = millis / 1000;
+        long hours = seconds / 3600;
+        int minutes = (int) (seconds / 60 % 60);
+        int secs = (int) (seconds % 60);
+        if (hours < 10) {
+            sb.append('0');
+        }
+        sb.append(hours).append(':');
+        if (minutes < 10) {
+            sb.append('0');
+        }
+        sb.append(minutes).append(':');
+        if (secs < 10) {
+            sb.append('0');
+        }
+        sb.append(secs);
+    }
+}
\ No newline at end of file
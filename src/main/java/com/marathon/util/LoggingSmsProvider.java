@@ -0,0 +1,44 @@
+package com.marathon.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地模拟短信通道：只记日志不真正发送，用于开发和压测；
+ * 可配置模拟的通道延迟
+ */
+@Component
+@ConditionalOnProperty(name = "sms.provider", havingValue = "log", matchIfMissing = true)
+public class LoggingSmsProvider implements SmsProvider {
+    private static final Logger logger = LoggerFactory.getLogger(LoggingSmsProvider.class);
+
+    @Value("${sms.stub.latency:0}")
+    private long latencyMs;
+
+    private final AtomicLong sentCount = new AtomicLong();
+
+    @Override
+    public String send(String phoneNumber, String content) {
+        if (latencyMs > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("模拟发送被中断");
+            }
+        }
+        long seq = sentCount.incrementAndGet();
+        logger.info("模拟发送短信到 {}: {}", phoneNumber, content);
+        return "simulated-" + seq;
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+}
\ No newline at end of file
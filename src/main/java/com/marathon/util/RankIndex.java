@@ -0,0 +1,234 @@
+package com.marathon.util;
+
+/**
+ * 顺序统计树（带子树大小的Treap），按(成绩毫秒, 成绩ID)升序排列
+ * 插入、删除、查询名次均为 O(log N)；非线程安全，由调用方加锁
+ */
+public class RankIndex {
+
+    /**
+     * 按名次遍历的回调
+     */
+    public interface Visitor {
+        void visit(long id, int rank);
+    }
+
+    private static final class Node {
+        final long time;
+        final long id;
+        final int priority;
+        Node left;
+        Node right;
+        int size = 1;
+
+        Node(long time, long id, int priority) {
+            this.time = time;
+            this.id = id;
+            this.priority = priority;
+        }
+    }
+
+    private Node root;
+
+    private int seed = 0x2545F491;
+
+    /**
+     * 当前元素个数
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        root = null;
+    }
+
+    /**
+     * 插入一条成绩
+     * @return 插入后的名次（从1开始）
+     */
+    public int insert(long time, long id) {
+        int rank = countLess(time, id) + 1;
+        root = insert(root, new Node(time, id, nextPriority()));
+        return rank;
+    }
+
+    /**
+     * 删除一条成绩
+     * @return 删除前的名次，不存在时返回-1
+     */
+    public int remove(long time, long id) {
+        int rank = rank(time, id);
+        if (rank > 0) {
+            root = remove(root, time, id);
+        }
+        return rank;
+    }
+
+    /**
+     * 查询名次
+     * @return 名次（从1开始），不存在时返回-1
+     */
+    public int rank(long time, long id) {
+        Node node = root;
+        int less = 0;
+        while (node != null) {
+            int cmp = compare(time, id, node);
+            if (cmp == 0) {
+                return less + size(node.left) + 1;
+            }
+            if (cmp < 0) {
+                node = node.left;
+            } else {
+                less += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 严格小于给定键的元素个数
+     */
+    public int countLess(long time, long id) {
+        Node node = root;
+        int less = 0;
+        while (node != null) {
+            if (compare(time, id, node) <= 0) {
+                node = node.left;
+            } else {
+                less += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return less;
+    }
+
+    /**
+     * 从指定名次开始按顺序遍历到末尾
+     */
+    public void forEachFrom(int fromRank, Visitor visitor) {
+        forEachBetween(fromRank, Integer.MAX_VALUE, visitor);
+    }
+
+    /**
+     * 按顺序遍历 [fromRank, toRank] 名次区间，只访问区间内的节点
+     */
+    public void forEachBetween(int fromRank, int toRank, Visitor visitor) {
+        visit(root, Math.max(fromRank, 1), toRank, 0, visitor);
+    }
+
+    private void visit(Node node, int fromRank, int toRank, int offset, Visitor visitor) {
+        if (node == null) {
+            return;
+        }
+        int nodeRank = offset + size(node.left) + 1;
+        if (fromRank < nodeRank) {
+            visit(node.left, fromRank, toRank, offset, visitor);
+        }
+        if (nodeRank > toRank) {
+            return;
+        }
+        if (fromRank <= nodeRank) {
+            visitor.visit(node.id, nodeRank);
+        }
+        visit(node.right, fromRank, toRank, nodeRank, visitor);
+    }
+
+    private Node insert(Node node, Node item) {
+        if (node == null) {
+            return item;
+        }
+        if (item.priority > node.priority) {
+            Node[] parts = split(node, item.time, item.id);
+            item.left = parts[0];
+            item.right = parts[1];
+            update(item);
+            return item;
+        }
+        if (compare(item.time, item.id, node) < 0) {
+            node.left = insert(node.left, item);
+        } else {
+            node.right = insert(node.right, item);
+        }
+        update(node);
+        return node;
+    }
+
+    private Node remove(Node node, long time, long id) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(time, id, node);
+        if (cmp == 0) {
+            return merge(node.left, node.right);
+        }
+        if (cmp < 0) {
+            node.left = remove(node.left, time, id);
+        } else {
+            node.right = remove(node.right, time, id);
+        }
+        update(node);
+        return node;
+    }
+
+    // 拆分为 (< key, >= key) 两棵子树
+    private Node[] split(Node node, long time, long id) {
+        if (node == null) {
+            return new Node[] { null, null };
+        }
+        if (compare(time, id, node) > 0) {
+            Node[] parts = split(node.right, time, id);
+            node.right = parts[0];
+            update(node);
+            return new Node[] { node, parts[1] };
+        }
+        Node[] parts = split(node.left, time, id);
+        node.left = parts[1];
+        update(node);
+        return new Node[] { parts[0], node };
+    }
+
+    // 合并两棵子树，要求 a 中所有元素小于 b
+    private Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    private static int compare(long time, long id, Node node) {
+        if (time != node.time) {
+            return time < node.time ? -1 : 1;
+        }
+        return Long.compare(id, node.id);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.marathon.util;
+
+/**
+ * 短信通道接口，由 sms.provider 选择 Twilio 或本地模拟实现
+ */
+public interface SmsProvider {
+
+    /**
+     * 发送一条短信
+     * @param phoneNumber 国际格式手机号
+     * @param content 短信内容
+     * @return 通道返回的消息ID
+     * @throws RuntimeException 发送失败
+     */
+    String send(String phoneNumber, String content);
+
+    /**
+     * 发送失败后是否值得重试（如号码无效则不重试）
+     * @param e 发送时抛出的异常
+     * @return 是否重试
+     */
+    default boolean isRetryable(RuntimeException e) {
+        return true;
+    }
+}
\ No newline at end of file
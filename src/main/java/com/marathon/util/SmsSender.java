@@ -1,32 +1,24 @@
 package com.marathon.util;
 
 import com.marathon.model.Result;
-import com.twilio.Twilio;
-import com.twilio.rest.api.v2010.account.Message;
-import com.twilio.type.PhoneNumber;
+import com.marathon.service.SmsDispatchService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.text.SimpleDateFormat;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 
+/**
+ * 成绩短信：生成内容后交给 SmsDispatchService 异步限流发送
+ */
 @Component
 public class SmsSender {
     private static final Logger logger = LoggerFactory.getLogger(SmsSender.class);
 
-    // Twilio账户配置（从application.properties注入）
-    @Value("${twilio.account.sid:}")
-    private String twilioAccountSid;
-
-    @Value("${twilio.auth.token:}")
-    private String twilioAuthToken;
-
-    @Value("${twilio.phone.number:}")
-    private String twilioPhoneNumber;
+    @Autowired
+    private SmsDispatchService smsDispatchService;
 
     // 短信模板
     private static final String SMS_TEMPLATE =
@@ -35,35 +27,10 @@ public class SmsSender {
     private static final String SMS_TEMPLATE_EN =
             "[Marathon] Dear %s, your result: %s, overall ranking: %d, %s ranking: %d. Thank you for participating!";
 
-    // 模拟发送记录（在实际应用中应使用数据库存储）
-    private final Map<Long, String> sentRecords = new HashMap<>();
-
-    /**
-     * 初始化Twilio客户端
-     */
-    public void init() {
-        if (isTwilioConfigured()) {
-            Twilio.init(twilioAccountSid, twilioAuthToken);
-            logger.info("Twilio客户端初始化成功");
-        } else {
-            logger.warn("Twilio未配置，短信功能将无法使用");
-        }
-    }
-
-    /**
-     * 检查Twilio是否已配置
-     * @return 是否已配置
-     */
-    public boolean isTwilioConfigured() {
-        return twilioAccountSid != null && !twilioAccountSid.isEmpty() &&
-                twilioAuthToken != null && !twilioAuthToken.isEmpty() &&
-                twilioPhoneNumber != null && !twilioPhoneNumber.isEmpty();
-    }
-
     /**
-     * 发送成绩短信
+     * 发送成绩短信（放入发送队列后立即返回）
      * @param result 成绩信息
-     * @return 是否发送成功
+     * @return 是否已入队
      */
     public boolean sendResultSms(Result result) {
         if (result == null || result.getAthlete() == null) {
@@ -87,48 +54,14 @@ public class SmsSender {
         // 生成短信内容
         String messageContent = generateSmsContent(result);
 
-        // 记录发送尝试
-        logger.info("尝试向{}发送短信: {}", formattedPhone, messageContent);
-
-        // 异步发送短信
-        CompletableFuture<Boolean> future = CompletableFuture.supplyAsync(() -> {
-            try {
-                if (isTwilioConfigured()) {
-                    // 使用Twilio发送短信
-                    Message message = Message.creator(
-                            new PhoneNumber(formattedPhone),
-                            new PhoneNumber(twilioPhoneNumber),
-                            messageContent
-                    ).create();
-
-                    logger.info("短信发送成功，SID: {}", message.getSid());
-                    sentRecords.put(result.getAthlete().getId(), message.getSid());
-                    return true;
-                } else {
-                    // Twilio未配置，模拟发送成功
-                    logger.warn("Twilio未配置，模拟发送短信到: {}", formattedPhone);
-                    sentRecords.put(result.getAthlete().getId(), "simulated-" + System.currentTimeMillis());
-                    return true;
-                }
-            } catch (Exception e) {
-                logger.error("短信发送失败: {}", e.getMessage(), e);
-                return false;
-            }
-        });
-
-        // 等待发送完成（可以设置超时时间）
-        try {
-            return future.get();
-        } catch (Exception e) {
-            logger.error("短信发送异步处理失败: {}", e.getMessage(), e);
-            return false;
-        }
+        // 由发送线程池按限流发送，失败自动重试
+        return smsDispatchService.enqueue(result.getAthlete().getId(), formattedPhone, messageContent);
     }
 
     /**
      * 批量发送成绩短信
      * @param results 成绩列表
-     * @return 成功发送的数量
+     * @return 入队的数量
      */
     public int sendBatchResultSms(List<Result> results) {
         if (results == null || results.isEmpty()) {
@@ -140,16 +73,9 @@ public class SmsSender {
             if (sendResultSms(result)) {
                 successCount++;
             }
-            // 添加短暂延迟，避免发送频率过高
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
-            }
         }
 
-        logger.info("批量发送完成，成功: {}，失败: {}", successCount, results.size() - successCount);
+        logger.info("批量短信入队完成，入队: {}，跳过: {}", successCount, results.size() - successCount);
         return successCount;
     }
 
@@ -160,7 +86,7 @@ public class SmsSender {
      */
     private String generateSmsContent(Result result) {
         String athleteName = result.getAthlete().getName();
-        String totalTime = new SimpleDateFormat("HH:mm:ss").format(result.getTotalTime());
+        String totalTime = DurationFormat.format(result.getTotalTimeMillis());
         int overallRanking = result.getRanking() != null ? result.getRanking() : 0;
 
         // 确定显示哪种排名（年龄组或性别）
@@ -233,7 +159,7 @@ public class SmsSender {
      * @return 是否已发送
      */
     public boolean hasSentSms(Long athleteId) {
-        return sentRecords.containsKey(athleteId);
+        return smsDispatchService.hasSent(athleteId);
     }
 
     /**
@@ -242,7 +168,7 @@ public class SmsSender {
      * @return 短信记录ID
      */
     public String getSmsRecordId(Long athleteId) {
-        return sentRecords.get(athleteId);
+        return smsDispatchService.getMessageId(athleteId);
     }
 
     /**
@@ -250,14 +176,14 @@ public class SmsSender {
      * @return 发送记录映射
      */
     public Map<Long, String> getAllSentRecords() {
-        return new HashMap<>(sentRecords);
+        return smsDispatchService.getAllSentRecords();
     }
 
     /**
      * 清除发送记录（用于测试或重置）
      */
     public void clearSentRecords() {
-        sentRecords.clear();
+        smsDispatchService.clearSentRecords();
         logger.info("已清除所有短信发送记录");
     }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.marathon.util;
+
+import com.twilio.Twilio;
+import com.twilio.exception.ApiException;
+import com.twilio.rest.api.v2010.account.Message;
+import com.twilio.type.PhoneNumber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Twilio短信通道，启动时初始化一次客户端
+ */
+@Component
+@ConditionalOnProperty(name = "sms.provider", havingValue = "twilio")
+public class TwilioSmsProvider implements SmsProvider {
+    private static final Logger logger = LoggerFactory.getLogger(TwilioSmsProvider.class);
+
+    // Twilio账户配置（从application.properties注入）
+    @Value("${twilio.account.sid:}")
+    private String twilioAccountSid;
+
+    @Value("${twilio.auth.token:}")
+    private String twilioAuthToken;
+
+    @Value("${twilio.phone.number:}")
+    private String twilioPhoneNumber;
+
+    @PostConstruct
+    public void init() {
+        if (twilioAccountSid.isEmpty() || twilioAuthToken.isEmpty() || twilioPhoneNumber.isEmpty()) {
+            throw new IllegalStateException("sms.provider=twilio 但Twilio账户未配置");
+        }
+        Twilio.init(twilioAccountSid, twilioAuthToken);
+        logger.info("Twilio客户端初始化成功");
+    }
+
+    @Override
+    public String send(String phoneNumber, String content) {
+        Message message = Message.creator(
+                new PhoneNumber(phoneNumber),
+                new PhoneNumber(twilioPhoneNumber),
+                content
+        ).create();
+        return message.getSid();
+    }
+
+    /**
+     * 限流（429）和服务端错误可重试，其余4xx（号码无效、账户问题等）重试无意义
+     */
+    @Override
+    public boolean isRetryable(RuntimeException e) {
+        if (!(e instanceof ApiException)) {
+            return true;
+        }
+        Integer status = ((ApiException) e).getStatusCode();
+        return status == null || status == 429 || status >= 500;
+    }
+}
\ No newline at end of file
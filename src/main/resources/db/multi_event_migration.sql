@@ -0,0 +1,12 @@
+-- 多赛事升级（MySQL 8）
+-- ddl-auto=update 会加上 event_id 列和 (event_id, card_id) 唯一约束，但不会删除旧的 card_id 单列唯一约束，
+-- 不删除时不同赛事无法复用卡号。应用以新版本启动一次后，在维护窗口执行。
+
+-- 1. 查出 athletes.card_id 上旧的单列唯一索引（名称由 Hibernate 生成）
+--    SELECT INDEX_NAME FROM information_schema.STATISTICS
+--    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'athletes' AND COLUMN_NAME = 'card_id' AND NON_UNIQUE = 0
+--    AND INDEX_NAME <> 'uk_athletes_event_card';
+--    ALTER TABLE athletes DROP INDEX <INDEX_NAME>;
+
+-- 2. 旧数据已由列默认值归入赛事 1；results.event_id 与运动员保持一致
+UPDATE results r JOIN athletes a ON a.id = r.athlete_id SET r.event_id = a.event_id WHERE r.event_id <> a.event_id;
\ No newline at end of file
@@ -0,0 +1,25 @@
+-- race_records 按赛事分区（MySQL 8）
+-- 应用以 ddl-auto=update 建表或加列后，在维护窗口执行一次。
+-- 分区后按赛事的查询只访问该赛事的分区；归档赛事（POST /api/timing/events/{id}/archive）
+-- 迁移完数据后会自动删除其独立分区 p<赛事ID>（仅当分区已空、且范围恰好为 [赛事ID, 赛事ID+1)）。
+
+-- 1. 分区表不支持外键：删除旧版本由 Hibernate 生成的外键（实体已不再生成）
+--    SELECT CONSTRAINT_NAME FROM information_schema.REFERENTIAL_CONSTRAINTS
+--    WHERE CONSTRAINT_SCHEMA = DATABASE() AND TABLE_NAME = 'race_records';
+--    ALTER TABLE race_records DROP FOREIGN KEY <CONSTRAINT_NAME>;
+
+-- 2. 主键必须包含分区列（自增列仍在主键首列）
+ALTER TABLE race_records DROP PRIMARY KEY, ADD PRIMARY KEY (id, event_id);
+
+-- 3. 按赛事ID范围分区，未单独建分区的新赛事落入 pmax，插入不会失败
+ALTER TABLE race_records
+    PARTITION BY RANGE (event_id) (
+        PARTITION p1 VALUES LESS THAN (2),
+        PARTITION pmax VALUES LESS THAN MAXVALUE
+    );
+
+-- 4. 新赛事开赛前从 pmax 拆出独立分区（示例：赛事 2）
+-- ALTER TABLE race_records REORGANIZE PARTITION pmax INTO (
+--     PARTITION p2 VALUES LESS THAN (3),
+--     PARTITION pmax VALUES LESS THAN MAXVALUE
+-- );
\ No newline at end of file
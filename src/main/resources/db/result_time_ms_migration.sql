@@ -0,0 +1,18 @@
+-- 成绩时间改为毫秒（MySQL 8）
+-- 新版本实体只写 results.total_time_ms（BIGINT），旧列 total_time（TIME NOT NULL）没有默认值，
+-- 不迁移时新成绩插入失败，旧成绩的 total_time_ms 为空或被 ddl-auto 补成 0。
+-- 在维护窗口、启动新版本之前执行；若新版本已启动过（ddl-auto=update 已加上 total_time_ms 列），跳过第 1 步。
+
+-- 1. 新增毫秒列，先允许为空以便回填
+ALTER TABLE results ADD COLUMN total_time_ms BIGINT NULL;
+
+-- 2. 按旧列回填毫秒数（含小数秒）；合法成绩不会为 0，0 视为 ddl-auto 补的默认值
+UPDATE results
+SET total_time_ms = TIME_TO_SEC(total_time) * 1000 + MICROSECOND(total_time) DIV 1000
+WHERE total_time IS NOT NULL AND (total_time_ms IS NULL OR total_time_ms = 0);
+
+-- 3. 回填完成后加上非空约束，与实体一致
+ALTER TABLE results MODIFY total_time_ms BIGINT NOT NULL;
+
+-- 4. 删除旧列
+ALTER TABLE results DROP COLUMN total_time;
\ No newline at end of file